@@ -28,6 +28,10 @@ import org.fluidity.foundation.Configuration;
  * that {@link AutoCloseable#close()} is invoked on the instance. The stream of {@link SalaryDetails} objects will be sent, in an order sorted by person name
  * and date, to the consumer the instance was created with.
  * <p>
+ * If the work shifts are known to arrive sorted, create the instance with {@link SalaryCalculator.Factory#create(Consumer, boolean)} instead: the shifts
+ * then stream through the calculator without being kept in memory, and the salary of each person is sent to the consumer as soon as the shifts of the next
+ * person or month start.
+ * <p>
  * Example:
  * <pre>
  *     SalaryCalculator.Factory factory = &hellip;;
@@ -58,6 +62,18 @@ public interface SalaryCalculator extends BatchProcessor<ShiftDetails> {
          * @return a new instance; never <code>null</code>.
          */
         SalaryCalculator create(Consumer<SalaryDetails> consumer);
+
+        /**
+         * Creates a new {@link SalaryCalculator} that optionally expects sorted input. Sorted input means that the work shifts arrive ordered by month, then
+         * by person name and ID, and then by date and start time. The salaries are then sent to the consumer in the order the people and months arrive, and an
+         * {@link IllegalArgumentException} is thrown by {@link SalaryCalculator#accept(Object)} on the first work shift that is out of order.
+         *
+         * @param consumer the consumer for the {@link SalaryDetails} stream.
+         * @param sorted   tells if the work shifts arrive sorted; if <code>false</code>, this method is equivalent to {@link #create(Consumer)}.
+         *
+         * @return a new instance; never <code>null</code>.
+         */
+        SalaryCalculator create(Consumer<SalaryDetails> consumer, boolean sorted);
     }
 
     /**
@@ -26,6 +26,11 @@ import java.time.LocalDate;
 @SuppressWarnings("WeakerAccess")
 public final class SalaryDetails {
 
+    /**
+     * The maximum number of characters in a {@link #amount(int, char[], int) formatted amount}: that of <code>-$21474836.48</code>.
+     */
+    public static final int AMOUNT_LENGTH = 13;
+
     public final String personId;
     public final String personName;
     public final LocalDate month;
@@ -42,9 +47,103 @@ public final class SalaryDetails {
      * Returns the formatted dollar amount.
      *
      * @return a text; never <code>null</code>.
+     *
+     * @see #amount(int, char[], int)
      */
     public String amount() {
-        return String.format("$%d.%d", amountBy100 / 100, amountBy100 % 100);
+        final char[] text = new char[AMOUNT_LENGTH];
+        return new String(text, 0, amount(amountBy100, text, 0));
+    }
+
+    /**
+     * Writes the given amount of cents to the given buffer as dollars with two digit cents, such as <code>$12.05</code> or <code>-$0.50</code>, without
+     * allocating anything.
+     *
+     * @param amountBy100 the amount in cents.
+     * @param buffer      the buffer to write to; must have at least {@link #AMOUNT_LENGTH} characters after the offset.
+     * @param offset      the index in the buffer to write the first character to.
+     *
+     * @return the index in the buffer after the last character written.
+     */
+    public static int amount(final int amountBy100, final char[] buffer, final int offset) {
+        int index = offset + length(amountBy100);
+        final int end = index;
+
+        // Digits are written backwards, using a negative value to be able to handle Integer.MIN_VALUE.
+        int value = amountBy100 < 0 ? amountBy100 : -amountBy100;
+
+        buffer[--index] = (char) ('0' - value % 10);
+        value /= 10;
+        buffer[--index] = (char) ('0' - value % 10);
+        value /= 10;
+        buffer[--index] = '.';
+
+        do {
+            buffer[--index] = (char) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        buffer[--index] = '$';
+
+        if (amountBy100 < 0) {
+            buffer[--index] = '-';
+        }
+
+        assert index == offset : index;
+        return end;
+    }
+
+    /**
+     * Writes the given amount of cents to the given buffer as ASCII bytes. See {@link #amount(int, char[], int)}.
+     *
+     * @param amountBy100 the amount in cents.
+     * @param buffer      the buffer to write to; must have at least {@link #AMOUNT_LENGTH} bytes after the offset.
+     * @param offset      the index in the buffer to write the first byte to.
+     *
+     * @return the index in the buffer after the last byte written.
+     */
+    public static int amount(final int amountBy100, final byte[] buffer, final int offset) {
+        int index = offset + length(amountBy100);
+        final int end = index;
+
+        int value = amountBy100 < 0 ? amountBy100 : -amountBy100;
+
+        buffer[--index] = (byte) ('0' - value % 10);
+        value /= 10;
+        buffer[--index] = (byte) ('0' - value % 10);
+        value /= 10;
+        buffer[--index] = '.';
+
+        do {
+            buffer[--index] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        buffer[--index] = '$';
+
+        if (amountBy100 < 0) {
+            buffer[--index] = '-';
+        }
+
+        assert index == offset : index;
+        return end;
+    }
+
+    /**
+     * Returns the number of characters the given amount is formatted to.
+     *
+     * @param amountBy100 the amount in cents.
+     *
+     * @return a number between 5 and {@link #AMOUNT_LENGTH}.
+     */
+    private static int length(final int amountBy100) {
+        int length = amountBy100 < 0 ? 5 : 4;
+
+        for (int value = amountBy100 / 100; value != 0; value /= 10) {
+            ++length;
+        }
+
+        return amountBy100 / 100 == 0 ? length + 1 : length;
     }
 
     @Override
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.binary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import org.fluidity.composition.Component;
+import org.fluidity.wages.SalaryDetails;
+
+/**
+ * Encapsulates the logic of reading a binary shift file and calculating the wages therefrom.
+ */
+@Component
+public final class SalaryCalculator {
+
+    private final org.fluidity.wages.SalaryCalculator.Factory calculators;
+
+    public SalaryCalculator(final org.fluidity.wages.SalaryCalculator.Factory calculators) {
+        this.calculators = calculators;
+    }
+
+    /**
+     * Reads the shift details, optionally restricted to a single month and/or person, from the given file and sends the computed salary details to the
+     * given consumer.
+     *
+     * @param file     the binary shift file to read.
+     * @param month    the first day of the month to calculate the salaries for; may be <code>null</code>, in which case all months are calculated.
+     * @param personId the ID of the person to calculate the salaries for; may be <code>null</code>, in which case all people are calculated.
+     * @param consumer the consumer to send salary details to.
+     *
+     * @throws IOException when reading the file fails.
+     */
+    public void process(final Path file, final LocalDate month, final String personId, final Consumer<SalaryDetails> consumer) throws IOException {
+        try (final ShiftFileReader reader = new ShiftFileReader(file); final org.fluidity.wages.SalaryCalculator calculator = calculators.create(consumer)) {
+            reader.read(month, personId, calculator);
+        }
+    }
+}
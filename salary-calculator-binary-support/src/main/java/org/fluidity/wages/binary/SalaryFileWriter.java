@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.fluidity.wages.SalaryDetails;
+
+/**
+ * Streams salaries as fixed width binary records, for loaders that need no parsing. All numbers are big endian, and the output has the following
+ * structure:
+ * <pre>
+ * output     := header record* dictionary trailer
+ * header     := magic:int32 version:int32
+ * record     := person:int32 epochMonth:int32 amountBy100:int32
+ * dictionary := people:int32 (id:utf name:utf)[people]
+ * trailer    := records:int64 magic:int32
+ * </pre>
+ * The <code>person</code> field is an index into the dictionary, in the order of first appearance, and <code>epochMonth</code> is the year multiplied by 12
+ * plus the zero based month, just as in {@link ShiftFile}. Records are written as they are received, in blocks, and the dictionary only when
+ * {@link #finish()} is invoked, so that the output can be a pipe; a reader that can seek finds the dictionary at <code>8 + 12 * records</code>. An output
+ * that was {@linkplain #close() closed} without being finished has no trailer, which tells the reader that it is incomplete.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SalaryFileWriter implements Consumer<SalaryDetails>, Closeable {
+
+    static final int MAGIC = 0x53414C59;    // "SALY"
+    static final int VERSION = 1;
+
+    // The size of a record.
+    static final int RECORD_LENGTH = 4 + 4 + 4;
+
+    // The number of records written at once.
+    private static final int BLOCK_RECORDS = 4096;
+
+    private final OutputStream output;
+
+    // The person dictionary, in the order of first appearance.
+    private final Map<ShiftFile.Person, Integer> dictionary = new HashMap<>();
+    private final List<ShiftFile.Person> people = new ArrayList<>();
+
+    private final byte[] block = new byte[BLOCK_RECORDS * RECORD_LENGTH];
+    private int index;
+
+    private long records;
+
+    // Set when the trailer has been written.
+    private boolean finished;
+
+    /**
+     * Creates a new instance and writes the header to the given stream.
+     *
+     * @param output the stream to write to.
+     *
+     * @throws IOException when the output stream throws the same.
+     */
+    public SalaryFileWriter(final OutputStream output) throws IOException {
+        this.output = output;
+
+        integer(MAGIC);
+        integer(VERSION);
+    }
+
+    /**
+     * Writes a record for the given salary.
+     *
+     * @param details the salary details.
+     *
+     * @throws UncheckedIOException when the output stream fails.
+     */
+    @Override
+    public void accept(final SalaryDetails details) {
+        final ShiftFile.Person person = new ShiftFile.Person(details.personId, details.personName);
+        final Integer number = dictionary.computeIfAbsent(person, key -> {
+            people.add(key);
+            return people.size() - 1;
+        });
+
+        if (block.length - index < RECORD_LENGTH) {
+            drain();
+        }
+
+        integer(number);
+        integer(ShiftFile.epochMonth(details.month));
+        integer(details.amountBy100);
+
+        ++records;
+    }
+
+    /**
+     * Writes the remaining records, the dictionary and the trailer, and flushes the output stream. Invoke once all salaries have been received; the stream
+     * is not closed.
+     *
+     * @throws IOException when the output stream throws the same.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The output has been finished");
+        }
+
+        finished = true;
+
+        try {
+            drain();
+        } catch (final UncheckedIOException error) {
+            throw error.getCause();
+        }
+
+        final DataOutputStream trailer = new DataOutputStream(new BufferedOutputStream(output));
+
+        trailer.writeInt(people.size());
+
+        for (final ShiftFile.Person person : people) {
+            trailer.writeUTF(person.id);
+            trailer.writeUTF(person.name);
+        }
+
+        trailer.writeLong(records);
+        trailer.writeInt(MAGIC);
+        trailer.flush();
+    }
+
+    /**
+     * Discards the records not yet written, unless {@link #finish()} has been invoked, and leaves the output without the dictionary and the trailer. Call
+     * this to abandon the output when the salaries cannot be calculated. The stream is not closed.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            index = 0;
+        }
+    }
+
+    private void integer(final int value) {
+        block[index] = (byte) (value >>> 24);
+        block[index + 1] = (byte) (value >>> 16);
+        block[index + 2] = (byte) (value >>> 8);
+        block[index + 3] = (byte) value;
+
+        index += 4;
+    }
+
+    private void drain() {
+        try {
+            output.write(block, 0, index);
+        } catch (final IOException error) {
+            throw new UncheckedIOException(error);
+        } finally {
+            index = 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.binary;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.fluidity.foundation.Utility;
+
+/**
+ * Describes the binary shift file format. All numbers are big endian, and the file has the following structure:
+ * <pre>
+ * file       := header block* dictionary footer trailer
+ * header     := magic:int32 version:int32
+ * block      := section(rows:int32 person:int32[rows] epochDay:int32[rows] begin:int16[rows] end:int16[rows])
+ * dictionary := section(people:int32 (id:utf name:utf)[people])
+ * footer     := section(months:int32 month[months])
+ * month      := epochMonth:int32 rows:int32 blocks:int32 (offset:int64 rows:int32)[blocks] people:int32 (person:int32 first:int32 rows:int32)[people]
+ * trailer    := dictionary:int64 footer:int64 magic:int32
+ * section    := length:int32 compressed:int32 deflated:byte[compressed]
+ * </pre>
+ * The <code>person</code> column holds indexes into the dictionary, <code>begin</code> and <code>end</code> are minutes of the day, and
+ * <code>epochMonth</code> is the year multiplied by 12 plus the zero based month. The rows of each month are ordered by person, and the footer lists, for
+ * each person in a month, the range of rows that belong to that person, so that a reader can go straight to the blocks of one month or person.
+ */
+final class ShiftFile extends Utility {
+
+    static final int MAGIC = 0x57414745;    // "WAGE"
+    static final int VERSION = 1;
+
+    static final int HEADER_LENGTH = 8;
+    static final int SECTION_HEADER_LENGTH = 8;
+    static final int TRAILER_LENGTH = 20;
+
+    // The maximum number of rows in a block.
+    static final int BLOCK_ROWS = 4096;
+
+    // The size of a row in a decompressed block.
+    static final int ROW_LENGTH = 4 + 4 + 2 + 2;
+
+    private ShiftFile() { }
+
+    /**
+     * Converts the given month to the number stored in the file.
+     *
+     * @param month the month.
+     *
+     * @return a number.
+     */
+    static int epochMonth(final LocalDate month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    /**
+     * Converts the given number read from the file to a month.
+     *
+     * @param epochMonth the number stored in the file.
+     *
+     * @return the first day of the month; never <code>null</code>.
+     */
+    static LocalDate month(final int epochMonth) {
+        return LocalDate.of(Math.floorDiv(epochMonth, 12), Math.floorMod(epochMonth, 12) + 1, 1);
+    }
+
+    /**
+     * Compresses the given data.
+     *
+     * @param data   the data to compress.
+     * @param length the number of bytes to compress.
+     *
+     * @return the compressed data; never <code>null</code>.
+     */
+    static byte[] deflate(final byte[] data, final int length) {
+        final Deflater deflater = new Deflater();
+
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            byte[] output = new byte[Math.max(64, length / 2)];
+            int size = 0;
+
+            while (!deflater.finished()) {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+
+                size += deflater.deflate(output, size, output.length - size);
+            }
+
+            return Arrays.copyOf(output, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses the given data.
+     *
+     * @param data   the compressed data.
+     * @param length the number of bytes the data decompresses to.
+     *
+     * @return the decompressed data; never <code>null</code>.
+     *
+     * @throws IOException when the data is corrupt.
+     */
+    static byte[] inflate(final byte[] data, final int length) throws IOException {
+        final Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(data);
+
+            final byte[] output = new byte[length];
+
+            int size = 0;
+            while (size < length && !inflater.finished()) {
+                final int inflated = inflater.inflate(output, size, length - size);
+
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                size += inflated;
+            }
+
+            if (size != length) {
+                throw new IOException(String.format("corrupt section: expected %d bytes, got %d", length, size));
+            }
+
+            return output;
+        } catch (final DataFormatException error) {
+            throw new IOException("corrupt section", error);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * A person in the dictionary.
+     * <p>
+     * This is an immutable value type.
+     */
+    static final class Person {
+
+        final String id;
+        final String name;
+
+        Person(final String id, final String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (other == null || getClass() != other.getClass()) {
+                return false;
+            }
+
+            final Person that = (Person) other;
+            return id.equals(that.id) && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.fluidity.composition.Component;
+import org.fluidity.wages.csv.ParseErrors;
+import org.fluidity.wages.csv.ShiftReader;
+
+/**
+ * Converts CSV input to the binary shift file format.
+ */
+@Component
+public final class ShiftFileConverter {
+
+    private final ShiftReader shifts;
+
+    public ShiftFileConverter(final ShiftReader shifts) {
+        this.shifts = shifts;
+    }
+
+    /**
+     * Reads the shift details from the given reader and writes them to the given output stream in the format described by {@link ShiftFile}. The output
+     * stream is closed when done, with nothing written to it if the conversion fails.
+     *
+     * @param reader the reader to read CSV lines from.
+     * @param output the stream to write the binary file to.
+     *
+     * @throws IOException when the reader or the output stream throws the same.
+     */
+    public void convert(final Reader reader, final OutputStream output) throws IOException {
+        convert(reader, output, null);
+    }
+
+    /**
+     * Reads the shift details from the given reader and writes them to the given output stream in the format described by {@link ShiftFile}. Invalid
+     * lines are recorded in the given error report and skipped. The output stream is closed when done, with nothing written to it if the conversion
+     * fails.
+     *
+     * @param reader the reader to read CSV lines from.
+     * @param output the stream to write the binary file to.
+     * @param errors the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the reader or the output stream throws the same.
+     */
+    public void convert(final Reader reader, final OutputStream output, final ParseErrors errors) throws IOException {
+        try (final ShiftFileWriter writer = new ShiftFileWriter(output)) {
+            shifts.read(reader, writer, errors);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Reads the shift details from the given input stream and writes them to the given output stream in the format described by {@link ShiftFile}.
+     * Invalid lines are recorded in the given error report and skipped. Both streams are closed when done, with nothing written to the output if the
+     * conversion fails.
+     *
+     * @param input    the stream to read CSV lines from.
+     * @param encoding the character encoding of the input stream.
+     * @param output   the stream to write the binary file to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when either stream throws the same.
+     */
+    public void convert(final InputStream input, final Charset encoding, final OutputStream output, final ParseErrors errors) throws IOException {
+        try (final ShiftFileWriter writer = new ShiftFileWriter(output)) {
+            shifts.read(input, encoding, writer, errors);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Reads the shift details from the given list of inputs, concurrently, and writes them all to the given output stream in the format described by
+     * {@link ShiftFile}. The output stream is closed when done, with nothing written to it if the conversion fails.
+     *
+     * @param inputs   the list of URLs to read CSV lines from.
+     * @param encoding the character encoding of the inputs.
+     * @param output   the stream to write the binary file to.
+     * @param errors   returns the object to record the invalid lines of an input in; see {@link ShiftReader#read(List, Charset, Consumer, Function)}.
+     *
+     * @throws IOException when reading any of the inputs or writing the output fails.
+     */
+    public void convert(final List<URL> inputs, final Charset encoding, final OutputStream output, final Function<URL, ParseErrors> errors)
+            throws IOException {
+        try (final ShiftFileWriter writer = new ShiftFileWriter(output)) {
+            shifts.read(inputs, encoding, writer, errors);
+            writer.finish();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.fluidity.wages.ShiftDetails;
+
+/**
+ * Reads work shifts from a file in the format described by {@link ShiftFile}.
+ * <p>
+ * Only the dictionary and the footer are read when the file is opened; the blocks are read on demand, and only those that contain the requested month or
+ * person.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ShiftFileReader implements Closeable {
+
+    private final FileChannel channel;
+
+    private final ShiftFile.Person[] people;
+    private final List<Month> months;
+
+    /**
+     * Opens the given file.
+     *
+     * @param path the file to read.
+     *
+     * @throws IOException when the file cannot be read or is not in the expected format.
+     */
+    public ShiftFileReader(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            if (channel.size() < ShiftFile.HEADER_LENGTH + ShiftFile.TRAILER_LENGTH) {
+                throw new IOException(String.format("truncated shift file: %s", path));
+            }
+
+            final ByteBuffer header = read(0, ShiftFile.HEADER_LENGTH);
+
+            if (header.getInt() != ShiftFile.MAGIC) {
+                throw new IOException(String.format("not a shift file: %s", path));
+            }
+
+            final int version = header.getInt();
+            if (version != ShiftFile.VERSION) {
+                throw new IOException(String.format("unsupported shift file version %d: %s", version, path));
+            }
+
+            final ByteBuffer trailer = read(channel.size() - ShiftFile.TRAILER_LENGTH, ShiftFile.TRAILER_LENGTH);
+
+            final long dictionaryOffset = trailer.getLong();
+            final long footerOffset = trailer.getLong();
+
+            if (trailer.getInt() != ShiftFile.MAGIC) {
+                throw new IOException(String.format("truncated shift file: %s", path));
+            }
+
+            final DataInputStream dictionary = new DataInputStream(new ByteArrayInputStream(section(dictionaryOffset)));
+
+            this.people = new ShiftFile.Person[dictionary.readInt()];
+
+            for (int i = 0; i < people.length; ++i) {
+                people[i] = new ShiftFile.Person(dictionary.readUTF(), dictionary.readUTF());
+            }
+
+            final ByteBuffer footer = ByteBuffer.wrap(section(footerOffset));
+            final List<Month> months = new ArrayList<>();
+
+            for (int i = 0, ii = footer.getInt(); i < ii; ++i) {
+                months.add(new Month(footer));
+            }
+
+            this.months = Collections.unmodifiableList(months);
+        } catch (final IOException | RuntimeException error) {
+            channel.close();
+            throw error;
+        }
+    }
+
+    /**
+     * Returns the list of months in the file.
+     *
+     * @return a list of first days of months, in chronological order; never <code>null</code>.
+     */
+    public List<LocalDate> months() {
+        final List<LocalDate> list = new ArrayList<>(months.size());
+
+        for (final Month month : months) {
+            list.add(month.month);
+        }
+
+        return list;
+    }
+
+    /**
+     * Sends the work shifts in the file, optionally restricted to a single month and/or person, to the given consumer.
+     *
+     * @param month    the first day of the month to read the shifts of; may be <code>null</code>, in which case all months are read.
+     * @param personId the ID of the person to read the shifts of; may be <code>null</code>, in which case the shifts of all people are read.
+     * @param consumer the consumer to send the work shifts to.
+     *
+     * @throws IOException when reading the file fails.
+     */
+    public void read(final LocalDate month, final String personId, final Consumer<ShiftDetails> consumer) throws IOException {
+        final int epochMonth = month == null ? 0 : ShiftFile.epochMonth(month);
+
+        for (final Month entry : months) {
+            if (month == null || entry.epochMonth == epochMonth) {
+                if (personId == null) {
+                    entry.read(0, entry.rows, consumer);
+                } else {
+                    for (int i = 0; i < entry.people.length; ++i) {
+                        if (people[entry.people[i]].id.equals(personId)) {
+                            entry.read(entry.first[i], entry.first[i] + entry.count[i], consumer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads a decompressed section at the given offset.
+     *
+     * @param offset the offset of the section in the file.
+     *
+     * @return the decompressed section; never <code>null</code>.
+     *
+     * @throws IOException when reading fails.
+     */
+    private byte[] section(final long offset) throws IOException {
+        final ByteBuffer header = read(offset, ShiftFile.SECTION_HEADER_LENGTH);
+
+        final int length = header.getInt();
+        final int compressed = header.getInt();
+
+        return ShiftFile.inflate(read(offset + ShiftFile.SECTION_HEADER_LENGTH, compressed).array(), length);
+    }
+
+    /**
+     * Reads the given number of bytes at the given offset.
+     *
+     * @param offset the offset of the first byte in the file.
+     * @param length the number of bytes to read.
+     *
+     * @return a buffer ready to be read; never <code>null</code>.
+     *
+     * @throws IOException when reading fails.
+     */
+    private ByteBuffer read(final long offset, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The footer entry of one month.
+     */
+    private final class Month {
+
+        final int epochMonth;
+        final LocalDate month;
+        final int rows;
+
+        // The offset and the number of rows of each block.
+        final long[] offsets;
+        final int[] sizes;
+
+        // The person index, first row and number of rows of each person.
+        final int[] people;
+        final int[] first;
+        final int[] count;
+
+        Month(final ByteBuffer footer) {
+            this.epochMonth = footer.getInt();
+            this.month = ShiftFile.month(epochMonth);
+            this.rows = footer.getInt();
+
+            final int blocks = footer.getInt();
+
+            this.offsets = new long[blocks];
+            this.sizes = new int[blocks];
+
+            for (int i = 0; i < blocks; ++i) {
+                offsets[i] = footer.getLong();
+                sizes[i] = footer.getInt();
+            }
+
+            final int people = footer.getInt();
+
+            this.people = new int[people];
+            this.first = new int[people];
+            this.count = new int[people];
+
+            for (int i = 0; i < people; ++i) {
+                this.people[i] = footer.getInt();
+                this.first[i] = footer.getInt();
+                this.count[i] = footer.getInt();
+            }
+        }
+
+        /**
+         * Sends the rows in the given range to the given consumer. Only the blocks that overlap the range are read.
+         *
+         * @param from     the first row to read.
+         * @param to       the row after the last one to read.
+         * @param consumer the consumer to send the work shifts to.
+         *
+         * @throws IOException when reading fails.
+         */
+        void read(final int from, final int to, final Consumer<ShiftDetails> consumer) throws IOException {
+            for (int i = 0, start = 0; i < offsets.length && start < to; start += sizes[i++]) {
+                final int end = start + sizes[i];
+
+                if (end > from) {
+                    final ByteBuffer block = ByteBuffer.wrap(section(offsets[i]));
+                    final int size = block.getInt();
+                    assert size == sizes[i] : offsets[i];
+
+                    final int people = block.position();
+                    final int days = people + size * 4;
+                    final int begins = days + size * 4;
+                    final int ends = begins + size * 2;
+
+                    for (int row = Math.max(from, start) - start, last = Math.min(to, end) - start; row < last; ++row) {
+                        final ShiftFile.Person person = ShiftFileReader.this.people[block.getInt(people + row * 4)];
+
+                        consumer.accept(new ShiftDetails(person.id,
+                                                         person.name,
+                                                         LocalDate.ofEpochDay(block.getInt(days + row * 4)),
+                                                         time(block.getShort(begins + row * 2)),
+                                                         time(block.getShort(ends + row * 2))));
+                    }
+                }
+            }
+        }
+
+        private LocalTime time(final int minutes) {
+            return LocalTime.of(minutes / 60, minutes % 60);
+        }
+    }
+}
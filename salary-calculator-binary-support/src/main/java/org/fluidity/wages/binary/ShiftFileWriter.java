@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.fluidity.wages.ShiftDetails;
+
+/**
+ * Writes work shifts in the format described by {@link ShiftFile}.
+ * <p>
+ * The work shifts are kept in memory, grouped by month, until {@link #finish()} is invoked, at which point the whole file is written to the output
+ * stream. Nothing is written to a stream {@linkplain #close() closed} without being finished, so that a failed conversion cannot leave behind a file that
+ * looks complete.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ShiftFileWriter implements Consumer<ShiftDetails>, Closeable {
+
+    private final DataOutputStream output;
+
+    // The person dictionary, in the order of first appearance.
+    private final Map<ShiftFile.Person, Integer> dictionary = new HashMap<>();
+    private final List<ShiftFile.Person> people = new ArrayList<>();
+
+    // The work shifts, by epoch month.
+    private final Map<Integer, Rows> months = new TreeMap<>();
+
+    // The number of bytes written so far.
+    private long offset;
+
+    private boolean finished;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param output the stream to write the file to.
+     */
+    public ShiftFileWriter(final OutputStream output) {
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+    }
+
+    @Override
+    public void accept(final ShiftDetails shift) {
+        final ShiftFile.Person person = new ShiftFile.Person(shift.personId, shift.personName);
+        final Integer index = dictionary.computeIfAbsent(person, key -> {
+            people.add(key);
+            return people.size() - 1;
+        });
+
+        months.computeIfAbsent(ShiftFile.epochMonth(shift.date), key -> new Rows()).add(index,
+                                                                                        (int) shift.date.toEpochDay(),
+                                                                                        shift.begin.getHour() * 60 + shift.begin.getMinute(),
+                                                                                        shift.end.getHour() * 60 + shift.end.getMinute());
+    }
+
+    /**
+     * Writes the file and flushes the output stream. Invoke once all work shifts have been received; the stream is closed by {@link #close()}.
+     *
+     * @throws IOException when the output stream throws the same.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The file has been finished");
+        }
+
+        finished = true;
+
+        output.writeInt(ShiftFile.MAGIC);
+        output.writeInt(ShiftFile.VERSION);
+        offset = ShiftFile.HEADER_LENGTH;
+
+        final ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        final DataOutputStream index = new DataOutputStream(footer);
+
+        index.writeInt(months.size());
+
+        for (final Map.Entry<Integer, Rows> entry : months.entrySet()) {
+            index.writeInt(entry.getKey());
+            entry.getValue().write(index);
+        }
+
+        final long dictionaryOffset = offset;
+
+        final ByteArrayOutputStream names = new ByteArrayOutputStream();
+        final DataOutputStream dictionary = new DataOutputStream(names);
+
+        dictionary.writeInt(people.size());
+
+        for (final ShiftFile.Person person : people) {
+            dictionary.writeUTF(person.id);
+            dictionary.writeUTF(person.name);
+        }
+
+        section(names.toByteArray(), names.size());
+
+        final long footerOffset = offset;
+        section(footer.toByteArray(), footer.size());
+
+        output.writeLong(dictionaryOffset);
+        output.writeLong(footerOffset);
+        output.writeInt(ShiftFile.MAGIC);
+        output.flush();
+    }
+
+    /**
+     * Discards the work shifts, unless {@link #finish()} has been invoked, and closes the output stream. Call this without finishing to abandon the file
+     * when the work shifts cannot all be read.
+     *
+     * @throws IOException when the output stream throws the same.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            months.clear();
+            people.clear();
+            dictionary.clear();
+        }
+
+        output.close();
+    }
+
+    /**
+     * Writes a compressed, length prefixed section to the output.
+     *
+     * @param data   the section content.
+     * @param length the number of bytes in the section.
+     *
+     * @throws IOException when the output stream throws the same.
+     */
+    private void section(final byte[] data, final int length) throws IOException {
+        final byte[] compressed = ShiftFile.deflate(data, length);
+
+        output.writeInt(length);
+        output.writeInt(compressed.length);
+        output.write(compressed);
+
+        offset += ShiftFile.SECTION_HEADER_LENGTH + compressed.length;
+    }
+
+    /**
+     * The columns of the work shifts in one month.
+     */
+    private final class Rows {
+
+        private int[] person = new int[64];
+        private int[] epochDay = new int[64];
+        private short[] begin = new short[64];
+        private short[] end = new short[64];
+
+        private int size;
+
+        void add(final int person, final int epochDay, final int begin, final int end) {
+            if (size == this.person.length) {
+                final int capacity = size * 2;
+
+                this.person = Arrays.copyOf(this.person, capacity);
+                this.epochDay = Arrays.copyOf(this.epochDay, capacity);
+                this.begin = Arrays.copyOf(this.begin, capacity);
+                this.end = Arrays.copyOf(this.end, capacity);
+            }
+
+            this.person[size] = person;
+            this.epochDay[size] = epochDay;
+            this.begin[size] = (short) begin;
+            this.end[size] = (short) end;
+
+            ++size;
+        }
+
+        /**
+         * Writes the blocks of this month to the output and its index entry to the footer.
+         *
+         * @param index the footer.
+         *
+         * @throws IOException when the output stream throws the same.
+         */
+        void write(final DataOutputStream index) throws IOException {
+            final int count = people.size();
+
+            // Counting sort by person, which keeps the original order of each person's work shifts.
+            final int[] first = new int[count + 1];
+
+            for (int i = 0; i < size; ++i) {
+                ++first[person[i] + 1];
+            }
+
+            for (int i = 0; i < count; ++i) {
+                first[i + 1] += first[i];
+            }
+
+            final int[] order = new int[size];
+            final int[] next = Arrays.copyOf(first, count);
+
+            for (int i = 0; i < size; ++i) {
+                order[next[person[i]]++] = i;
+            }
+
+            final int blocks = (size + ShiftFile.BLOCK_ROWS - 1) / ShiftFile.BLOCK_ROWS;
+
+            index.writeInt(size);
+            index.writeInt(blocks);
+
+            final ByteArrayOutputStream content = new ByteArrayOutputStream(Math.min(size, ShiftFile.BLOCK_ROWS) * ShiftFile.ROW_LENGTH + 4);
+            final DataOutputStream block = new DataOutputStream(content);
+
+            for (int from = 0; from < size; from += ShiftFile.BLOCK_ROWS) {
+                final int to = Math.min(size, from + ShiftFile.BLOCK_ROWS);
+
+                content.reset();
+                block.writeInt(to - from);
+
+                for (int i = from; i < to; ++i) {
+                    block.writeInt(person[order[i]]);
+                }
+
+                for (int i = from; i < to; ++i) {
+                    block.writeInt(epochDay[order[i]]);
+                }
+
+                for (int i = from; i < to; ++i) {
+                    block.writeShort(begin[order[i]]);
+                }
+
+                for (int i = from; i < to; ++i) {
+                    block.writeShort(end[order[i]]);
+                }
+
+                index.writeLong(offset);
+                index.writeInt(to - from);
+
+                section(content.toByteArray(), content.size());
+            }
+
+            int present = 0;
+            for (int i = 0; i < count; ++i) {
+                if (first[i + 1] > first[i]) {
+                    ++present;
+                }
+            }
+
+            index.writeInt(present);
+
+            for (int i = 0; i < count; ++i) {
+                final int rows = first[i + 1] - first[i];
+
+                if (rows > 0) {
+                    index.writeInt(i);
+                    index.writeInt(first[i]);
+                    index.writeInt(rows);
+                }
+            }
+        }
+    }
+}
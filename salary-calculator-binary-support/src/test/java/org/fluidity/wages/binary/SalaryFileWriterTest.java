@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.time.LocalDate;
+import java.time.Month;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.SalaryDetails;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SalaryFileWriterTest extends Simulator {
+
+    private static final LocalDate MARCH = LocalDate.of(2016, Month.MARCH, 1);
+    private static final LocalDate APRIL = LocalDate.of(2016, Month.APRIL, 1);
+
+    @Test
+    public void testWritesRecords() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (final SalaryFileWriter writer = new SalaryFileWriter(output)) {
+            writer.accept(new SalaryDetails("1", "John", MARCH, 1205));
+            writer.accept(new SalaryDetails("2", "Jane", MARCH, 50));
+            writer.accept(new SalaryDetails("1", "John", APRIL, 99900));
+            writer.finish();
+        }
+
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+
+        Assert.assertEquals(output.size(), 8 + 3 * SalaryFileWriter.RECORD_LENGTH + 4 + (2 + 1 + 2 + 4) * 2 + 8 + 4);
+
+        Assert.assertEquals(input.readInt(), SalaryFileWriter.MAGIC);
+        Assert.assertEquals(input.readInt(), SalaryFileWriter.VERSION);
+
+        final int[][] records = { { 0, ShiftFile.epochMonth(MARCH), 1205 }, { 1, ShiftFile.epochMonth(MARCH), 50 }, { 0, ShiftFile.epochMonth(APRIL), 99900 } };
+
+        for (final int[] record : records) {
+            Assert.assertEquals(new int[] { input.readInt(), input.readInt(), input.readInt() }, record);
+        }
+
+        Assert.assertEquals(input.readInt(), 2);
+        Assert.assertEquals(input.readUTF(), "1");
+        Assert.assertEquals(input.readUTF(), "John");
+        Assert.assertEquals(input.readUTF(), "2");
+        Assert.assertEquals(input.readUTF(), "Jane");
+
+        Assert.assertEquals(input.readLong(), 3L);
+        Assert.assertEquals(input.readInt(), SalaryFileWriter.MAGIC);
+        Assert.assertEquals(input.read(), -1);
+    }
+
+    @Test
+    public void testLeavesUnfinishedOutputWithoutTrailer() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (final SalaryFileWriter writer = new SalaryFileWriter(output)) {
+            writer.accept(new SalaryDetails("1", "John", MARCH, 1205));
+        }
+
+        // The header and the record were still in the block, and no dictionary or trailer followed them.
+        Assert.assertEquals(output.size(), 0);
+    }
+}
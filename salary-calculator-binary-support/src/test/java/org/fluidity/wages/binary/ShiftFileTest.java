@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.binary;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.ShiftDetails;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ShiftFileTest extends Simulator {
+
+    private static final LocalDate MARCH = LocalDate.of(2016, Month.MARCH, 1);
+    private static final LocalDate APRIL = LocalDate.of(2016, Month.APRIL, 1);
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        final Path file = write(new ArrayList<>());
+
+        try (final ShiftFileReader reader = new ShiftFileReader(file)) {
+            Assert.assertTrue(reader.months().isEmpty());
+
+            final List<ShiftDetails> shifts = new ArrayList<>();
+            reader.read(null, null, shifts::add);
+
+            Assert.assertTrue(shifts.isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<ShiftDetails> input = Arrays.asList(shift("1", "John", MARCH.plusDays(2), 8, 0, 16, 30),
+                                                       shift("2", "Jane", MARCH.plusDays(2), 9, 15, 17, 45),
+                                                       shift("1", "John", APRIL.plusDays(5), 22, 0, 6, 0),
+                                                       shift("1", "John", MARCH.plusDays(3), 0, 0, 0, 1));
+
+        final Path file = write(input);
+
+        try (final ShiftFileReader reader = new ShiftFileReader(file)) {
+            Assert.assertEquals(reader.months(), Arrays.asList(MARCH, APRIL));
+
+            // rows are grouped by month and person, keeping the original order otherwise
+            Assert.assertEquals(read(reader, null, null), text(Arrays.asList(input.get(0), input.get(3), input.get(1), input.get(2))));
+
+            Assert.assertEquals(read(reader, APRIL, null), text(input.subList(2, 3)));
+            Assert.assertEquals(read(reader, null, "2"), text(input.subList(1, 2)));
+            Assert.assertEquals(read(reader, MARCH, "1"), text(Arrays.asList(input.get(0), input.get(3))));
+            Assert.assertEquals(read(reader, APRIL, "2"), text(new ArrayList<>()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMultipleBlocks() throws Exception {
+        final List<ShiftDetails> input = new ArrayList<>();
+
+        for (int i = 0; i < ShiftFile.BLOCK_ROWS * 3; ++i) {
+            final int person = i % 7;
+            input.add(shift(String.valueOf(person), "Person " + person, MARCH.plusDays(i % 31), i % 24, i % 60, (i + 8) % 24, 0));
+        }
+
+        final Path file = write(input);
+
+        try (final ShiftFileReader reader = new ShiftFileReader(file)) {
+            Assert.assertEquals(read(reader, null, null).size(), input.size());
+
+            final List<String> expected = text(input.stream().filter(shift -> shift.personId.equals("3")).collect(Collectors.toList()));
+            Assert.assertEquals(read(reader, MARCH, "3"), expected);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testRejectsForeignFile() throws Exception {
+        final Path file = Files.createTempFile("shifts", ".bin");
+
+        try {
+            Files.write(file, "Person Name,Person ID,Date,Start,End\n".getBytes("US-ASCII"));
+            new ShiftFileReader(file).close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLeavesNoFileWhenAbandoned() throws Exception {
+        final Path file = Files.createTempFile("shifts", ".bin");
+
+        try {
+            try (final ShiftFileWriter writer = new ShiftFileWriter(Files.newOutputStream(file))) {
+                writer.accept(shift("1", "John", MARCH.plusDays(2), 8, 0, 16, 30));
+
+                // The rest of the input fails to be read.
+                throw new IOException("failed");
+            } catch (final IOException error) {
+                Assert.assertEquals(error.getMessage(), "failed");
+            }
+
+            Assert.assertEquals(Files.size(file), 0L);
+
+            try {
+                new ShiftFileReader(file).close();
+                assert false;
+            } catch (final IOException error) {
+                Assert.assertTrue(error.getMessage().contains("truncated"), error.getMessage());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRejectsTruncatedFile() throws Exception {
+        final Path complete = write(Arrays.asList(shift("1", "John", MARCH.plusDays(2), 8, 0, 16, 30)));
+        final Path file = Files.createTempFile("shifts", ".bin");
+
+        try {
+            final byte[] content = Files.readAllBytes(complete);
+
+            // Valid headers with too few bytes for a trailer, and the complete file without the last byte.
+            for (final int length : new int[] { ShiftFile.HEADER_LENGTH, ShiftFile.HEADER_LENGTH + ShiftFile.TRAILER_LENGTH - 1, content.length - 1 }) {
+                Files.write(file, Arrays.copyOf(content, length));
+
+                try {
+                    new ShiftFileReader(file).close();
+                    assert false : length;
+                } catch (final IOException error) {
+                    Assert.assertTrue(error.getMessage().contains("truncated"), error.getMessage());
+                }
+            }
+        } finally {
+            Files.delete(file);
+            Files.delete(complete);
+        }
+    }
+
+    private Path write(final List<ShiftDetails> shifts) throws IOException {
+        final Path file = Files.createTempFile("shifts", ".bin");
+
+        try (final ShiftFileWriter writer = new ShiftFileWriter(Files.newOutputStream(file))) {
+            shifts.forEach(writer);
+            writer.finish();
+        }
+
+        return file;
+    }
+
+    private List<String> read(final ShiftFileReader reader, final LocalDate month, final String personId) throws IOException {
+        final List<ShiftDetails> shifts = new ArrayList<>();
+        reader.read(month, personId, shifts::add);
+        return text(shifts);
+    }
+
+    private List<String> text(final List<ShiftDetails> shifts) {
+        return shifts.stream()
+                .map(shift -> String.format("%s,%s,%s,%s,%s", shift.personId, shift.personName, shift.date, shift.begin, shift.end))
+                .collect(Collectors.toList());
+    }
+
+    private ShiftDetails shift(final String id, final String name, final LocalDate date, final int h1, final int m1, final int h2, final int m2) {
+        return new ShiftDetails(id, name, date, LocalTime.of(h1, m1), LocalTime.of(h2, m2));
+    }
+}
@@ -16,23 +16,46 @@
 
 package org.fluidity.wages.cli;
 
-import java.io.InputStreamReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.fluidity.composition.Component;
 import org.fluidity.deployment.cli.Application;
 import org.fluidity.foundation.Archives;
 import org.fluidity.wages.SalaryDetails;
+import org.fluidity.wages.binary.SalaryFileWriter;
+import org.fluidity.wages.binary.ShiftFileConverter;
+import org.fluidity.wages.csv.InputFormat;
+import org.fluidity.wages.csv.OutputBuffer;
+import org.fluidity.wages.csv.OutputFormat;
+import org.fluidity.wages.csv.ParseErrors;
 import org.fluidity.wages.csv.SalaryCalculator;
 
 @Component
@@ -40,55 +63,182 @@ final class SalariesCommand implements Application {
 
     private static final String NAME = "Monthly salary calculator";
 
+    // The extension of binary shift files.
+    private static final String SHIFTS_EXTENSION = ".shifts";
+
+    // The pattern of the input files picked from a directory.
+    private static final String INPUT_FILES = "*.{csv,ndjson,jsonl}";
+
+    // The characters that make an argument a glob pattern.
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    // The argument that stands for the standard input.
+    private static final String STDIN = "-";
+
+    // The protocol of the input URLs that name local files.
+    private static final String FILE_PROTOCOL = "file";
+
+    private static final String CONVERT_OPTION = "convert";
+    private static final String MONTH_OPTION = "month";
+    private static final String PERSON_OPTION = "person";
+    private static final String LENIENT_OPTION = "lenient";
+    private static final String ENCODING_OPTION = "encoding";
+    private static final String FOLLOW_OPTION = "follow";
+    private static final String INPUT_OPTION = "input";
+    private static final String SORTED_OPTION = "sorted";
+    private static final String FORMAT_OPTION = "format";
+
+    private static final String TEXT_FORMAT = "text";
+    private static final String CSV_FORMAT = "csv";
+    private static final String NDJSON_FORMAT = "ndjson";
+    private static final String BINARY_FORMAT = "bin";
+
+    // The size of the buffer in front of the standard output; a slow reader of the output blocks the calculation once it fills.
+    private static final int OUTPUT_BUFFER = 64 * 1024;
+
+    // The default number of seconds between polls in follow mode.
+    private static final int FOLLOW_INTERVAL = 5;
+
     private final SalaryCalculator calculator;
+    private final org.fluidity.wages.binary.SalaryCalculator shifts;
+    private final ShiftFileConverter converter;
+    private final ShiftLogFollower follower;
 
-    SalariesCommand(final SalaryCalculator calculator) {
+    SalariesCommand(final SalaryCalculator calculator,
+                    final org.fluidity.wages.binary.SalaryCalculator shifts,
+                    final ShiftFileConverter converter,
+                    final ShiftLogFollower follower) {
         this.calculator = calculator;
+        this.shifts = shifts;
+        this.converter = converter;
+        this.follower = follower;
     }
 
     private void usage(final String error, final Object... arguments) {
+        // Errors may follow machine readable output, binary or not, so they go to the standard error along with the usage.
+        final PrintStream out = error != null ? System.err : System.out;
+
         try {
             if (error != null) {
-                System.err.printf("%s error: %s%n", SalariesCommand.NAME, String.format(error, arguments));
+                out.printf("%s error: %s%n", SalariesCommand.NAME, String.format(error, arguments));
             } else {
-                System.out.println(SalariesCommand.NAME);
+                out.println(SalariesCommand.NAME);
             }
 
-            System.out.println();
-            System.out.printf("Usage: java -jar %s <CSV> [<encoding>]%n", Paths.get(Archives.root().toURI()).getFileName());
-            System.out.println();
-            System.out.println("  <CSV>:      The name of the input CSV to parse.");
-            System.out.println("");
-            System.out.println("              The first line of the CSV is its header, which is ignored.");
-            System.out.println("              Subsequent lines have the following format:");
-            System.out.println("");
-            System.out.println("              name (text), ID (text), day (date), start (time), end (time)");
-            System.out.println("");
-            System.out.println("              Dates are formatted as day.month.year, each a number.");
-            System.out.println("              Times are formatted as hour:minute, each a number.");
-            System.out.println();
-            System.out.println("  <encoding>: This is the character encoding of the CSV file.");
-            System.out.println("              If not specified, UTF-8 will be used.");
-            System.out.println();
+            out.println();
+            out.printf("Usage: java -jar %s [<options>] <CSV>... [<encoding>]%n", Paths.get(Archives.root().toURI()).getFileName());
+            out.println();
+            out.println("  <CSV>:      The name of the input CSV to parse, or - for the standard input.");
+            out.printf("              Files with the %s extension are read as binary shift files.%n", SHIFTS_EXTENSION);
+            out.println("");
+            out.println("              Files with the .ndjson or .jsonl extension are read as");
+            out.println("              newline delimited JSON objects with the members personId,");
+            out.println("              personName, date, start, and end.");
+            out.println("");
+            out.println("              Several CSV inputs may be given, each a file, a directory");
+            out.printf("              of %s files, or a glob pattern such as 'sites/*.csv'.%n", INPUT_FILES);
+            out.println("              They are parsed concurrently and calculated together,");
+            out.println("              just as if they had been concatenated in the given order.");
+            out.println("");
+            out.println("              The first line of the CSV is its header, which is ignored.");
+            out.println("              Subsequent lines have the following format:");
+            out.println("");
+            out.println("              name (text), ID (text), day (date), start (time), end (time)");
+            out.println("");
+            out.println("              Dates are formatted as day.month.year, each a number.");
+            out.println("              Times are formatted as hour:minute, each a number.");
+            out.println("              Fields may be enclosed in double quotes, and then contain");
+            out.println("              commas, line breaks, and double quotes written twice.");
+            out.println();
+            out.println("  <encoding>: This is the character encoding of the CSV files.");
+            out.printf("              It may also be given as --%s=<encoding>.%n", ENCODING_OPTION);
+            out.println("              If not specified, UTF-8 will be used.");
+            out.println();
+            out.println("  <options>:  Any of the following:");
+            out.println("");
+            out.println("              --convert=<file>  Writes the input as a binary shift file");
+            out.println("                                instead of calculating the salaries.");
+            out.println("              --month=<M/YYYY>  Calculates only the given month of a");
+            out.println("                                binary shift file.");
+            out.println("              --person=<ID>     Calculates only the given person of a");
+            out.println("                                binary shift file.");
+            out.println("              --lenient         Skips invalid lines of the CSV and lists");
+            out.println("                                them at the end instead of failing.");
+            out.printf("              --follow[=<s>]    Keeps reading lines appended to the input,%n");
+            out.printf("                                polled every <s> seconds (default: %d),%n", FOLLOW_INTERVAL);
+            out.println("                                and prints the month-to-date salaries");
+            out.println("                                of the months affected by new lines.");
+            out.println("              --input=<format>  The format of the standard input: csv");
+            out.println("                                (the default) or ndjson.");
+            out.println("              --sorted          Tells that the input is ordered by month,");
+            out.println("                                person name and ID, date, and start");
+            out.println("                                time, and lets the salaries be");
+            out.println("                                calculated as the lines are read, in");
+            out.println("                                constant memory.");
+            out.printf("              --format=<format> The output format: %s (the default),%n", TEXT_FORMAT);
+            out.printf("                                %s, with a header line and one line per%n", CSV_FORMAT);
+            out.printf("                                person and month, %s, with one JSON%n", NDJSON_FORMAT);
+            out.printf("                                object per person and month, or %s,%n", BINARY_FORMAT);
+            out.println("                                with fixed width binary records.");
+            out.println();
         } catch (final URISyntaxException e) {
             assert false : e;
         }
     }
 
-    public void run(final String... arguments) {
+    public void run(final String... parameters) {
+        final Map<String, String> options = new HashMap<>();
+        final List<String> list = new ArrayList<>();
+
+        for (final String parameter : parameters) {
+            if (parameter.startsWith("--")) {
+                final int equals = parameter.indexOf('=');
+                options.put(equals < 0 ? parameter.substring(2) : parameter.substring(2, equals), equals < 0 ? "" : parameter.substring(equals + 1));
+            } else {
+                list.add(parameter);
+            }
+        }
+
+        final String[] arguments = list.toArray(new String[list.size()]);
+
+        for (final String option : options.keySet()) {
+            if (!option.equals(CONVERT_OPTION)
+                && !option.equals(MONTH_OPTION)
+                && !option.equals(PERSON_OPTION)
+                && !option.equals(LENIENT_OPTION)
+                && !option.equals(ENCODING_OPTION)
+                && !option.equals(FOLLOW_OPTION)
+                && !option.equals(INPUT_OPTION)
+                && !option.equals(SORTED_OPTION)
+                && !option.equals(FORMAT_OPTION)) {
+                usage("unknown option: --%s", option);
+                return;
+            }
+        }
+
         if (arguments.length < 1) {
             usage("CSV file name missing");
             return;
         }
 
-        if (arguments.length > 2) {
-            usage("too many arguments");
+        // The last of several arguments is the encoding if it names one rather than an input.
+        final boolean trailingEncoding = arguments.length > 1 && !options.containsKey(ENCODING_OPTION) && isEncoding(arguments[arguments.length - 1]);
+        final String encodingName = trailingEncoding ? arguments[arguments.length - 1] : options.get(ENCODING_OPTION);
+
+        final int inputCount = trailingEncoding ? arguments.length - 1 : arguments.length;
+        final boolean stdin = Stream.of(arguments).limit(inputCount).anyMatch(STDIN::equals);
+
+        if (stdin && inputCount > 1) {
+            usage("the standard input cannot be combined with other input");
+            return;
         }
 
-        final URL url;
+        final List<URL> inputs = new ArrayList<>();
 
         try {
-            url = inputURL(arguments[0]);
+            for (int i = 0; i < inputCount && !stdin; ++i) {
+                inputs.addAll(inputURLs(arguments[i]));
+            }
         } catch (final IllegalStateException error) {
             error.printStackTrace(System.err);
             usage(null);
@@ -101,14 +251,199 @@ final class SalariesCommand implements Application {
         final Charset encoding;
 
         try {
-            encoding = arguments.length > 1 ? Charset.forName(arguments[1]) : StandardCharsets.UTF_8;
-        } catch (final UnsupportedCharsetException error) {
-            usage("unknown character encoding: %s", arguments[1]);
+            encoding = encodingName != null ? Charset.forName(encodingName) : StandardCharsets.UTF_8;
+        } catch (final IllegalArgumentException error) {
+            usage("unknown character encoding: %s", encodingName);
+            return;
+        }
+
+        final InputFormat format;
+
+        try {
+            format = options.containsKey(INPUT_OPTION) ? InputFormat.valueOf(options.get(INPUT_OPTION).toUpperCase(Locale.ROOT)) : InputFormat.CSV;
+        } catch (final IllegalArgumentException error) {
+            usage("unknown input format: %s", options.get(INPUT_OPTION));
+            return;
+        }
+
+        final String outputFormat = options.getOrDefault(FORMAT_OPTION, TEXT_FORMAT);
+
+        if (!outputFormat.equals(TEXT_FORMAT)
+            && !outputFormat.equals(CSV_FORMAT)
+            && !outputFormat.equals(NDJSON_FORMAT)
+            && !outputFormat.equals(BINARY_FORMAT)) {
+            usage("unknown output format: %s", outputFormat);
+            return;
+        }
+
+        final boolean sorted = options.containsKey(SORTED_OPTION);
+
+        final boolean binary = inputs.stream().anyMatch(url -> url.getPath().endsWith(SHIFTS_EXTENSION));
+        final String target = options.get(CONVERT_OPTION);
+
+        final LocalDate month;
+
+        try {
+            month = options.containsKey(MONTH_OPTION) ? month(options.get(MONTH_OPTION)) : null;
+        } catch (final IllegalArgumentException | DateTimeException error) {
+            usage("invalid month: %s", options.get(MONTH_OPTION));
+            return;
+        }
+
+        final String person = options.get(PERSON_OPTION);
+
+        if (binary && inputs.size() > 1) {
+            usage("binary shift files cannot be combined with other input");
+            return;
+        }
+
+        if (binary && !FILE_PROTOCOL.equals(inputs.get(0).getProtocol())) {
+            usage("binary shift files must be local files: %s", inputs.get(0));
+            return;
+        }
+
+        if (stdin && target != null) {
+            usage("the standard input cannot be converted");
+            return;
+        }
+
+        if (binary && target != null) {
+            usage("binary shift files cannot be converted");
             return;
         }
 
-        // Prints the list of people with their salaries, under a header that identifies the month
-        final Consumer<SalaryDetails> printer = new Consumer<SalaryDetails>() {
+        if (!binary && (month != null || person != null)) {
+            usage("--%s and --%s require a binary shift file", MONTH_OPTION, PERSON_OPTION);
+            return;
+        }
+
+        final long interval;
+
+        try {
+            final String value = options.get(FOLLOW_OPTION);
+            interval = value == null || value.isEmpty() ? FOLLOW_INTERVAL * 1000L : Math.round(Double.parseDouble(value) * 1000);
+        } catch (final NumberFormatException error) {
+            usage("invalid follow interval: %s", options.get(FOLLOW_OPTION));
+            return;
+        }
+
+        final boolean follow = options.containsKey(FOLLOW_OPTION);
+
+        if (follow && (binary || target != null || inputs.size() != 1 || interval <= 0)) {
+            usage("--%s requires a single local CSV or NDJSON file, a positive interval, and no --%s", FOLLOW_OPTION, CONVERT_OPTION);
+            return;
+        }
+
+        if (follow && !FILE_PROTOCOL.equals(inputs.get(0).getProtocol())) {
+            usage("--%s requires a local file: %s", FOLLOW_OPTION, inputs.get(0));
+            return;
+        }
+
+        if (follow && !outputFormat.equals(TEXT_FORMAT)) {
+            usage("--%s prints %s output only", FOLLOW_OPTION, TEXT_FORMAT);
+            return;
+        }
+
+        // The invalid lines of each input in lenient mode.
+        final Map<URL, ParseErrors> errors = new LinkedHashMap<>();
+        final Function<URL, ParseErrors> reports = options.containsKey(LENIENT_OPTION)
+                                                   ? url -> errors.computeIfAbsent(url, key -> new ParseErrors())
+                                                   : url -> null;
+
+        // This below is the actual logic; up to here we were just preparing for this...
+
+        // The output goes through a buffer of fixed size straight to the standard output, so that a slow reader holds up the calculation.
+        final OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+        final boolean text = outputFormat.equals(TEXT_FORMAT);
+
+        try (final OutputBuffer buffer = new OutputBuffer(stdout, text ? Charset.defaultCharset() : StandardCharsets.UTF_8, OUTPUT_BUFFER);
+             final SalaryFileWriter records = outputFormat.equals(BINARY_FORMAT) ? new SalaryFileWriter(stdout) : null) {
+            final Consumer<SalaryDetails> printer = records != null
+                                                    ? records
+                                                    : outputFormat.equals(CSV_FORMAT)
+                                                      ? OutputFormat.CSV.writer(buffer)
+                                                      : outputFormat.equals(NDJSON_FORMAT) ? OutputFormat.NDJSON.writer(buffer) : printer(buffer);
+
+            if (stdin) {
+                calculator.process(System.in, encoding, format, sorted, printer, reports.apply(null));
+            } else if (follow) {
+                follower.follow(Paths.get(inputs.get(0).toURI()),
+                                encoding,
+                                InputFormat.of(inputs.get(0).getPath(), null),
+                                interval,
+                                reports.apply(inputs.get(0)),
+                                () -> printer(buffer),
+                                buffer);
+            } else if (binary) {
+                shifts.process(Paths.get(inputs.get(0).toURI()), month, person, printer);
+            } else if (target != null) {
+                convert(inputs, encoding, Paths.get(target), reports);
+            } else {
+                calculator.process(inputs, encoding, sorted, printer, reports);
+            }
+
+            // Only a complete output gets a trailer; when the calculation fails, the writer is closed without one.
+            if (records != null) {
+                records.finish();
+            }
+        } catch (final Exception error) {
+            usage("Error processing '%s': %s", stdin ? STDIN : inputs.size() == 1 ? inputs.get(0) : inputs, error);
+            error.printStackTrace(System.err);
+        }
+
+        errors.forEach((url, report) -> {
+            if (report.count() > 0) {
+                if (errors.size() == 1) {
+                    System.err.printf("Skipped %d invalid line(s):%n", report.count());
+                } else {
+                    System.err.printf("Skipped %d invalid line(s) in %s:%n", report.count(), url);
+                }
+
+                report.entries().forEach(entry -> System.err.printf(" %s%n", entry));
+
+                final int omitted = report.count() - report.entries().size();
+                if (omitted > 0) {
+                    System.err.printf(" ... and %d more%n", omitted);
+                }
+            }
+        });
+    }
+
+    /**
+     * Converts the given inputs to the given shift file. The file is written under a temporary name in the same directory, and moved in place only when the
+     * conversion succeeds, so that a failed conversion leaves no file, nor a partial one, behind.
+     *
+     * @param inputs   the list of URLs to read CSV lines from.
+     * @param encoding the character encoding of the inputs.
+     * @param target   the shift file to write.
+     * @param reports  returns the object to record the invalid lines of an input in.
+     *
+     * @throws IOException when reading any of the inputs or writing the file fails.
+     */
+    private void convert(final List<URL> inputs, final Charset encoding, final Path target, final Function<URL, ParseErrors> reports) throws IOException {
+        final Path file = target.toAbsolutePath();
+        final Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+        try {
+            try (final OutputStream output = Files.newOutputStream(temporary)) {
+                converter.convert(inputs, encoding, output, reports);
+            }
+
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Creates a consumer that prints the list of people with their salaries, under a header that identifies the month.
+     *
+     * @param output the buffer to print to.
+     *
+     * @return a new consumer; never <code>null</code>.
+     */
+    private Consumer<SalaryDetails> printer(final OutputBuffer output) {
+        return new Consumer<SalaryDetails>() {
 
             // The current month.
             private LocalDate month;
@@ -119,22 +454,118 @@ final class SalariesCommand implements Application {
                     month = details.month;
 
                     // The month header
-                    System.out.printf("Salaries for %d/%d:%n", month.getMonthValue(), month.getYear());
+                    output.append("Salaries for ").append(month.getMonthValue()).append('/').append(month.getYear()).append(':').newLine();
                 }
 
                 // The person's salary details.
-                System.out.printf(" %s, %s, %s%n", details.personId, details.personName, details.amount());
+                output.append(' ').append(details.personId).append(", ").append(details.personName).append(", ");
+                output.amount(details.amountBy100).newLine();
             }
         };
+    }
 
-        // This below is the actual logic; up to here we were just preparing for this...
+    /**
+     * Tells if the given argument names a supported character encoding rather than an input.
+     *
+     * @param argument the command line argument.
+     *
+     * @return <code>true</code> if the argument is an encoding; <code>false</code> otherwise.
+     */
+    private boolean isEncoding(final String argument) {
+        try {
+            return !Files.exists(Paths.get(argument)) && Charset.isSupported(argument);
+        } catch (final IllegalArgumentException error) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the URLs that correspond to the given input, which is either a directory, a glob pattern, a local file, or a valid URL. The files of a
+     * directory or a pattern are returned in the order of their names.
+     *
+     * @param input a directory, a glob pattern, a file name, or an URL.
+     *
+     * @return a list of URLs; never <code>null</code> or empty.
+     *
+     * @throws IllegalArgumentException when the given input matches no files, or the file does not exist or is not readable, or is an invalid URL.
+     * @throws IllegalStateException    when a file cannot be turned into an URL.
+     */
+    private List<URL> inputURLs(final String input) {
+        final List<Path> files;
 
         try {
-            calculator.process(new InputStreamReader(url.openStream(), encoding), printer);
-        } catch (final Exception error) {
-            usage("Error processing '%s': %s", url, error);
-            error.printStackTrace(System.err);
+            if (Files.isDirectory(Paths.get(input))) {
+                try (final DirectoryStream<Path> directory = Files.newDirectoryStream(Paths.get(input), INPUT_FILES)) {
+                    files = new ArrayList<>();
+                    directory.forEach(files::add);
+                }
+            } else if (!Files.exists(Paths.get(input)) && input.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) {
+                files = glob(input);
+            } else {
+                final List<URL> list = new ArrayList<>();
+                list.add(inputURL(input));
+                return list;
+            }
+        } catch (final IOException error) {
+            throw new IllegalArgumentException(String.format("cannot list files: %s (%s)", input, error.getMessage()));
+        }
+
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException(String.format("no input files found: %s", input));
+        }
+
+        return files.stream().filter(Files::isRegularFile).sorted().map(file -> inputURL(file.toString())).collect(Collectors.toList());
+    }
+
+    /**
+     * Finds the files that match the given glob pattern. The search starts in the longest directory prefix of the pattern that contains no glob
+     * characters.
+     *
+     * @param pattern the glob pattern.
+     *
+     * @return the list of matching files; never <code>null</code>.
+     *
+     * @throws IOException when listing a directory fails.
+     */
+    private List<Path> glob(final String pattern) throws IOException {
+        final String separator = FileSystems.getDefault().getSeparator();
+
+        int wildcard = 0;
+        while (GLOB_CHARACTERS.indexOf(pattern.charAt(wildcard)) < 0) {
+            ++wildcard;
+        }
+
+        final int split = Math.max(pattern.lastIndexOf('/', wildcard), pattern.lastIndexOf(separator, wildcard));
+        final Path base = Paths.get(split < 0 ? "." : split == 0 ? separator : pattern.substring(0, split));
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(String.format("glob:%s", pattern.substring(split + 1)));
+
+        if (!Files.isDirectory(base)) {
+            return new ArrayList<>();
         }
+
+        try (final Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(path -> Files.isRegularFile(path) && matcher.matches(base.relativize(path))).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Parses a month given as month/year.
+     *
+     * @param text the text to parse.
+     *
+     * @return the first day of the month; never <code>null</code>.
+     *
+     * @throws IllegalArgumentException when the text is not in the expected format.
+     * @throws DateTimeException        when the text does not denote a valid month.
+     */
+    private LocalDate month(final String text) {
+        final int slash = text.indexOf('/');
+
+        if (slash < 0) {
+            throw new IllegalArgumentException(text);
+        }
+
+        return LocalDate.of(Integer.parseInt(text.substring(slash + 1).trim()), Integer.parseInt(text.substring(0, slash).trim()), 1);
     }
 
     /**
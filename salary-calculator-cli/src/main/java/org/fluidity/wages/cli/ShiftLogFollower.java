@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.cli;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.fluidity.composition.Component;
+import org.fluidity.wages.SalaryCalculator;
+import org.fluidity.wages.SalaryDetails;
+import org.fluidity.wages.ShiftDetails;
+import org.fluidity.wages.csv.InputFormat;
+import org.fluidity.wages.csv.ParseErrors;
+import org.fluidity.wages.csv.ShiftReader;
+
+/**
+ * Follows a CSV or NDJSON file that is being appended to. The file is polled for new content, of which only the bytes appended since the last poll are read
+ * and parsed. The shifts are kept by month and person, along with the month-to-date salary of each person. Whenever new shifts arrive, only the salaries of
+ * the people they belong to are recalculated, and the salaries of the affected months are printed.
+ * <p>
+ * A line is parsed only when its line terminator has been appended: until then, the writer of the file may be in the middle of writing it. An incomplete
+ * last line is thus held back for as long as the file is followed.
+ * <p>
+ * The invalid lines are reported to the standard error after each poll: those the error report keeps are listed, and the rest are counted.
+ */
+@Component
+final class ShiftLogFollower {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // The order the salary calculator sends the salaries of a month in.
+    private static final Comparator<SalaryDetails> PEOPLE = Comparator.<SalaryDetails, String>comparing(salary -> salary.personName)
+                                                                      .thenComparing(salary -> salary.personId);
+
+    private final ShiftReader reader;
+    private final SalaryCalculator.Factory calculators;
+
+    ShiftLogFollower(final ShiftReader reader, final SalaryCalculator.Factory calculators) {
+        this.reader = reader;
+        this.calculators = calculators;
+    }
+
+    /**
+     * Follows the given file until the calling thread is interrupted.
+     *
+     * @param file     the file to follow.
+     * @param encoding the character encoding of the file; must be UTF-8, ISO-8859-1, or US-ASCII.
+     * @param format   the format of the file.
+     * @param interval the number of milliseconds between polls.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line stops following the file.
+     * @param printers creates a consumer to print the salaries of each update with.
+     * @param output   the output to flush after each update.
+     *
+     * @throws IOException when reading the file fails, or the file gets truncated.
+     */
+    void follow(final Path file,
+                final Charset encoding,
+                final InputFormat format,
+                final long interval,
+                final ParseErrors errors,
+                final Supplier<Consumer<SalaryDetails>> printers,
+                final Flushable output) throws IOException {
+
+        // The shifts by month, and by person ID within each month.
+        final Map<LocalDate, Map<String, List<ShiftDetails>>> shifts = new TreeMap<>();
+
+        // The month-to-date salaries by month, and by person ID within each month.
+        final Map<LocalDate, Map<String, SalaryDetails>> salaries = new HashMap<>();
+
+        // The people with new shifts since the last update, by month.
+        final Map<LocalDate, Set<String>> changed = new TreeMap<>();
+
+        final Consumer<ShiftDetails> collector = shift -> {
+            final LocalDate month = shift.date.withDayOfMonth(1);
+
+            shifts.computeIfAbsent(month, key -> new HashMap<>()).computeIfAbsent(shift.personId, key -> new ArrayList<>()).add(shift);
+            changed.computeIfAbsent(month, key -> new TreeSet<>()).add(shift.personId);
+        };
+
+        final Consumer<SalaryDetails> updater = salary -> salaries.computeIfAbsent(salary.month, key -> new HashMap<>()).put(salary.personId, salary);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             final ShiftReader.Feed feed = reader.feed(encoding, format, collector, errors)) {
+            long offset = 0;
+
+            // The invalid lines listed so far, and the number of those not listed as they exceeded the limit of the error report.
+            int reported = 0;
+            int omitted = 0;
+
+            while (!Thread.currentThread().isInterrupted()) {
+                final long size = channel.size();
+
+                if (size < offset) {
+                    throw new IOException(String.format("file truncated: %s", file));
+                }
+
+                while (offset < size) {
+                    buffer.clear();
+
+                    final int read = channel.read(buffer, offset);
+
+                    if (read <= 0) {
+                        break;
+                    }
+
+                    feed.accept(buffer.array(), 0, read);
+                    offset += read;
+                }
+
+                if (!changed.isEmpty()) {
+
+                    // Only the people with new shifts are recalculated, each from all of their shifts in the month.
+                    try (final SalaryCalculator calculator = calculators.create(updater)) {
+                        changed.forEach((month, people) -> people.forEach(person -> shifts.get(month).get(person).forEach(calculator)));
+                    }
+
+                    final Consumer<SalaryDetails> printer = printers.get();
+                    changed.keySet().forEach(month -> salaries.get(month).values().stream().sorted(PEOPLE).forEach(printer));
+
+                    output.flush();
+
+                    changed.clear();
+                }
+
+                if (errors != null) {
+                    final List<ParseErrors.Entry> entries = errors.entries();
+
+                    for (; reported < entries.size(); ++reported) {
+                        System.err.printf("Skipped invalid line: %s%n", entries.get(reported));
+                    }
+
+                    final int unlisted = errors.count() - entries.size();
+
+                    if (unlisted > omitted) {
+                        System.err.printf("Skipped %d more invalid line(s)%n", unlisted - omitted);
+                        omitted = unlisted;
+                    }
+                }
+
+                try {
+                    Thread.sleep(interval);
+                } catch (final InterruptedException error) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.SalaryCalculator;
+import org.fluidity.wages.SalaryDetails;
+import org.fluidity.wages.ShiftDetails;
+import org.fluidity.wages.csv.InputFormat;
+import org.fluidity.wages.csv.ParseErrors;
+import org.fluidity.wages.csv.Parsers;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ShiftLogFollowerTest extends Simulator {
+
+    private static final long INTERVAL = 20;
+    private static final long TIMEOUT = 10;
+
+    // The number of shifts the salary calculators have received.
+    private final AtomicInteger calculated = new AtomicInteger();
+
+    // A stand-in for the actual salary calculation: each work shift is paid one cent per minute, and each person gets one salary per month.
+    private final SalaryCalculator.Factory calculators = new SalaryCalculator.Factory() {
+        @Override
+        public SalaryCalculator create(final Consumer<SalaryDetails> consumer) {
+            return create(consumer, false);
+        }
+
+        @Override
+        public SalaryCalculator create(final Consumer<SalaryDetails> consumer, final boolean sorted) {
+            return new SalaryCalculator() {
+                private final Map<String, SalaryDetails> salaries = new HashMap<>();
+
+                @Override
+                public void accept(final ShiftDetails shift) {
+                    calculated.incrementAndGet();
+
+                    final String key = String.format("%s/%s", shift.personId, shift.date.withDayOfMonth(1));
+                    final int amount = (int) Duration.between(shift.begin, shift.end).toMinutes();
+
+                    salaries.merge(key,
+                                   new SalaryDetails(shift.personId, shift.personName, shift.date.withDayOfMonth(1), amount),
+                                   (old, ignored) -> new SalaryDetails(old.personId, old.personName, old.month, old.amountBy100 + amount));
+                }
+
+                @Override
+                public void flush() {
+                    salaries.values().forEach(consumer);
+                    salaries.clear();
+                }
+
+                @Override
+                public void close() {
+                    flush();
+                }
+            };
+        }
+    };
+
+    private final ShiftLogFollower follower = new ShiftLogFollower(Parsers.reader(), calculators);
+
+    @Test
+    public void testFollowsAppendedLines() throws Exception {
+        final Path file = Files.createTempFile("shifts", ".csv");
+        final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        final PrintStream console = System.err;
+
+        // The salaries printed by each update.
+        final BlockingQueue<List<String>> updates = new LinkedBlockingQueue<>();
+        final AtomicReference<List<String>> update = new AtomicReference<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final Thread thread = new Thread(() -> {
+            try {
+                follower.follow(file, StandardCharsets.UTF_8, InputFormat.CSV, INTERVAL, new ParseErrors(1), () -> {
+                    final List<String> salaries = new ArrayList<>();
+                    update.set(salaries);
+                    return salary -> salaries.add(String.format("%s %s %d", salary.month, salary.personName, salary.amountBy100));
+                }, () -> updates.add(update.get()));
+            } catch (final Throwable error) {
+                failure.set(error);
+            }
+        });
+
+        System.setErr(new PrintStream(stderr, true));
+
+        try {
+
+            // The last line is not complete yet.
+            append(file, "Person Name,Person ID,Date,Start,End\nJohn Doe,1,3.3.2014,9:00,10:00\nJane Doe,2,4.3");
+            thread.start();
+
+            Assert.assertEquals(updates.poll(TIMEOUT, TimeUnit.SECONDS), Arrays.asList("2014-03-01 John Doe 60"));
+            Assert.assertEquals(calculated.getAndSet(0), 1);
+
+            append(file, ".2014,9:00,9:30\nJohn Doe,1,3.4.2014,9:00,9:15\n");
+
+            // John's March salary is printed again, but it is not recalculated.
+            Assert.assertEquals(updates.poll(TIMEOUT, TimeUnit.SECONDS),
+                                Arrays.asList("2014-03-01 Jane Doe 30", "2014-03-01 John Doe 60", "2014-04-01 John Doe 15"));
+            Assert.assertEquals(calculated.getAndSet(0), 2);
+
+            append(file, "John Doe,1,5.3.2014,9:00,9:45\n");
+
+            // Jane's salary is not recalculated, and John's is recalculated from both of his March shifts.
+            Assert.assertEquals(updates.poll(TIMEOUT, TimeUnit.SECONDS), Arrays.asList("2014-03-01 Jane Doe 30", "2014-03-01 John Doe 105"));
+            Assert.assertEquals(calculated.getAndSet(0), 2);
+
+            // The error report keeps one invalid line; the others are counted.
+            append(file, "invalid\ninvalid\ninvalid\n");
+            await(stderr, "Skipped 2 more invalid line(s)");
+
+            append(file, "invalid\n");
+            await(stderr, "Skipped 1 more invalid line(s)");
+
+            final String[] report = stderr.toString().split("\\r?\\n");
+
+            Assert.assertEquals(report.length, 3, stderr.toString());
+            Assert.assertTrue(report[0].startsWith("Skipped invalid line: "), report[0]);
+            Assert.assertTrue(updates.isEmpty());
+
+            Files.write(file, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+
+            Assert.assertTrue(failure.get() instanceof IOException, String.valueOf(failure.get()));
+            Assert.assertTrue(failure.get().getMessage().contains("truncated"), failure.get().getMessage());
+        } finally {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+            System.setErr(console);
+            Files.delete(file);
+        }
+    }
+
+    private static void append(final Path file, final String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static void await(final ByteArrayOutputStream output, final String text) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+
+        while (!output.toString().contains(text)) {
+            Assert.assertTrue(System.nanoTime() < deadline, output.toString());
+            Thread.sleep(INTERVAL);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.csv;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits chunks of raw input bytes into lines, which are then sent to a consumer. Lines are terminated by a line feed, a carriage return, or both, just like
+ * with {@link java.io.BufferedReader#readLine()}, except within quoted fields, if enabled, which may span several lines. Lines that lie entirely in one chunk are passed
+ * on without copying, while lines that span chunks are assembled in an internal buffer.
+ */
+final class ByteLines implements Parser.Chunks {
+
+    // Flag the bytes that the splitter must look at: line terminators and, if quoted fields are recognized, quotes. All other bytes take a single table
+    // lookup.
+    private static final boolean[] LINES = new boolean[256];
+    private static final boolean[] QUOTED_LINES = new boolean[256];
+
+    static {
+        LINES['\n'] = QUOTED_LINES['\n'] = true;
+        LINES['\r'] = QUOTED_LINES['\r'] = true;
+        QUOTED_LINES['"'] = true;
+    }
+
+    private final boolean[] special;
+
+    private final Consumer<Line> consumer;
+    private final Line.Bytes line;
+
+    // The beginning of a line that started in a previous chunk.
+    private byte[] carry = new byte[256];
+    private int carried;
+
+    // Set when the previous chunk ended with a carriage return.
+    private boolean cr;
+
+    // Set when the current line contains a quote character.
+    private boolean quotes;
+
+    // Set when the current line has an odd number of quote characters so far, meaning that a quoted field is open.
+    private boolean quoted;
+
+    // The number of line breaks inside quoted fields in the current line so far.
+    private int breaks;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param encoding the character encoding of the input; one accepted by {@link Line.Bytes#supports(Charset)}.
+     * @param quoting  tells if line breaks within double quotes are part of the line.
+     * @param consumer the consumer to send the lines to.
+     */
+    ByteLines(final Charset encoding, final boolean quoting, final Consumer<Line> consumer) {
+        this.special = quoting ? QUOTED_LINES : LINES;
+        this.consumer = consumer;
+        this.line = new Line.Bytes(encoding);
+    }
+
+    @Override
+    public void accept(final byte[] data, final int offset, final int length) {
+        final int end = offset + length;
+
+        int start = offset;
+
+        if (cr && start < end) {
+            cr = false;
+
+            if (data[start] == '\n') {
+                ++start;
+            }
+        }
+
+        for (int i = start; i < end; ++i) {
+            if (special[data[i] & 0xFF]) {
+                final byte b = data[i];
+
+                if (b == '"') {
+                    quotes = true;
+                    quoted = !quoted;
+                } else if (quoted) {
+                    // A carriage return and line feed pair is a single line break.
+                    if (b == '\r' || (i > offset ? data[i - 1] : carried > 0 ? carry[carried - 1] : 0) != '\r') {
+                        ++breaks;
+                    }
+                } else {
+                    emit(data, start, i);
+
+                    if (b == '\r') {
+                        if (i + 1 == end) {
+                            cr = true;
+                        } else if (data[i + 1] == '\n') {
+                            ++i;
+                        }
+                    }
+
+                    start = i + 1;
+                }
+            }
+        }
+
+        if (start < end) {
+            append(data, start, end);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (carried > 0) {
+            consumer.accept(line.set(carry, 0, carried, quotes, breaks));
+            carried = 0;
+            quotes = false;
+            quoted = false;
+            breaks = 0;
+        }
+    }
+
+    private void emit(final byte[] data, final int from, final int to) {
+        if (carried > 0) {
+            append(data, from, to);
+            consumer.accept(line.set(carry, 0, carried, quotes, breaks));
+            carried = 0;
+        } else {
+            consumer.accept(line.set(data, from, to - from, quotes, breaks));
+        }
+
+        quotes = false;
+        breaks = 0;
+    }
+
+    private void append(final byte[] data, final int from, final int to) {
+        final int length = to - from;
+
+        if (carried + length > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carried + length));
+        }
+
+        System.arraycopy(data, from, carry, carried, length);
+        carried += length;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.util.Locale;
+
+/**
+ * The supported formats of work shift input.
+ */
+public enum InputFormat {
+
+    /**
+     * Comma separated values with a header line, parsed as described at {@link Parser}.
+     */
+    CSV(new String[] { "text/csv", "application/csv" }, ".csv"),
+
+    /**
+     * Newline delimited JSON, one object per work shift, parsed as described at {@link NdjsonParser}.
+     */
+    NDJSON(new String[] { "application/x-ndjson", "application/ndjson", "application/jsonl" }, ".ndjson", ".jsonl");
+
+    private final String[] contentTypes;
+    private final String[] extensions;
+
+    InputFormat(final String[] contentTypes, final String... extensions) {
+        this.contentTypes = contentTypes;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Tells the format of some input from its content type or, if that is not conclusive, its name.
+     *
+     * @param name        the file name or URL path of the input; may be <code>null</code>.
+     * @param contentType the MIME content type of the input, optionally with parameters; may be <code>null</code>.
+     *
+     * @return the format of the input; {@link #CSV} if neither the content type nor the name is recognized.
+     */
+    public static InputFormat of(final String name, final String contentType) {
+        final InputFormat type = of(contentType);
+
+        if (type != null) {
+            return type;
+        }
+
+        if (name != null) {
+            final String lowerCase = name.toLowerCase(Locale.ROOT);
+
+            for (final InputFormat format : values()) {
+                for (final String extension : format.extensions) {
+                    if (lowerCase.endsWith(extension)) {
+                        return format;
+                    }
+                }
+            }
+        }
+
+        return CSV;
+    }
+
+    /**
+     * Tells the format of some input from its content type.
+     *
+     * @param contentType the MIME content type of the input, optionally with parameters; may be <code>null</code>.
+     *
+     * @return the format of the input, or <code>null</code> if the content type is not recognized.
+     */
+    public static InputFormat of(final String contentType) {
+        if (contentType != null) {
+            final int semicolon = contentType.indexOf(';');
+            final String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+
+            for (final InputFormat format : values()) {
+                for (final String known : format.contentTypes) {
+                    if (known.equals(type)) {
+                        return format;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.csv;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable view of one line of CSV input. The line is either a character string, decoded by a {@link java.io.Reader}, or a range of raw input bytes, in
+ * which case only the text fields that are actually needed get decoded. A line is a whole CSV record, and as such it may contain line breaks inside
+ * quoted fields.
+ */
+abstract class Line {
+
+    /**
+     * Returns the number of characters or bytes in the line.
+     *
+     * @return a number; greater than or equal to <code>0</code>.
+     */
+    abstract int length();
+
+    /**
+     * Returns the character or unsigned byte at the given index. ASCII characters are always returned as is.
+     *
+     * @param index the index; between <code>0</code> and {@link #length()}.
+     *
+     * @return a character or an unsigned byte.
+     */
+    abstract int at(int index);
+
+    /**
+     * Returns the text between the given indexes.
+     *
+     * @param from the index of the first character.
+     * @param to   the index after the last character.
+     *
+     * @return a character string; never <code>null</code>.
+     */
+    abstract String text(int from, int to);
+
+    /**
+     * Tells if the line contains any quote character. Lines without one take the fast path of splitting at every comma.
+     *
+     * @return <code>true</code> if the line contains a quote character; <code>false</code> otherwise.
+     */
+    abstract boolean quotes();
+
+    /**
+     * Returns the number of line breaks inside the quoted fields of the line, which tells how many physical lines of input the line spans besides the first.
+     *
+     * @return a number; greater than or equal to <code>0</code>.
+     */
+    abstract int breaks();
+
+    /**
+     * A line decoded to a character string.
+     */
+    static final class Chars extends Line {
+
+        private String text;
+        private boolean quotes;
+        private int breaks;
+
+        /**
+         * Makes this object represent the given line.
+         *
+         * @param text   the line.
+         * @param quotes tells if the line contains a quote character.
+         * @param breaks the number of line breaks inside quoted fields.
+         *
+         * @return this object.
+         */
+        Chars set(final String text, final boolean quotes, final int breaks) {
+            this.text = text;
+            this.quotes = quotes;
+            this.breaks = breaks;
+            return this;
+        }
+
+        @Override
+        int length() {
+            return text.length();
+        }
+
+        @Override
+        int at(final int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        String text(final int from, final int to) {
+            return text.substring(from, to);
+        }
+
+        @Override
+        boolean quotes() {
+            return quotes;
+        }
+
+        @Override
+        int breaks() {
+            return breaks;
+        }
+    }
+
+    /**
+     * A line of raw bytes in an ASCII compatible encoding. Text made up of ASCII bytes only is copied to a character string without going through a charset
+     * decoder.
+     */
+    static final class Bytes extends Line {
+
+        private final Charset encoding;
+
+        // Set when every byte maps to the character with the same code.
+        private final boolean latin1;
+
+        private byte[] data;
+        private int offset;
+        private int length;
+        private boolean quotes;
+        private int breaks;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param encoding the encoding of the bytes; one accepted by {@link #supports(Charset)}.
+         */
+        Bytes(final Charset encoding) {
+            assert supports(encoding) : encoding;
+            this.encoding = encoding;
+            this.latin1 = StandardCharsets.ISO_8859_1.equals(encoding);
+        }
+
+        /**
+         * Tells if lines in the given encoding can be represented by this class.
+         *
+         * @param encoding the character encoding.
+         *
+         * @return <code>true</code> if the encoding is supported; <code>false</code> otherwise.
+         */
+        static boolean supports(final Charset encoding) {
+            return StandardCharsets.UTF_8.equals(encoding) || StandardCharsets.ISO_8859_1.equals(encoding) || StandardCharsets.US_ASCII.equals(encoding);
+        }
+
+        /**
+         * Makes this object represent the given line.
+         *
+         * @param data   the buffer containing the line.
+         * @param offset the index of the first byte of the line in the buffer.
+         * @param length the number of bytes in the line.
+         * @param quotes tells if the line contains a quote character.
+         * @param breaks the number of line breaks inside quoted fields.
+         *
+         * @return this object.
+         */
+        Bytes set(final byte[] data, final int offset, final int length, final boolean quotes, final int breaks) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.quotes = quotes;
+            this.breaks = breaks;
+            return this;
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+
+        @Override
+        int at(final int index) {
+            return data[offset + index] & 0xFF;
+        }
+
+        @Override
+        String text(final int from, final int to) {
+            final int start = offset + from;
+            final int count = to - from;
+
+            if (latin1 || ascii(start, start + count)) {
+                return new String(data, start, count, StandardCharsets.ISO_8859_1);
+            } else {
+                return new String(data, start, count, encoding);
+            }
+        }
+
+        @Override
+        boolean quotes() {
+            return quotes;
+        }
+
+        @Override
+        int breaks() {
+            return breaks;
+        }
+
+        private boolean ascii(final int from, final int to) {
+            for (int i = from; i < to; ++i) {
+                if (data[i] < 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
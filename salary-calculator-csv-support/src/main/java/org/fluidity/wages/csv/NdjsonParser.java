@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.fluidity.composition.Component;
+import org.fluidity.foundation.Configuration;
+import org.fluidity.wages.ShiftDetails;
+
+/**
+ * Parses newline delimited JSON, each line of which is a JSON object that describes a work shift.
+ * <p>
+ * The names of the members that hold the fields defined by {@link Parser.FieldName} are configured with {@link Settings#fields()}; other members are
+ * skipped. Members are located by a single scan of each line without building any object tree, and the scan stops as soon as all fields have been found.
+ * Strings are only unescaped if they contain escape sequences. The ID may also be a JSON number. Dates are formatted as day.month.year or year-month-day,
+ * and times as hour:minute.
+ * <p>
+ * Invalid lines are handled as described at {@link Parser}.
+ */
+@Component
+final class NdjsonParser {
+
+    // The bit mask of all fields, by {@link Parser.FieldName} ordinal.
+    private static final int ALL_FIELDS = (1 << Parser.FIELD_COUNT) - 1;
+
+    // The member name of each field, by {@link Parser.FieldName} ordinal.
+    private final String[] names = new String[Parser.FIELD_COUNT];
+
+    /**
+     * Creates a new instance with some settings.
+     *
+     * @param configuration encapsulates the settings.
+     */
+    NdjsonParser(final Configuration<Settings> configuration) {
+        final Map<String, String> fields = configuration.settings().fields();
+
+        if (fields == null) {
+            throw new IllegalStateException("no configuration loaded");
+        }
+
+        for (final Map.Entry<String, String> entry : fields.entrySet()) {
+            names[Parser.FieldName.valueOf(entry.getKey().toUpperCase()).ordinal()] = entry.getValue();
+        }
+
+        for (final Parser.FieldName field : Parser.FieldName.values()) {
+            if (names[field.ordinal()] == null) {
+                throw new IllegalStateException(String.format("no JSON member name configured for %s", field));
+            }
+        }
+    }
+
+    /**
+     * Creates a new parser that sends parsed {@link ShiftDetails} objects to the given consumer, and records invalid lines in the given error report.
+     *
+     * @param consumer the object to send parsed lines to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the parser fails on the first invalid line.
+     *
+     * @return a consumer to feed NDJSON lines to.
+     */
+    public Parser.Lines create(final Consumer<ShiftDetails> consumer, final ParseErrors errors) {
+        final Records records = new Records(consumer, errors);
+        final Line.Chars line = new Line.Chars();
+
+        return new Parser.Lines() {
+            @Override
+            public void accept(final String text) {
+                records.accept(line.set(text, false, 0));
+            }
+
+            @Override
+            public void close() {
+                // empty
+            }
+        };
+    }
+
+    /**
+     * Creates a new parser that is fed chunks of raw input bytes and sends parsed {@link ShiftDetails} objects to the given consumer.
+     *
+     * @param consumer the object to send parsed lines to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the parser fails on the first invalid line.
+     * @param encoding the character encoding of the input; must be one that {@link Parser#accepts(Charset)}.
+     *
+     * @return an object to feed the input to.
+     */
+    public Parser.Chunks create(final Consumer<ShiftDetails> consumer, final ParseErrors errors, final Charset encoding) {
+        if (!Line.Bytes.supports(encoding)) {
+            throw new IllegalArgumentException(String.format("unsupported encoding: %s", encoding));
+        }
+
+        // JSON strings cannot contain line breaks, and quotes in them are escaped, so quotes need no attention when splitting lines.
+        return new ByteLines(encoding, false, new Records(consumer, errors));
+    }
+
+    /**
+     * Parses lines of NDJSON input.
+     */
+    private final class Records implements Consumer<Line> {
+
+        private final Consumer<ShiftDetails> consumer;
+        private final ParseErrors errors;
+
+        // The number of the physical line the current record starts on.
+        private long line;
+
+        // The number of the physical line the next record starts on.
+        private long next = 1;
+
+        // The boundaries of the fields in the current line, by {@link Parser.FieldName} ordinal, without the quotes around strings.
+        private final int[] begins = new int[Parser.FIELD_COUNT];
+        private final int[] ends = new int[Parser.FIELD_COUNT];
+
+        // Tells which fields contain escape sequences.
+        private final boolean[] escapes = new boolean[Parser.FIELD_COUNT];
+
+        // The bit mask of the fields found in the current line, by {@link Parser.FieldName} ordinal.
+        private int found;
+
+        // Set by {@link #string(Line, int)} when the string contains escape sequences.
+        private boolean escaped;
+
+        Records(final Consumer<ShiftDetails> consumer, final ParseErrors errors) {
+            this.consumer = consumer;
+            this.errors = errors;
+        }
+
+        @Override
+        public void accept(final Line text) {
+            line = next;
+            next += 1 + text.breaks();
+
+            if (Parser.blank(text)) {
+                return;
+            }
+
+            final String error = scan(text);
+
+            if (error != null) {
+                invalid(error);
+                return;
+            }
+
+            if (found != ALL_FIELDS) {
+                for (final Parser.FieldName field : Parser.FieldName.values()) {
+                    if ((found & 1 << field.ordinal()) == 0) {
+                        invalid(String.format("missing member: '%s'", names[field.ordinal()]));
+                        return;
+                    }
+                }
+            }
+
+            final int date = Parser.FieldName.DATE.ordinal();
+            final int start = Parser.FieldName.START.ordinal();
+            final int stop = Parser.FieldName.STOP.ordinal();
+
+            final LocalDate day = escapes[date] ? null : date(text, begins[date], ends[date]);
+            final LocalTime begin = escapes[start] ? null : Parser.time(text, begins[start], ends[start]);
+            final LocalTime end = escapes[stop] ? null : Parser.time(text, begins[stop], ends[stop]);
+
+            if (day == null) {
+                invalid(String.format("invalid date: '%s'", text.text(begins[date], ends[date])));
+            } else if (begin == null) {
+                invalid(String.format("invalid start time: '%s'", text.text(begins[start], ends[start])));
+            } else if (end == null) {
+                invalid(String.format("invalid end time: '%s'", text.text(begins[stop], ends[stop])));
+            } else {
+                final String id = value(text, Parser.FieldName.ID.ordinal());
+                final String name = value(text, Parser.FieldName.NAME.ordinal());
+
+                if (id == null || name == null) {
+                    invalid("invalid escape sequence");
+                } else {
+                    consumer.accept(new ShiftDetails(id, name, day, begin, end));
+                }
+            }
+        }
+
+        /**
+         * Finds the boundaries of the known fields in the given line.
+         *
+         * @param text the line.
+         *
+         * @return <code>null</code> if the line is well-formed up to the last known field; an error message otherwise.
+         */
+        private String scan(final Line text) {
+            final int length = text.length();
+
+            found = 0;
+
+            int i = skip(text, 0);
+
+            if (i == length || text.at(i) != '{') {
+                return "expected a JSON object";
+            }
+
+            i = skip(text, i + 1);
+
+            if (i < length && text.at(i) == '}') {
+                return null;
+            }
+
+            for (;;) {
+                if (i == length || text.at(i) != '"') {
+                    return "expected a member name";
+                }
+
+                final int nameBegin = i + 1;
+
+                i = string(text, i);
+
+                if (i < 0) {
+                    return "unterminated string";
+                }
+
+                final int field = escaped ? -1 : field(text, nameBegin, i - 1);
+
+                i = skip(text, i);
+
+                if (i == length || text.at(i) != ':') {
+                    return "expected ':'";
+                }
+
+                i = skip(text, i + 1);
+
+                if (i == length) {
+                    return "expected a value";
+                }
+
+                final int valueBegin = i;
+                final int c = text.at(i);
+
+                if (c == '"') {
+                    i = string(text, i);
+
+                    if (i < 0) {
+                        return "unterminated string";
+                    }
+
+                    if (field >= 0) {
+                        begins[field] = valueBegin + 1;
+                        ends[field] = i - 1;
+                        escapes[field] = escaped;
+                    }
+                } else if (c == '{' || c == '[') {
+                    i = nested(text, i);
+
+                    if (i < 0) {
+                        return "unterminated value";
+                    }
+
+                    if (field >= 0) {
+                        return String.format("invalid value for '%s'", names[field]);
+                    }
+                } else {
+                    while (i < length && text.at(i) > ' ' && text.at(i) != ',' && text.at(i) != '}') {
+                        ++i;
+                    }
+
+                    // A null value counts as missing.
+                    if (field >= 0 && c != 'n') {
+                        begins[field] = valueBegin;
+                        ends[field] = i;
+                        escapes[field] = false;
+                    }
+                }
+
+                if (field >= 0 && c != 'n') {
+                    if ((found & 1 << field) != 0) {
+                        return String.format("duplicate member: '%s'", names[field]);
+                    }
+
+                    found |= 1 << field;
+
+                    if (found == ALL_FIELDS) {
+                        return null;
+                    }
+                }
+
+                i = skip(text, i);
+
+                if (i == length) {
+                    return "unterminated object";
+                }
+
+                final int separator = text.at(i);
+
+                if (separator == '}') {
+                    return null;
+                } else if (separator != ',') {
+                    return "expected ',' or '}'";
+                }
+
+                i = skip(text, i + 1);
+            }
+        }
+
+        /**
+         * Finds the known field with the member name between the given indexes.
+         *
+         * @param text the line.
+         * @param from the index of the first character of the name.
+         * @param to   the index after the last character of the name.
+         *
+         * @return the {@link Parser.FieldName} ordinal of the field, or <code>-1</code> if the name is not known.
+         */
+        private int field(final Line text, final int from, final int to) {
+            for (int field = 0; field < names.length; ++field) {
+                final String name = names[field];
+
+                if (name.length() == to - from) {
+                    int i = 0;
+                    while (i < name.length() && text.at(from + i) == name.charAt(i)) {
+                        ++i;
+                    }
+
+                    if (i == name.length()) {
+                        return field;
+                    }
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Finds the end of the JSON string that starts at the given index.
+         *
+         * @param text the line.
+         * @param from the index of the opening quote.
+         *
+         * @return the index after the closing quote, or <code>-1</code> if the string is not terminated.
+         */
+        private int string(final Line text, final int from) {
+            escaped = false;
+
+            for (int i = from + 1, length = text.length(); i < length; ++i) {
+                final int c = text.at(i);
+
+                if (c == '\\') {
+                    escaped = true;
+                    ++i;
+                } else if (c == '"') {
+                    return i + 1;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Finds the end of the JSON object or array that starts at the given index.
+         *
+         * @param text the line.
+         * @param from the index of the opening brace or bracket.
+         *
+         * @return the index after the closing brace or bracket, or <code>-1</code> if the value is not terminated.
+         */
+        private int nested(final Line text, final int from) {
+            int depth = 0;
+
+            for (int i = from, length = text.length(); i < length; ) {
+                final int c = text.at(i);
+
+                if (c == '"') {
+                    i = string(text, i);
+
+                    if (i < 0) {
+                        return -1;
+                    }
+                } else {
+                    if (c == '{' || c == '[') {
+                        ++depth;
+                    } else if ((c == '}' || c == ']') && --depth == 0) {
+                        return i + 1;
+                    }
+
+                    ++i;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Returns the text of the given field in the current line, with escape sequences resolved.
+         *
+         * @param text  the line.
+         * @param field the {@link Parser.FieldName} ordinal of the field.
+         *
+         * @return a character string, or <code>null</code> if the field contains an invalid escape sequence.
+         */
+        private String value(final Line text, final int field) {
+            final String value = text.text(begins[field], ends[field]);
+            return escapes[field] ? unescape(value) : value;
+        }
+
+        /**
+         * Records the current line as invalid, or fails if there is no error report.
+         *
+         * @param reason the reason the line is invalid.
+         */
+        private void invalid(final String reason) {
+            if (errors == null) {
+                throw new IllegalArgumentException(String.format("line %d: %s", line, reason));
+            } else {
+                errors.add(line, reason);
+            }
+        }
+    }
+
+    /**
+     * Skips white space.
+     *
+     * @param text the line.
+     * @param from the index to start at.
+     *
+     * @return the index of the first character that is not white space, or the length of the line.
+     */
+    private static int skip(final Line text, final int from) {
+        int i = from;
+
+        for (final int length = text.length(); i < length && text.at(i) <= ' '; ++i) {
+            // empty
+        }
+
+        return i;
+    }
+
+    /**
+     * Parses a date formatted as year-month-day or day.month.year.
+     *
+     * @param text the line containing the date.
+     * @param from the index of the first character of the date.
+     * @param to   the index after the last character of the date.
+     *
+     * @return a date or <code>null</code> if the text is not a valid date.
+     */
+    private static LocalDate date(final Line text, final int from, final int to) {
+        if (to - from != 10 || text.at(from + 4) != '-' || text.at(from + 7) != '-') {
+            return Parser.date(text, from, to);
+        }
+
+        final int year = Parser.number(text, from, from + 4, 4);
+        final int month = Parser.number(text, from + 5, from + 7, 2);
+        final int day = Parser.number(text, from + 8, to, 2);
+
+        return day < 1 || month < 1 || month > 12 || year < 0 || day > Month.of(month).length(Year.isLeap(year)) ? null : LocalDate.of(year, month, day);
+    }
+
+    /**
+     * Resolves the escape sequences in a JSON string.
+     *
+     * @param text the string without the quotes around it.
+     *
+     * @return the unescaped string, or <code>null</code> if it contains an invalid escape sequence.
+     */
+    private static String unescape(final String text) {
+        final StringBuilder result = new StringBuilder(text.length());
+
+        for (int i = 0, length = text.length(); i < length; ++i) {
+            final char c = text.charAt(i);
+
+            if (c != '\\') {
+                result.append(c);
+            } else if (++i == length) {
+                return null;
+            } else {
+                switch (text.charAt(i)) {
+                case '"':
+                    result.append('"');
+                    break;
+                case '\\':
+                    result.append('\\');
+                    break;
+                case '/':
+                    result.append('/');
+                    break;
+                case 'b':
+                    result.append('\b');
+                    break;
+                case 'f':
+                    result.append('\f');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= length) {
+                        return null;
+                    }
+
+                    try {
+                        result.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    } catch (final NumberFormatException error) {
+                        return null;
+                    }
+
+                    i += 4;
+                    break;
+                default:
+                    return null;
+                }
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * NDJSON parser settings.
+     */
+    interface Settings {
+
+        /**
+         * Lists the JSON member names of the known fields, defined in {@link Parser.FieldName}.
+         *
+         * @return a map with {@link Parser.FieldName} names as keys and the JSON member names as values.
+         */
+        @Configuration.Property(key = "ndjson.fields", ids = "list")
+        Map<String, String> fields();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+import org.fluidity.wages.SalaryDetails;
+
+/**
+ * Collects text in a byte buffer of fixed size, and writes it to an output stream in blocks whenever the buffer fills up or gets flushed. Text is
+ * appended without formatting, and ASCII characters and numbers are appended without allocating anything.
+ * <p>
+ * The methods throw {@link UncheckedIOException} when the output stream fails, so that they can be used in consumers. Not thread safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class OutputBuffer implements Flushable, Closeable {
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    // The digits of a number in reverse order; large enough for Integer.MIN_VALUE.
+    private final byte[] digits = new byte[11];
+
+    private final OutputStream output;
+    private final Charset encoding;
+
+    private final byte[] buffer;
+    private int index;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param output   the stream to write to.
+     * @param encoding the character encoding to write text in; must be a superset of US-ASCII.
+     * @param size     the size of the buffer; must be at least {@link SalaryDetails#AMOUNT_LENGTH}.
+     */
+    public OutputBuffer(final OutputStream output, final Charset encoding, final int size) {
+        this.output = output;
+        this.encoding = encoding;
+        this.buffer = new byte[size];
+    }
+
+    /**
+     * Appends the given text.
+     *
+     * @param text the text to append.
+     *
+     * @return this object.
+     */
+    public OutputBuffer append(final String text) {
+        final int length = text.length();
+
+        for (int i = 0; i < length; ++i) {
+            final char c = text.charAt(i);
+
+            if (c < 0x80) {
+                if (index == buffer.length) {
+                    drain();
+                }
+
+                buffer[index++] = (byte) c;
+            } else {
+                return bytes(text.substring(i).getBytes(encoding));
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends the given ASCII character.
+     *
+     * @param c the character to append; must be less than 0x80.
+     *
+     * @return this object.
+     */
+    public OutputBuffer append(final char c) {
+        assert c < 0x80 : c;
+
+        if (index == buffer.length) {
+            drain();
+        }
+
+        buffer[index++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends the decimal digits of the given number.
+     *
+     * @param number the number to append.
+     *
+     * @return this object.
+     */
+    public OutputBuffer append(final int number) {
+        int count = 0;
+
+        // Works with negative numbers to be able to handle Integer.MIN_VALUE.
+        for (int value = number < 0 ? number : -number; count == 0 || value != 0; value /= 10) {
+            digits[count++] = (byte) ('0' - value % 10);
+        }
+
+        if (number < 0) {
+            digits[count++] = '-';
+        }
+
+        while (count > 0) {
+            if (index == buffer.length) {
+                drain();
+            }
+
+            buffer[index++] = digits[--count];
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends the given amount of cents as dollars, formatted by {@link SalaryDetails#amount(int, byte[], int)}.
+     *
+     * @param amountBy100 the amount in cents.
+     *
+     * @return this object.
+     */
+    public OutputBuffer amount(final int amountBy100) {
+        if (buffer.length - index < SalaryDetails.AMOUNT_LENGTH) {
+            drain();
+        }
+
+        index = SalaryDetails.amount(amountBy100, buffer, index);
+        return this;
+    }
+
+    /**
+     * Appends the given amount of cents as a plain decimal number with two fraction digits, such as <code>12.05</code>.
+     *
+     * @param amountBy100 the amount in cents.
+     *
+     * @return this object.
+     */
+    public OutputBuffer decimal(final int amountBy100) {
+        amount(amountBy100);
+
+        // Drops the dollar sign, which is followed by the dollars, the decimal point and the cents.
+        int dollar = index - 5;
+        while (buffer[dollar] != '$') {
+            --dollar;
+        }
+
+        System.arraycopy(buffer, dollar + 1, buffer, dollar, index - dollar - 1);
+        --index;
+
+        return this;
+    }
+
+    /**
+     * Appends the platform line separator.
+     *
+     * @return this object.
+     */
+    public OutputBuffer newLine() {
+        return bytes(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes the buffered text to the output stream and flushes the stream.
+     */
+    @Override
+    public void flush() {
+        drain();
+
+        try {
+            output.flush();
+        } catch (final IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * Writes the buffered text to the output stream, but does not close the stream.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private OutputBuffer bytes(final byte[] data) {
+        for (int offset = 0; offset < data.length; ) {
+            if (index == buffer.length) {
+                drain();
+            }
+
+            final int length = Math.min(data.length - offset, buffer.length - index);
+            System.arraycopy(data, offset, buffer, index, length);
+
+            index += length;
+            offset += length;
+        }
+
+        return this;
+    }
+
+    private void drain() {
+        if (index > 0) {
+            try {
+                output.write(buffer, 0, index);
+            } catch (final IOException error) {
+                throw new UncheckedIOException(error);
+            } finally {
+                index = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.util.function.Consumer;
+
+import org.fluidity.wages.SalaryDetails;
+
+/**
+ * The supported formats of salary output, other than plain text and JSON documents. Each format writes one line per salary, so that the output can be
+ * streamed as the salaries are calculated.
+ */
+public enum OutputFormat {
+
+    /**
+     * Comma separated values with a header line: month (YYYY-MM), person ID, person name, and salary with two decimals, each line terminated by CRLF.
+     */
+    CSV("text/csv") {
+        @Override
+        public Consumer<SalaryDetails> writer(final OutputBuffer output) {
+            output.append("Month,Person ID,Person Name,Salary\r\n");
+
+            return details -> {
+                month(output, details);
+                quoted(output.append(','), details.personId);
+                quoted(output.append(','), details.personName);
+                output.append(',').decimal(details.amountBy100).append("\r\n");
+            };
+        }
+    },
+
+    /**
+     * Newline delimited JSON, one object per salary with the <code>month</code>, <code>personId</code>, <code>personName</code>, and <code>salary</code>
+     * properties.
+     */
+    NDJSON("application/x-ndjson") {
+        @Override
+        public Consumer<SalaryDetails> writer(final OutputBuffer output) {
+            return details -> {
+                month(output.append("{\"month\":\""), details);
+                json(output.append("\",\"personId\":"), details.personId);
+                json(output.append(",\"personName\":"), details.personName);
+                output.append(",\"salary\":").decimal(details.amountBy100).append("}\n");
+            };
+        }
+    };
+
+    /**
+     * The MIME content type of the format, without parameters.
+     */
+    public final String contentType;
+
+    OutputFormat(final String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Creates a consumer that writes the salaries in this format to the given buffer. Any header is written before this method returns.
+     *
+     * @param output the buffer to write to.
+     *
+     * @return a new consumer; never <code>null</code>.
+     */
+    public abstract Consumer<SalaryDetails> writer(OutputBuffer output);
+
+    /**
+     * Appends the month of the given salary to the given buffer in YYYY-MM form.
+     *
+     * @param output  the buffer to append to.
+     * @param details the salary.
+     */
+    static void month(final OutputBuffer output, final SalaryDetails details) {
+        final int month = details.month.getMonthValue();
+
+        output.append(details.month.getYear()).append('-').append(month < 10 ? "0" : "").append(month);
+    }
+
+    /**
+     * Appends the given text to the given buffer as a JSON string.
+     *
+     * @param output the buffer to append to.
+     * @param text   the text to append.
+     */
+    static void json(final OutputBuffer output, final String text) {
+        for (int i = 0, ii = text.length(); i < ii; ++i) {
+            final char c = text.charAt(i);
+
+            if (c < 0x20 || c == '"' || c == '\\') {
+                final StringBuilder escaped = new StringBuilder(ii + 8).append(text, 0, i);
+
+                for (; i < ii; ++i) {
+                    final char next = text.charAt(i);
+
+                    if (next < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) next));
+                    } else {
+                        (next == '"' || next == '\\' ? escaped.append('\\') : escaped).append(next);
+                    }
+                }
+
+                output.append('"').append(escaped.toString()).append('"');
+                return;
+            }
+        }
+
+        output.append('"').append(text).append('"');
+    }
+
+    /**
+     * Appends the given CSV field to the given buffer, enclosed in double quotes if it contains a comma, a double quote, or a line break.
+     *
+     * @param output the buffer to append to.
+     * @param field  the field to append.
+     */
+    static void quoted(final OutputBuffer output, final String field) {
+        for (int i = 0, ii = field.length(); i < ii; ++i) {
+            final char c = field.charAt(i);
+
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                output.append('"').append(field.replace("\"", "\"\"")).append('"');
+                return;
+            }
+        }
+
+        output.append(field);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.csv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the lines that could not be parsed. Only the first few errors are kept, up to the limit given at construction time, but all errors are counted.
+ * <p>
+ * Pass an instance to {@link SalaryCalculator#process(java.io.Reader, java.util.function.Consumer, ParseErrors)} to have invalid lines skipped instead of
+ * failing the whole input.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ParseErrors {
+
+    /**
+     * The number of errors kept by an instance created with the {@linkplain #ParseErrors() default constructor}.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+
+    private final int limit;
+    private final List<Entry> entries = new ArrayList<>();
+
+    private int count;
+
+    /**
+     * Creates a new instance that keeps the first {@link #DEFAULT_LIMIT} errors.
+     */
+    public ParseErrors() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param limit the maximum number of errors to keep.
+     */
+    public ParseErrors(final int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Records an error.
+     *
+     * @param line   the number of the invalid line, starting at 1.
+     * @param reason the reason the line is invalid.
+     */
+    void add(final long line, final String reason) {
+        if (count++ < limit) {
+            entries.add(new Entry(line, reason));
+        }
+    }
+
+    /**
+     * Returns the total number of invalid lines encountered.
+     *
+     * @return a number; greater than or equal to <code>0</code>.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the errors kept, in the order they were encountered.
+     *
+     * @return a list with at most as many entries as the limit given at construction time; never <code>null</code>.
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Represents one invalid line.
+     * <p>
+     * This is an immutable value type.
+     */
+    public static final class Entry {
+
+        public final long line;
+        public final String reason;
+
+        Entry(final long line, final String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("line %d: %s", line, reason);
+        }
+    }
+}
@@ -16,11 +16,14 @@
 
 package org.fluidity.wages.csv;
 
+import java.nio.charset.Charset;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.time.Month;
+import java.time.Year;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 
@@ -32,21 +35,32 @@ import org.fluidity.wages.ShiftDetails;
  * Parses a CSV file line by line.
  * <p>
  * Use the {@link #create(Consumer)} method to create a new parser, implemented as a {@link Consumer} of Strings, and then feed each line of the CSV input
- * to the parser.
+ * to the parser. Alternatively, use the {@link #create(Consumer, ParseErrors, Charset)} method to create a parser that is fed raw input bytes, which saves
+ * decoding all but the text fields for ASCII compatible encodings.
  * <p>
  * This parser assumes a certain set of fields in the CSV file, defined by {@link FieldName}. The first line of the CSV must be a list of field names,
- * configured with {@link Settings#fields()}.
+ * which must include those configured with {@link Settings#fields()}, in any order. Columns with any other name are ignored. Dates are formatted as
+ * day.month.year, and times as hour:minute.
+ * <p>
+ * Fields may be enclosed in double quotes as per RFC 4180, in which case they may contain commas, line breaks, and quotes escaped by doubling them.
+ * Lines without any quote character are split at every comma without further checks.
+ * <p>
+ * Invalid lines either fail the whole input with an {@link IllegalArgumentException}, or, when the parser is created with a {@link ParseErrors} object, are
+ * recorded therein and skipped. The fields are validated without throwing exceptions in either case, so skipping invalid lines is cheap. Blank lines are
+ * ignored.
  */
 @Component
 final class Parser {
 
-    private static final DateTimeFormatter dates = DateTimeFormatter.ofPattern("d.M.yyyy");
-    private static final DateTimeFormatter times = DateTimeFormatter.ofPattern("H:m");
-
-    private enum FieldName {
+    /**
+     * The fields of a work shift, in any input format.
+     */
+    enum FieldName {
         ID, NAME, DATE, START, STOP
     }
 
+    static final int FIELD_COUNT = FieldName.values().length;
+
     private final Map<String, FieldName> fields = new HashMap<>();
 
     /**
@@ -69,92 +83,583 @@ final class Parser {
     }
 
     /**
-     * Creates a new parser that sends parsed {@link ShiftDetails} objects to the given consumer.
+     * Creates a new parser that sends parsed {@link ShiftDetails} objects to the given consumer. The parser fails on the first invalid line.
      *
      * @param consumer the object to send parsed lines to.
      *
      * @return a consumer to feed CSV lines to.
      */
-    public Consumer<String> create(final Consumer<ShiftDetails> consumer) {
-        return new Consumer<String>() {
+    public Lines create(final Consumer<ShiftDetails> consumer) {
+        return create(consumer, null);
+    }
+
+    /**
+     * Creates a new parser that sends parsed {@link ShiftDetails} objects to the given consumer, and records invalid lines in the given error report.
+     *
+     * @param consumer the object to send parsed lines to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the parser fails on the first invalid line.
+     *
+     * @return a consumer to feed CSV lines to.
+     */
+    public Lines create(final Consumer<ShiftDetails> consumer, final ParseErrors errors) {
+        return new CharLines(new Records(consumer, errors));
+    }
 
-            private int[] fieldMap;
-            private boolean header = true;
+    /**
+     * Tells if {@link #create(Consumer, ParseErrors, Charset)} accepts the given character encoding.
+     *
+     * @param encoding the character encoding.
+     *
+     * @return <code>true</code> if raw input in the given encoding can be parsed; <code>false</code> otherwise.
+     */
+    public boolean accepts(final Charset encoding) {
+        return Line.Bytes.supports(encoding);
+    }
 
-            @Override
-            public void accept(final String record) {
-                final String[] fields = record.split(",");
+    /**
+     * Creates a new parser that is fed chunks of raw input bytes and sends parsed {@link ShiftDetails} objects to the given consumer.
+     *
+     * @param consumer the object to send parsed lines to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the parser fails on the first invalid line.
+     * @param encoding the character encoding of the input; must be one that {@link #accepts(Charset)}.
+     *
+     * @return an object to feed the input to.
+     */
+    public Chunks create(final Consumer<ShiftDetails> consumer, final ParseErrors errors, final Charset encoding) {
+        if (!accepts(encoding)) {
+            throw new IllegalArgumentException(String.format("unsupported encoding: %s", encoding));
+        }
 
-                if (header) {
-                    header = false;
+        return new ByteLines(encoding, true, new Records(consumer, errors));
+    }
 
-                    assert fieldMap == null;
-                    fieldMap = fieldMap(fields);
-                } else {
-                    assert fieldMap != null;
+    /**
+     * Parses lines of CSV input. Only the columns that hold a {@link FieldName known field} are delimited, and the scan of each line stops after the last
+     * such column, so that the other columns cost no more than finding the commas between them.
+     */
+    private final class Records implements Consumer<Line> {
 
-                    final FieldName[] names = FieldName.values();
-                    final String[] values = new String[names.length];
+        private final Consumer<ShiftDetails> consumer;
+        private final ParseErrors errors;
 
-                    for (int i = 0, ii = names.length; i < ii; ++i) {
-                        values[i] = fields[fieldMap[names[i].ordinal()]].trim();
+        // The {@link FieldName} ordinal of each column of the CSV, or -1 for unused columns; null until the header is parsed.
+        private int[] columns;
+
+        // The number of columns to scan in each line: the one after the last used column.
+        private int width;
+
+        // The number of the physical line the current record starts on.
+        private long line;
+
+        // The number of the physical line the next record starts on.
+        private long next = 1;
+
+        // The boundaries of the known fields in the current line, by {@link FieldName} ordinal, with white space or quotes trimmed.
+        private final int[] begins = new int[FIELD_COUNT];
+        private final int[] ends = new int[FIELD_COUNT];
+
+        // Tells which known fields contain escaped quotes; only valid if the current line contains quotes.
+        private final boolean[] escapes = new boolean[FIELD_COUNT];
+
+        // The boundaries of the field found by the last call to {@link #field(Line, int)}, and the index of the comma or line end after it.
+        private int fieldBegin;
+        private int fieldEnd;
+        private int fieldNext;
+        private boolean fieldEscaped;
+
+        Records(final Consumer<ShiftDetails> consumer, final ParseErrors errors) {
+            this.consumer = consumer;
+            this.errors = errors;
+        }
+
+        @Override
+        public void accept(final Line text) {
+            line = next;
+            next += 1 + text.breaks();
+
+            if (columns == null) {
+                header(text);
+                return;
+            }
+
+            final int found = text.quotes() ? scanQuoted(text) : scan(text);
+
+            if (found < 0) {
+                invalid("malformed quoted field");
+                return;
+            }
+
+            if (found == 1 && blank(text)) {
+                return;
+            }
+
+            if (found < width) {
+                invalid(String.format("expected %d fields, found %d", width, found));
+                return;
+            }
+
+            final int date = FieldName.DATE.ordinal();
+            final int start = FieldName.START.ordinal();
+            final int stop = FieldName.STOP.ordinal();
+
+            final LocalDate day = date(text, begins[date], ends[date]);
+            final LocalTime begin = time(text, begins[start], ends[start]);
+            final LocalTime end = time(text, begins[stop], ends[stop]);
+
+            if (day == null) {
+                invalid(String.format("invalid date: '%s'", text.text(begins[date], ends[date])));
+            } else if (begin == null) {
+                invalid(String.format("invalid start time: '%s'", text.text(begins[start], ends[start])));
+            } else if (end == null) {
+                invalid(String.format("invalid end time: '%s'", text.text(begins[stop], ends[stop])));
+            } else {
+                final int id = FieldName.ID.ordinal();
+                final int name = FieldName.NAME.ordinal();
+
+                consumer.accept(new ShiftDetails(value(text, id), value(text, name), day, begin, end));
+            }
+        }
+
+        /**
+         * Finds the boundaries of the used columns in the given line, up to {@link #width}, and trims the white space around them.
+         *
+         * @param text the line.
+         *
+         * @return the number of columns found, up to {@link #width}.
+         */
+        private int scan(final Line text) {
+            final int length = text.length();
+
+            for (int column = 0, from = 0; column < width; ++column) {
+                int to = from;
+
+                while (to < length && text.at(to) != ',') {
+                    ++to;
+                }
+
+                final int field = columns[column];
+
+                if (field >= 0) {
+                    int begin = from;
+                    int end = to;
+
+                    while (begin < end && text.at(begin) <= ' ') {
+                        ++begin;
                     }
 
-                    final ShiftDetails shift = new ShiftDetails(values[FieldName.ID.ordinal()],
-                                                                values[FieldName.NAME.ordinal()],
-                                                                LocalDate.parse(values[FieldName.DATE.ordinal()], dates),
-                                                                LocalTime.parse(values[FieldName.START.ordinal()], times),
-                                                                LocalTime.parse(values[FieldName.STOP.ordinal()], times));
+                    while (end > begin && text.at(end - 1) <= ' ') {
+                        --end;
+                    }
 
-                    consumer.accept(shift);
+                    begins[field] = begin;
+                    ends[field] = end;
                 }
+
+                if (to == length) {
+                    return column + 1;
+                }
+
+                from = to + 1;
             }
 
-            /**
-             * Takes a list of CSV field names (the CSV header) and maps each name to the constant defined in {@link FieldName}.
-             *
-             * @param names the list of names read from the CSV header.
-             *
-             * @return an integer array that maps {@link FieldName} objects by their {@link Enum#ordinal()} to the index in the value list in a CSV
-             * line.
-             */
-            private int[] fieldMap(final String[] names) {
-                final FieldName[] fieldNames = FieldName.values();
-                final int[] map = new int[fieldNames.length];
+            return width;
+        }
 
-                if (names.length != map.length) {
-                    throw new IllegalArgumentException(String.format("unexpected CSV field count: %d (expecting %d: %s)",
-                                                                     names.length,
-                                                                     map.length,
-                                                                     Arrays.toString(fieldNames)));
+        /**
+         * Finds the boundaries of the used columns in the given line, up to {@link #width}, taking quoted fields into account.
+         *
+         * @param text the line.
+         *
+         * @return the number of columns found, up to {@link #width}, or <code>-1</code> if a quoted field is malformed.
+         */
+        private int scanQuoted(final Line text) {
+            final int length = text.length();
+
+            for (int column = 0, from = 0; column < width; ++column) {
+                if (!field(text, from)) {
+                    return -1;
+                }
+
+                final int field = columns[column];
+
+                if (field >= 0) {
+                    begins[field] = fieldBegin;
+                    ends[field] = fieldEnd;
+                    escapes[field] = fieldEscaped;
                 }
 
-                // Marks each slot to tell if a slot has been set or not.
-                for (int i = 0, ii = names.length; i < ii; i++) {
-                    map[i] = ~0;
+                if (fieldNext == length) {
+                    return column + 1;
+                }
+
+                from = fieldNext + 1;
+            }
+
+            return width;
+        }
+
+        /**
+         * Finds the boundaries of the field starting at the given index. An unquoted field is trimmed of white space; a quoted field is delimited by the
+         * quotes around it, and only white space may surround the quotes.
+         *
+         * @param text the line.
+         * @param from the index of the first character of the field.
+         *
+         * @return <code>true</code> if the field is well-formed; <code>false</code> otherwise.
+         */
+        private boolean field(final Line text, final int from) {
+            final int length = text.length();
+
+            int i = from;
+            while (i < length && text.at(i) <= ' ') {
+                ++i;
+            }
+
+            fieldEscaped = false;
+
+            if (i < length && text.at(i) == '"') {
+                fieldBegin = ++i;
+
+                for (;; ++i) {
+                    if (i == length) {
+                        return false;
+                    } else if (text.at(i) == '"') {
+                        if (i + 1 < length && text.at(i + 1) == '"') {
+                            fieldEscaped = true;
+                            ++i;
+                        } else {
+                            break;
+                        }
+                    }
                 }
 
-                // Maps the header field to a known field name.
-                for (int i = 0, ii = names.length; i < ii; i++) {
-                    final String fieldName = names[i];
-                    final FieldName fieldConstant = Parser.this.fields.get(fieldName.toUpperCase());
+                fieldEnd = i++;
 
-                    if (fieldConstant == null) {
-                        throw new IllegalArgumentException(String.format("CSV header '%s' not recognized", fieldName));
+                for (; i < length && text.at(i) != ','; ++i) {
+                    if (text.at(i) > ' ') {
+                        return false;
                     }
+                }
+            } else {
+                fieldBegin = i;
+
+                while (i < length && text.at(i) != ',') {
+                    ++i;
+                }
+
+                int end = i;
+                while (end > fieldBegin && text.at(end - 1) <= ' ') {
+                    --end;
+                }
+
+                fieldEnd = end;
+            }
+
+            fieldNext = i;
+            return true;
+        }
 
+        /**
+         * Returns the text of the given known field in the current line, with escaped quotes resolved.
+         *
+         * @param text  the line.
+         * @param field the {@link FieldName} ordinal of the field.
+         *
+         * @return a character string; never <code>null</code>.
+         */
+        private String value(final Line text, final int field) {
+            final String value = text.text(begins[field], ends[field]);
+            return text.quotes() && escapes[field] ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * Parses the CSV header and computes the column projection.
+         *
+         * @param text the first line of the CSV.
+         */
+        private void header(final Line text) {
+            final List<String> names = new ArrayList<>();
+
+            for (int from = 0, length = text.length(); ; from = fieldNext + 1) {
+                if (!field(text, from)) {
+                    throw new IllegalArgumentException("malformed quoted field in the CSV header");
+                }
+
+                final String name = text.text(fieldBegin, fieldEnd);
+                names.add(fieldEscaped ? name.replace("\"\"", "\"") : name);
+
+                if (fieldNext == length) {
+                    break;
+                }
+            }
+
+            columns = columns(names);
+
+            for (int column = 0; column < columns.length; ++column) {
+                if (columns[column] >= 0) {
+                    width = column + 1;
+                }
+            }
+        }
+
+        /**
+         * Records the current line as invalid, or fails if there is no error report.
+         *
+         * @param reason the reason the line is invalid.
+         */
+        private void invalid(final String reason) {
+            if (errors == null) {
+                throw new IllegalArgumentException(String.format("line %d: %s", line, reason));
+            } else {
+                errors.add(line, reason);
+            }
+        }
+
+        /**
+         * Takes a list of CSV field names (the CSV header) and maps each column to the constant defined in {@link FieldName}. Columns that hold none of the
+         * known fields are ignored.
+         *
+         * @param names the list of names read from the CSV header.
+         *
+         * @return an integer array that maps each column to the {@link Enum#ordinal()} of a {@link FieldName}, or to <code>-1</code> if the column is
+         * not used.
+         */
+        private int[] columns(final List<String> names) {
+            final int[] map = new int[names.size()];
+            final boolean[] found = new boolean[FIELD_COUNT];
+
+            for (int i = 0, ii = names.size(); i < ii; i++) {
+                final String fieldName = names.get(i);
+                final FieldName fieldConstant = Parser.this.fields.get(fieldName.toUpperCase());
+
+                if (fieldConstant == null) {
+                    map[i] = -1;
+                } else {
                     final int index = fieldConstant.ordinal();
 
-                    if (map[index] != ~0) {
+                    if (found[index]) {
                         throw new IllegalArgumentException(String.format("CSV header '%s' encountered twice", fieldName));
                     }
 
-                    map[index] = i;
+                    found[index] = true;
+                    map[i] = index;
+                }
+            }
+
+            for (final FieldName field : FieldName.values()) {
+                if (!found[field.ordinal()]) {
+                    throw new IllegalArgumentException(String.format("CSV header for %s not recognized in %s", field, names));
+                }
+            }
+
+            return map;
+        }
+    }
+
+    /**
+     * Tells if the given line contains white space only.
+     *
+     * @param text the line.
+     *
+     * @return <code>true</code> if the line is blank; <code>false</code> otherwise.
+     */
+    static boolean blank(final Line text) {
+        for (int i = 0, length = text.length(); i < length; ++i) {
+            if (text.at(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a date formatted as day.month.year.
+     *
+     * @param text the line containing the date.
+     * @param from the index of the first character of the date.
+     * @param to   the index after the last character of the date.
+     *
+     * @return a date or <code>null</code> if the text is not a valid date.
+     */
+    static LocalDate date(final Line text, final int from, final int to) {
+        final int dot1 = find(text, from, to, '.');
+        final int dot2 = dot1 < 0 ? -1 : find(text, dot1 + 1, to, '.');
+
+        if (dot2 < 0 || to - dot2 - 1 < 4) {
+            return null;
+        }
+
+        final int day = number(text, from, dot1, 2);
+        final int month = number(text, dot1 + 1, dot2, 2);
+        final int year = number(text, dot2 + 1, to, 9);
+
+        return day < 1 || month < 1 || month > 12 || year < 0 || day > Month.of(month).length(Year.isLeap(year)) ? null : LocalDate.of(year, month, day);
+    }
+
+    /**
+     * Parses a time formatted as hour:minute.
+     *
+     * @param text the line containing the time.
+     * @param from the index of the first character of the time.
+     * @param to   the index after the last character of the time.
+     *
+     * @return a time or <code>null</code> if the text is not a valid time.
+     */
+    static LocalTime time(final Line text, final int from, final int to) {
+        final int colon = find(text, from, to, ':');
+
+        if (colon < 0) {
+            return null;
+        }
+
+        final int hour = number(text, from, colon, 2);
+        final int minute = number(text, colon + 1, to, 2);
+
+        return hour < 0 || hour > 23 || minute < 0 || minute > 59 ? null : LocalTime.of(hour, minute);
+    }
+
+    /**
+     * Finds the first occurrence of the given character.
+     *
+     * @param text      the line to search.
+     * @param from      the index to start the search at.
+     * @param to        the index to end the search before.
+     * @param character the character to find.
+     *
+     * @return the index of the character or <code>-1</code> if not found.
+     */
+    static int find(final Line text, final int from, final int to, final char character) {
+        for (int i = from; i < to; ++i) {
+            if (text.at(i) == character) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses a non-negative decimal number.
+     *
+     * @param text   the line containing the number.
+     * @param from   the index of the first digit.
+     * @param to     the index after the last digit.
+     * @param digits the maximum number of digits allowed.
+     *
+     * @return the number or <code>-1</code> if the text is empty, too long, or contains anything other than decimal digits.
+     */
+    static int number(final Line text, final int from, final int to, final int digits) {
+        if (from == to || to - from > digits) {
+            return -1;
+        }
+
+        int value = 0;
+
+        for (int i = from; i < to; ++i) {
+            final int digit = text.at(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    /**
+     * Receives CSV input line by line, as returned by {@link java.io.BufferedReader#readLine()}. Call {@link #close()} after the last line.
+     */
+    interface Lines extends Consumer<String>, AutoCloseable {
+
+        /**
+         * Parses the last line if it ended inside a quoted field.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Joins the lines of quoted fields that contain line breaks, and sends the resulting lines to {@link Records}. Lines with no quotes are passed on as
+     * is.
+     */
+    private static final class CharLines implements Lines {
+
+        private final Records records;
+        private final Line.Chars line = new Line.Chars();
+
+        // The beginning of a line that ended inside a quoted field.
+        private final StringBuilder pending = new StringBuilder();
+
+        // Set when the pending line contains an open quoted field.
+        private boolean quoted;
+
+        // The number of line breaks in the pending line.
+        private int breaks;
+
+        CharLines(final Records records) {
+            this.records = records;
+        }
+
+        @Override
+        public void accept(final String text) {
+            if (!quoted && text.indexOf('"') < 0) {
+                records.accept(line.set(text, false, 0));
+            } else {
+                for (int i = text.indexOf('"'); i >= 0; i = text.indexOf('"', i + 1)) {
+                    quoted = !quoted;
+                }
+
+                if (pending.length() > 0 || quoted) {
+                    pending.append(text);
                 }
 
-                return map;
+                if (quoted) {
+                    pending.append('\n');
+                    ++breaks;
+                } else if (pending.length() > 0) {
+                    records.accept(line.set(pending.toString(), true, breaks));
+                    pending.setLength(0);
+                    breaks = 0;
+                } else {
+                    records.accept(line.set(text, true, 0));
+                }
             }
-        };
+        }
+
+        @Override
+        public void close() {
+            if (pending.length() > 0) {
+                pending.setLength(pending.length() - 1);
+                records.accept(line.set(pending.toString(), true, breaks - 1));
+                pending.setLength(0);
+                quoted = false;
+                breaks = 0;
+            }
+        }
+    }
+
+    /**
+     * Receives raw CSV input in chunks of bytes. Call {@link #close()} after the last chunk.
+     */
+    interface Chunks extends AutoCloseable {
+
+        /**
+         * Parses the lines in the given chunk of input. A line that is not terminated in the chunk is continued with the next one.
+         *
+         * @param data   the buffer containing the chunk.
+         * @param offset the index of the first byte of the chunk in the buffer.
+         * @param length the number of bytes in the chunk.
+         */
+        void accept(byte[] data, int offset, int length);
+
+        /**
+         * Parses the last line if it was not terminated.
+         */
+        @Override
+        void close();
     }
 
     /**
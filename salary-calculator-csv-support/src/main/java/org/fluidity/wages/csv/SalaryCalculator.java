@@ -16,25 +16,29 @@
 
 package org.fluidity.wages.csv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.fluidity.composition.Component;
 import org.fluidity.wages.SalaryDetails;
 
 /**
- * Encapsulates the logic of reading CSV from a {@link Reader} and calculating the wages therefrom.
+ * Encapsulates the logic of reading CSV from a {@link Reader} or an {@link InputStream} and calculating the wages therefrom.
  */
 @Component
 public final class SalaryCalculator {
 
-    private final Parser parsers;
+    private final ShiftReader shifts;
     private final org.fluidity.wages.SalaryCalculator.Factory calculators;
 
-    public SalaryCalculator(final Parser parsers, final org.fluidity.wages.SalaryCalculator.Factory calculators) {
-        this.parsers = parsers;
+    public SalaryCalculator(final ShiftReader shifts, final org.fluidity.wages.SalaryCalculator.Factory calculators) {
+        this.shifts = shifts;
         this.calculators = calculators;
     }
 
@@ -47,8 +51,121 @@ public final class SalaryCalculator {
      * @throws IOException when the reader throws the same.
      */
     public void process(final Reader reader, final Consumer<SalaryDetails> consumer) throws IOException {
-        try (final BufferedReader content = new BufferedReader(reader); final org.fluidity.wages.SalaryCalculator calculator = calculators.create(consumer)) {
-            content.lines().forEach(parsers.create(calculator));
+        process(reader, consumer, null);
+    }
+
+    /**
+     * Reads the shift details from the given reader and sends the computed salary details to the given consumer. Invalid lines are recorded in the given
+     * error report and skipped.
+     *
+     * @param reader   the reader to read CSV lines from.
+     * @param consumer the consumer to send salary details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the reader throws the same.
+     */
+    public void process(final Reader reader, final Consumer<SalaryDetails> consumer, final ParseErrors errors) throws IOException {
+        try (final org.fluidity.wages.SalaryCalculator calculator = calculators.create(consumer)) {
+            shifts.read(reader, calculator, errors);
+        }
+    }
+
+    /**
+     * Reads the shift details from the given stream and sends the computed salary details to the given consumer. Invalid lines are recorded in the given
+     * error report and skipped.
+     *
+     * @param stream   the stream to read CSV lines from.
+     * @param encoding the character encoding of the stream.
+     * @param consumer the consumer to send salary details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the stream throws the same.
+     */
+    public void process(final InputStream stream, final Charset encoding, final Consumer<SalaryDetails> consumer, final ParseErrors errors) throws IOException {
+        process(stream, encoding, InputFormat.CSV, consumer, errors);
+    }
+
+    /**
+     * Reads the shift details in the given format from the given stream and sends the computed salary details to the given consumer. Invalid lines are
+     * recorded in the given error report and skipped.
+     *
+     * @param stream   the stream to read lines from.
+     * @param encoding the character encoding of the stream.
+     * @param format   the format of the input.
+     * @param consumer the consumer to send salary details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the stream throws the same.
+     */
+    public void process(final InputStream stream,
+                        final Charset encoding,
+                        final InputFormat format,
+                        final Consumer<SalaryDetails> consumer,
+                        final ParseErrors errors) throws IOException {
+        process(stream, encoding, format, false, consumer, errors);
+    }
+
+    /**
+     * Reads the shift details in the given format from the given stream and sends the computed salary details to the given consumer. Invalid lines are
+     * recorded in the given error report and skipped. If the input is sorted, as described at
+     * {@link org.fluidity.wages.SalaryCalculator.Factory#create(Consumer, boolean)}, it is processed in constant memory.
+     *
+     * @param stream   the stream to read lines from.
+     * @param encoding the character encoding of the stream.
+     * @param format   the format of the input.
+     * @param sorted   tells if the input is sorted.
+     * @param consumer the consumer to send salary details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the stream throws the same.
+     */
+    public void process(final InputStream stream,
+                        final Charset encoding,
+                        final InputFormat format,
+                        final boolean sorted,
+                        final Consumer<SalaryDetails> consumer,
+                        final ParseErrors errors) throws IOException {
+        try (final org.fluidity.wages.SalaryCalculator calculator = calculators.create(consumer, sorted)) {
+            shifts.read(stream, encoding, format, calculator, errors);
+        }
+    }
+
+    /**
+     * Reads the shift details from the given list of inputs, concurrently, and sends the salary details computed from all of them to the given consumer.
+     * The result is the same as if the inputs had been concatenated.
+     *
+     * @param inputs   the list of URLs to read lines from, each in the {@link InputFormat} told by its extension.
+     * @param encoding the character encoding of the inputs.
+     * @param consumer the consumer to send salary details to.
+     * @param errors   returns the object to record the invalid lines of an input in; see {@link ShiftReader#read(List, Charset, Consumer, Function)}.
+     *
+     * @throws IOException when reading any of the inputs fails.
+     */
+    public void process(final List<URL> inputs, final Charset encoding, final Consumer<SalaryDetails> consumer, final Function<URL, ParseErrors> errors)
+            throws IOException {
+        process(inputs, encoding, false, consumer, errors);
+    }
+
+    /**
+     * Reads the shift details from the given list of inputs, concurrently, and sends the salary details computed from all of them to the given consumer.
+     * The result is the same as if the inputs had been concatenated. If the concatenated input is sorted, as described at
+     * {@link org.fluidity.wages.SalaryCalculator.Factory#create(Consumer, boolean)}, the salaries are calculated as the shifts arrive.
+     *
+     * @param inputs   the list of URLs to read lines from, each in the {@link InputFormat} told by its extension.
+     * @param encoding the character encoding of the inputs.
+     * @param sorted   tells if the input is sorted.
+     * @param consumer the consumer to send salary details to.
+     * @param errors   returns the object to record the invalid lines of an input in; see {@link ShiftReader#read(List, Charset, Consumer, Function)}.
+     *
+     * @throws IOException when reading any of the inputs fails.
+     */
+    public void process(final List<URL> inputs,
+                        final Charset encoding,
+                        final boolean sorted,
+                        final Consumer<SalaryDetails> consumer,
+                        final Function<URL, ParseErrors> errors) throws IOException {
+        try (final org.fluidity.wages.SalaryCalculator calculator = calculators.create(consumer, sorted)) {
+            shifts.read(inputs, encoding, calculator, errors);
         }
     }
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.csv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.URL;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.fluidity.composition.Component;
+import org.fluidity.wages.ShiftDetails;
+
+/**
+ * Encapsulates the logic of reading CSV, or any other {@link InputFormat}, from a {@link Reader} or an {@link InputStream} and sending the parsed work
+ * shifts to a consumer.
+ */
+@Component
+public final class ShiftReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // The number of work shifts passed from a parsing thread to the calling thread at a time.
+    private static final int BATCH_SIZE = 1024;
+
+    // The number of batches an input may be parsed ahead of the calling thread.
+    private static final int BATCH_COUNT = 16;
+
+    private final Parser parsers;
+    private final NdjsonParser ndjson;
+
+    public ShiftReader(final Parser parsers, final NdjsonParser ndjson) {
+        this.parsers = parsers;
+        this.ndjson = ndjson;
+    }
+
+    /**
+     * Reads the shift details from the given reader and sends them to the given consumer.
+     *
+     * @param reader   the reader to read CSV lines from.
+     * @param consumer the consumer to send shift details to.
+     *
+     * @throws IOException when the reader throws the same.
+     */
+    public void read(final Reader reader, final Consumer<ShiftDetails> consumer) throws IOException {
+        read(reader, consumer, null);
+    }
+
+    /**
+     * Reads the shift details from the given reader and sends them to the given consumer. Invalid lines are recorded in the given error report and skipped.
+     *
+     * @param reader   the reader to read CSV lines from.
+     * @param consumer the consumer to send shift details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the reader throws the same.
+     */
+    public void read(final Reader reader, final Consumer<ShiftDetails> consumer, final ParseErrors errors) throws IOException {
+        read(reader, InputFormat.CSV, consumer, errors);
+    }
+
+    /**
+     * Reads the shift details in the given format from the given reader and sends them to the given consumer. Invalid lines are recorded in the given error
+     * report and skipped.
+     *
+     * @param reader   the reader to read lines from.
+     * @param format   the format of the input.
+     * @param consumer the consumer to send shift details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the reader throws the same.
+     */
+    public void read(final Reader reader, final InputFormat format, final Consumer<ShiftDetails> consumer, final ParseErrors errors) throws IOException {
+        try (final BufferedReader content = new BufferedReader(reader);
+             final Parser.Lines parser = format == InputFormat.NDJSON ? ndjson.create(consumer, errors) : parsers.create(consumer, errors)) {
+            content.lines().forEach(parser);
+        }
+    }
+
+    /**
+     * Reads the shift details from the given stream and sends them to the given consumer. Invalid lines are recorded in the given error report and skipped.
+     * <p>
+     * Input in UTF-8, ISO-8859-1, or US-ASCII is parsed without decoding anything but the text fields; other encodings are decoded by an
+     * {@link InputStreamReader}.
+     *
+     * @param stream   the stream to read CSV lines from.
+     * @param encoding the character encoding of the stream.
+     * @param consumer the consumer to send shift details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the stream throws the same.
+     */
+    public void read(final InputStream stream, final Charset encoding, final Consumer<ShiftDetails> consumer, final ParseErrors errors) throws IOException {
+        read(stream, encoding, InputFormat.CSV, consumer, errors);
+    }
+
+    /**
+     * Reads the shift details in the given format from the given stream and sends them to the given consumer. Invalid lines are recorded in the given error
+     * report and skipped.
+     * <p>
+     * Input in UTF-8, ISO-8859-1, or US-ASCII is parsed without decoding anything but the text fields; other encodings are decoded by an
+     * {@link InputStreamReader}.
+     *
+     * @param stream   the stream to read lines from.
+     * @param encoding the character encoding of the stream.
+     * @param format   the format of the input.
+     * @param consumer the consumer to send shift details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @throws IOException when the stream throws the same.
+     */
+    public void read(final InputStream stream, final Charset encoding, final InputFormat format, final Consumer<ShiftDetails> consumer, final ParseErrors errors)
+            throws IOException {
+        if (parsers.accepts(encoding)) {
+            try (final InputStream input = stream;
+                 final Parser.Chunks parser = format == InputFormat.NDJSON
+                                              ? ndjson.create(consumer, errors, encoding)
+                                              : parsers.create(consumer, errors, encoding)) {
+                final byte[] buffer = new byte[CHUNK_SIZE];
+
+                for (int length; (length = input.read(buffer)) >= 0; ) {
+                    parser.accept(buffer, 0, length);
+                }
+            }
+        } else {
+            read(new InputStreamReader(stream, encoding), format, consumer, errors);
+        }
+    }
+
+    /**
+     * Reads the shift details from the given list of inputs and sends them to the given consumer in the same order as if the inputs had been
+     * concatenated. The inputs are parsed concurrently, each into a bounded queue of its own, which is drained to the consumer when all preceding inputs have
+     * been. An input parsed ahead of the consumer waits once its queue fills up, so the memory taken does not grow with the size of the inputs. The format of
+     * each input is told by its {@link InputFormat#of(String, String) extension}.
+     *
+     * @param inputs   the list of URLs to read lines from.
+     * @param encoding the character encoding of the inputs.
+     * @param consumer the consumer to send shift details to; invoked in the calling thread only.
+     * @param errors   returns the object to record the invalid lines of an input in; invoked in the calling thread once for each input before parsing
+     *                 starts. If it returns <code>null</code>, the first invalid line of the input fails the whole process.
+     *
+     * @throws IOException when reading any of the inputs fails.
+     */
+    public void read(final List<URL> inputs, final Charset encoding, final Consumer<ShiftDetails> consumer, final Function<URL, ParseErrors> errors)
+            throws IOException {
+        if (inputs.size() == 1) {
+            final URL input = inputs.get(0);
+            read(input.openStream(), encoding, InputFormat.of(input.getPath(), null), consumer, errors.apply(input));
+            return;
+        }
+
+        final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(inputs.size(), Runtime.getRuntime().availableProcessors())));
+
+        try {
+            final List<Batches> queues = new ArrayList<>(inputs.size());
+            final List<Future<?>> results = new ArrayList<>(inputs.size());
+
+            // The inputs are started in order, so the one being drained never waits for a thread held by a later one.
+            for (final URL input : inputs) {
+                final ParseErrors report = errors.apply(input);
+                final Batches batches = new Batches();
+
+                queues.add(batches);
+                results.add(workers.submit(() -> {
+                    try {
+                        read(input.openStream(), encoding, InputFormat.of(input.getPath(), null), batches, report);
+                        batches.flush();
+                    } finally {
+                        batches.close();
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (int i = 0, ii = results.size(); i < ii; ++i) {
+                try {
+                    queues.get(i).drain(consumer);
+                    results.get(i).get();
+                } catch (final InterruptedException error) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(inputs.get(i).toString());
+                } catch (final ExecutionException error) {
+                    final Throwable cause = error.getCause();
+                    throw new IOException(String.format("%s: %s", inputs.get(i), cause.getMessage()), cause);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates an object that parses CSV input pushed to it in chunks of bytes, such as the parts of a file appended since it was last read. Lines that are
+     * not terminated in a chunk are held back until the rest arrives in a subsequent chunk, or until the returned object is closed.
+     *
+     * @param encoding the character encoding of the input; must be UTF-8, ISO-8859-1, or US-ASCII.
+     * @param consumer the consumer to send shift details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @return a new object to push the input to; never <code>null</code>.
+     *
+     * @throws IllegalArgumentException when the encoding is not supported.
+     */
+    public Feed feed(final Charset encoding, final Consumer<ShiftDetails> consumer, final ParseErrors errors) {
+        return feed(encoding, InputFormat.CSV, consumer, errors);
+    }
+
+    /**
+     * Creates an object that parses input in the given format pushed to it in chunks of bytes, such as the parts of a file appended since it was last read.
+     * Lines that are not terminated in a chunk are held back until the rest arrives in a subsequent chunk, or until the returned object is closed.
+     *
+     * @param encoding the character encoding of the input; must be UTF-8, ISO-8859-1, or US-ASCII.
+     * @param format   the format of the input.
+     * @param consumer the consumer to send shift details to.
+     * @param errors   the object to record invalid lines in; if <code>null</code>, the first invalid line fails the whole input.
+     *
+     * @return a new object to push the input to; never <code>null</code>.
+     *
+     * @throws IllegalArgumentException when the encoding is not supported.
+     */
+    public Feed feed(final Charset encoding, final InputFormat format, final Consumer<ShiftDetails> consumer, final ParseErrors errors) {
+        final Parser.Chunks parser = format == InputFormat.NDJSON ? ndjson.create(consumer, errors, encoding) : parsers.create(consumer, errors, encoding);
+
+        return new Feed() {
+            @Override
+            public void accept(final byte[] data, final int offset, final int length) {
+                parser.accept(data, offset, length);
+            }
+
+            @Override
+            public void close() {
+                parser.close();
+            }
+        };
+    }
+
+    /**
+     * Passes the work shifts parsed from one input to the calling thread in batches, through a queue of at most {@link #BATCH_COUNT} batches.
+     */
+    private static final class Batches implements Consumer<ShiftDetails>, AutoCloseable {
+
+        // Marks the end of the input.
+        private static final List<ShiftDetails> END = Collections.emptyList();
+
+        private final BlockingQueue<List<ShiftDetails>> queue = new ArrayBlockingQueue<>(BATCH_COUNT);
+
+        private List<ShiftDetails> batch = new ArrayList<>(BATCH_SIZE);
+
+        @Override
+        public void accept(final ShiftDetails shift) {
+            batch.add(shift);
+
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Sends the work shifts collected so far to the calling thread. Waits while the queue is full.
+         */
+        void flush() {
+            if (!batch.isEmpty()) {
+                put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        /**
+         * Tells the calling thread that no more work shifts will follow. The work shifts collected since the last {@link #flush()} are discarded.
+         */
+        @Override
+        public void close() {
+            put(END);
+        }
+
+        /**
+         * Sends the batches to the given consumer as they arrive, until the parsing thread {@linkplain #close() closes} this object.
+         *
+         * @param consumer the consumer to send the work shifts to.
+         *
+         * @throws InterruptedException when the calling thread is interrupted.
+         */
+        void drain(final Consumer<ShiftDetails> consumer) throws InterruptedException {
+            for (List<ShiftDetails> list; (list = queue.take()) != END; ) {
+                list.forEach(consumer);
+            }
+        }
+
+        private void put(final List<ShiftDetails> list) {
+            try {
+                queue.put(list);
+            } catch (final InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("parsing cancelled"));
+            }
+        }
+    }
+
+    /**
+     * Receives input in chunks of bytes. Returned by {@link ShiftReader#feed(Charset, InputFormat, Consumer, ParseErrors)}.
+     */
+    public interface Feed extends AutoCloseable {
+
+        /**
+         * Parses the complete lines in the given chunk of input, and holds back the rest until the next chunk.
+         *
+         * @param data   the buffer containing the chunk.
+         * @param offset the index of the first byte of the chunk in the buffer.
+         * @param length the number of bytes in the chunk.
+         */
+        void accept(byte[] data, int offset, int length);
+
+        /**
+         * Parses the last line if it was not terminated.
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.ShiftDetails;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class NdjsonParserTest extends Simulator {
+
+    private final NdjsonParser parser = Parsers.ndjson();
+
+    @Test
+    public void testParsesLines() throws Exception {
+        final ParseErrors errors = new ParseErrors(10);
+
+        final List<ShiftDetails> shifts = parse(errors,
+                                                "{\"personName\":\"John Doe\",\"personId\":\"1\",\"date\":\"3.3.2014\",\"start\":\"9:30\",\"end\":\"17:00\"}",
+                                                "",
+                                                " { \"site\" : { \"name\" : \"North\", \"tags\" : [ \"a\", \"}\" ] } , \"personId\" : 2 , \"personName\" : "
+                                                + "\"Jane \\\"JD\\\" Doe\\u00e9\", \"date\" : \"2014-12-31\", \"start\" : \"22:00\", \"end\" : \"6:15\", \"x\" : [ }",
+                                                "{\"personName\":\"John Doe\",\"personId\":null,\"date\":\"3.3.2014\",\"start\":\"9:30\",\"end\":\"17:00\"}",
+                                                "{\"personName\":\"John Doe\",\"personId\":\"1\",\"date\":\"2014-02-30\",\"start\":\"9:30\",\"end\":\"17:00\"}",
+                                                "[1, 2, 3]");
+
+        Assert.assertEquals(shifts.size(), 2);
+
+        final ShiftDetails john = shifts.get(0);
+        Assert.assertEquals(john.personName, "John Doe");
+        Assert.assertEquals(john.personId, "1");
+        Assert.assertEquals(john.date, LocalDate.of(2014, 3, 3));
+        Assert.assertEquals(john.begin, LocalTime.of(9, 30));
+        Assert.assertEquals(john.end, LocalTime.of(17, 0));
+
+        final ShiftDetails jane = shifts.get(1);
+        Assert.assertEquals(jane.personName, "Jane \"JD\" Doe\u00e9");
+        Assert.assertEquals(jane.personId, "2");
+        Assert.assertEquals(jane.date, LocalDate.of(2014, 12, 31));
+        Assert.assertEquals(jane.end, LocalTime.of(6, 15));
+
+        Assert.assertEquals(errors.count(), 3);
+        Assert.assertEquals(errors.entries().get(0).line, 4L);
+        Assert.assertEquals(errors.entries().get(0).reason, "missing member: 'personId'");
+        Assert.assertEquals(errors.entries().get(1).line, 5L);
+        Assert.assertEquals(errors.entries().get(2).reason, "expected a JSON object");
+    }
+
+    @Test
+    public void testParsesChunks() throws Exception {
+        final byte[] input = ("{\"personName\":\"J\u00e1nos\",\"personId\":\"1\",\"date\":\"3.3.2014\",\"start\":\"9:30\",\"end\":\"17:00\"}\r\n"
+                              + "{\"personName\":\"Jane \\\"\",\"personId\":\"2\",\"date\":\"4.3.2014\",\"start\":\"8:00\",\"end\":\"12:00\"}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        for (int split = 0; split <= input.length; ++split) {
+            final List<ShiftDetails> shifts = new ArrayList<>();
+
+            try (final Parser.Chunks chunks = parser.create(shifts::add, null, StandardCharsets.UTF_8)) {
+                chunks.accept(input, 0, split);
+                chunks.accept(input, split, input.length - split);
+            }
+
+            Assert.assertEquals(shifts.size(), 2, String.valueOf(split));
+            Assert.assertEquals(shifts.get(0).personName, "J\u00e1nos");
+            Assert.assertEquals(shifts.get(1).personName, "Jane \"");
+        }
+    }
+
+    @Test
+    public void testTellsFormat() throws Exception {
+        Assert.assertEquals(InputFormat.of("shifts.csv", null), InputFormat.CSV);
+        Assert.assertEquals(InputFormat.of("shifts.NDJSON", null), InputFormat.NDJSON);
+        Assert.assertEquals(InputFormat.of("shifts.jsonl", "application/octet-stream"), InputFormat.NDJSON);
+        Assert.assertEquals(InputFormat.of("shifts", "application/x-ndjson; charset=utf-8"), InputFormat.NDJSON);
+        Assert.assertEquals(InputFormat.of(null, null), InputFormat.CSV);
+    }
+
+    private List<ShiftDetails> parse(final ParseErrors errors, final String... lines) {
+        final List<ShiftDetails> shifts = new ArrayList<>();
+
+        try (final Parser.Lines consumer = parser.create(shifts::add, errors)) {
+            Arrays.asList(lines).forEach(consumer);
+        }
+
+        return shifts;
+    }
+}
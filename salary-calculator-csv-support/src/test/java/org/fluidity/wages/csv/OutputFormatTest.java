@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.SalaryDetails;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class OutputFormatTest extends Simulator {
+
+    @Test
+    public void testCsv() throws Exception {
+        Assert.assertEquals(write(OutputFormat.CSV,
+                                  new SalaryDetails("1", "John Doe", LocalDate.of(2014, 3, 1), 120550),
+                                  new SalaryDetails("2", "Doe, \"Jane\"", LocalDate.of(2014, 12, 1), 5)),
+                            "Month,Person ID,Person Name,Salary\r\n"
+                            + "2014-03,1,John Doe,1205.50\r\n"
+                            + "2014-12,2,\"Doe, \"\"Jane\"\"\",0.05\r\n");
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        Assert.assertEquals(write(OutputFormat.NDJSON,
+                                  new SalaryDetails("1", "John Doe", LocalDate.of(2014, 3, 1), 120550),
+                                  new SalaryDetails("2", "Jane \"\\\u00e9\t", LocalDate.of(2014, 12, 1), -50)),
+                            "{\"month\":\"2014-03\",\"personId\":\"1\",\"personName\":\"John Doe\",\"salary\":1205.50}\n"
+                            + "{\"month\":\"2014-12\",\"personId\":\"2\",\"personName\":\"Jane \\\"\\\\\u00e9\\u0009\",\"salary\":-0.50}\n");
+    }
+
+    private String write(final OutputFormat format, final SalaryDetails... salaries) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final OutputBuffer output = new OutputBuffer(bytes, StandardCharsets.UTF_8, 16)) {
+            final Consumer<SalaryDetails> writer = format.writer(output);
+
+            for (final SalaryDetails salary : salaries) {
+                writer.accept(salary);
+            }
+        }
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
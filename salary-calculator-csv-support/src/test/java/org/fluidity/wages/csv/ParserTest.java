@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.fluidity.wages.csv;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.ShiftDetails;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ParserTest extends Simulator {
+
+    private static final String HEADER = "Person Name,Person ID,Date,Start,End";
+
+    private final Parser parser = Parsers.csv();
+
+    @Test
+    public void testParsesLines() throws Exception {
+        final List<ShiftDetails> shifts = parse(null, HEADER, "John Doe, 1, 3.3.2014, 9:30, 17:00", "", "Jane Doe,2,31.12.2014,22:0,6:15");
+
+        Assert.assertEquals(shifts.size(), 2);
+
+        final ShiftDetails john = shifts.get(0);
+        Assert.assertEquals(john.personName, "John Doe");
+        Assert.assertEquals(john.personId, "1");
+        Assert.assertEquals(john.date, LocalDate.of(2014, 3, 3));
+        Assert.assertEquals(john.begin, LocalTime.of(9, 30));
+        Assert.assertEquals(john.end, LocalTime.of(17, 0));
+
+        final ShiftDetails jane = shifts.get(1);
+        Assert.assertEquals(jane.personName, "Jane Doe");
+        Assert.assertEquals(jane.date, LocalDate.of(2014, 12, 31));
+        Assert.assertEquals(jane.begin, LocalTime.of(22, 0));
+        Assert.assertEquals(jane.end, LocalTime.of(6, 15));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "line 3: invalid date.*")
+    public void testFailsOnInvalidLine() throws Exception {
+        parse(null, HEADER, "John Doe,1,3.3.2014,9:30,17:00", "John Doe,1,30.2.2014,9:30,17:00");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*not recognized.*")
+    public void testFailsOnInvalidHeader() throws Exception {
+        parse(new ParseErrors(10), "Person Name,Person ID,Date,Start,Finish");
+    }
+
+    @Test
+    public void testSkipsInvalidLines() throws Exception {
+        final ParseErrors errors = new ParseErrors(3);
+
+        final List<ShiftDetails> shifts = parse(errors,
+                                                HEADER,
+                                                "John Doe,1,3.3.2014,9:30",
+                                                "John Doe,1,3.3.2014,9:30,17:00",
+                                                "John Doe,1,3.13.2014,9:30,17:00",
+                                                "John Doe,1,3.3.14,9:30,17:00",
+                                                "John Doe,1,3.3.2014,24:00,17:00",
+                                                "John Doe,1,3.3.2014,9:30,17:x");
+
+        Assert.assertEquals(shifts.size(), 1);
+        Assert.assertEquals(errors.count(), 5);
+        Assert.assertEquals(errors.entries().size(), 3);
+
+        final ParseErrors.Entry first = errors.entries().get(0);
+        Assert.assertEquals(first.line, 2L);
+        Assert.assertEquals(first.reason, "expected 5 fields, found 4");
+
+        Assert.assertEquals(errors.entries().get(1).line, 4L);
+        Assert.assertEquals(errors.entries().get(2).line, 5L);
+    }
+
+    @Test
+    public void testIgnoresUnknownColumns() throws Exception {
+        final ParseErrors errors = new ParseErrors(10);
+
+        final List<ShiftDetails> shifts = parse(errors,
+                                                "Department,Date,Person ID,Cost Center,Start,End,Person Name,Comment,Approved",
+                                                "Sales,3.3.2014,1,1200,9:30,17:00,John Doe,\"free, text\",yes",
+                                                "Sales,4.3.2014,1,1200,9:30,17:00,John Doe",
+                                                "Sales,5.3.2014,1,1200,9:30,17:00");
+
+        Assert.assertEquals(shifts.size(), 2);
+        Assert.assertEquals(shifts.get(0).personName, "John Doe");
+        Assert.assertEquals(shifts.get(0).personId, "1");
+        Assert.assertEquals(shifts.get(1).date, LocalDate.of(2014, 3, 4));
+
+        Assert.assertEquals(errors.count(), 1);
+        Assert.assertEquals(errors.entries().get(0).reason, "expected 7 fields, found 6");
+    }
+
+    @Test
+    public void testParsesChunks() throws Exception {
+        final byte[] input = String.format("%s\r\nJ\u00e1nos Kov\u00e1cs,1,3.3.2014,9:30,17:00\r\n\nJane Doe,2,4.3.2014,8:00,12:15\rJohn Doe,3,5.3.2014,10:00,11:00", HEADER)
+                .getBytes(StandardCharsets.UTF_8);
+
+        // Every possible split point, including those within line terminators and multi-byte characters.
+        for (int split = 0; split <= input.length; ++split) {
+            final List<ShiftDetails> shifts = new ArrayList<>();
+
+            try (final Parser.Chunks chunks = parser.create(shifts::add, null, StandardCharsets.UTF_8)) {
+                chunks.accept(input, 0, split);
+                chunks.accept(input, split, input.length - split);
+            }
+
+            Assert.assertEquals(shifts.size(), 3, String.valueOf(split));
+            Assert.assertEquals(shifts.get(0).personName, "J\u00e1nos Kov\u00e1cs");
+            Assert.assertEquals(shifts.get(1).end, LocalTime.of(12, 15));
+            Assert.assertEquals(shifts.get(2).personId, "3");
+        }
+    }
+
+    @Test
+    public void testParsesQuotedFields() throws Exception {
+        final ParseErrors errors = new ParseErrors(10);
+
+        final List<ShiftDetails> shifts = parse(errors,
+                                                "\"Person Name\",\"Person ID\",Date,Start,End",
+                                                "\"Doe, John\",1,3.3.2014,9:30,17:00",
+                                                "\"John \"\"JD\"\" Doe\" , \"2\" ,3.3.2014,9:30,17:00",
+                                                "\"John",
+                                                "Doe\",3,3.3.2014,9:30,17:00",
+                                                "\"John\" Doe,4,3.3.2014,9:30,17:00",
+                                                "\"Jane Doe\",5,\"4.3.2014\",\"8:00\",\"12:00\"");
+
+        Assert.assertEquals(shifts.size(), 4);
+        Assert.assertEquals(shifts.get(0).personName, "Doe, John");
+        Assert.assertEquals(shifts.get(1).personName, "John \"JD\" Doe");
+        Assert.assertEquals(shifts.get(1).personId, "2");
+        Assert.assertEquals(shifts.get(2).personName, "John\nDoe");
+        Assert.assertEquals(shifts.get(3).date, LocalDate.of(2014, 3, 4));
+
+        Assert.assertEquals(errors.count(), 1);
+        Assert.assertEquals(errors.entries().get(0).line, 6L);
+        Assert.assertEquals(errors.entries().get(0).reason, "malformed quoted field");
+    }
+
+    @Test
+    public void testParsesQuotedChunks() throws Exception {
+        final byte[] input = String.format("%s\r\n\"Doe, John\",1,3.3.2014,9:30,17:00\r\n\"Jane\r\n\"\"JD\"\" Doe\",2,4.3.2014,8:00,12:15\r\n\"Unterminated,3", HEADER)
+                .getBytes(StandardCharsets.UTF_8);
+
+        for (int split = 0; split <= input.length; ++split) {
+            final ParseErrors errors = new ParseErrors(10);
+            final List<ShiftDetails> shifts = new ArrayList<>();
+
+            try (final Parser.Chunks chunks = parser.create(shifts::add, errors, StandardCharsets.UTF_8)) {
+                chunks.accept(input, 0, split);
+                chunks.accept(input, split, input.length - split);
+            }
+
+            Assert.assertEquals(shifts.size(), 2, String.valueOf(split));
+            Assert.assertEquals(shifts.get(0).personName, "Doe, John");
+            Assert.assertEquals(shifts.get(1).personName, "Jane\r\n\"JD\" Doe");
+            Assert.assertEquals(errors.count(), 1);
+            Assert.assertEquals(errors.entries().get(0).line, 5L, String.valueOf(split));
+        }
+    }
+
+    private List<ShiftDetails> parse(final ParseErrors errors, final String... lines) {
+        final List<ShiftDetails> shifts = new ArrayList<>();
+
+        try (final Parser.Lines consumer = parser.create(shifts::add, errors)) {
+            Arrays.asList(lines).forEach(consumer);
+        }
+
+        return shifts;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the parsers under test with the field names of the shipped <code>salary-calculator.properties</code>. Published in the test archive of this
+ * module, so that the tests of other modules read shifts with the same parsers.
+ */
+public final class Parsers {
+
+    private Parsers() { }
+
+    /**
+     * Creates a CSV parser.
+     *
+     * @return a new parser; never <code>null</code>.
+     */
+    static Parser csv() {
+        final Map<String, String> fields = new HashMap<>();
+
+        fields.put("id", "Person ID");
+        fields.put("name", "Person Name");
+        fields.put("date", "Date");
+        fields.put("start", "Start");
+        fields.put("stop", "End");
+
+        return new Parser(() -> () -> fields);
+    }
+
+    /**
+     * Creates an NDJSON parser.
+     *
+     * @return a new parser; never <code>null</code>.
+     */
+    static NdjsonParser ndjson() {
+        final Map<String, String> fields = new HashMap<>();
+
+        fields.put("id", "personId");
+        fields.put("name", "personName");
+        fields.put("date", "date");
+        fields.put("start", "start");
+        fields.put("stop", "end");
+
+        return new NdjsonParser(() -> () -> fields);
+    }
+
+    /**
+     * Creates a shift reader with the {@link #csv()} and {@link #ndjson()} parsers.
+     *
+     * @return a new shift reader; never <code>null</code>.
+     */
+    public static ShiftReader reader() {
+        return new ShiftReader(csv(), ndjson());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.csv;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.fluidity.testing.Simulator;
+import org.fluidity.wages.ShiftDetails;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ShiftReaderTest extends Simulator {
+
+    private final ShiftReader reader = Parsers.reader();
+
+    @Test
+    public void testReadsInputsInOrder() throws Exception {
+        final Path directory = Files.createTempDirectory("shifts");
+
+        try {
+            final List<URL> inputs = new ArrayList<>();
+
+            for (int file = 0; file < 8; ++file) {
+                final StringBuilder content = new StringBuilder("Person Name,Person ID,Date,Start,End\n");
+
+                // Makes the earlier files larger so that they tend to finish later, and fill the queue between the threads.
+                for (int line = 0, lines = (8 - file) * 5000; line < lines; ++line) {
+                    content.append(String.format("Person %d,%d,1.3.2014,8:00,9:00%n", file, line));
+                }
+
+                inputs.add(write(directory.resolve(String.format("%d.csv", file)), content.toString()));
+            }
+
+            final Map<URL, ParseErrors> errors = new HashMap<>();
+            final List<ShiftDetails> shifts = new ArrayList<>();
+
+            reader.read(inputs, StandardCharsets.UTF_8, shifts::add, url -> errors.computeIfAbsent(url, key -> new ParseErrors(1)));
+
+            Assert.assertEquals(errors.size(), inputs.size());
+            Assert.assertEquals(shifts.size(), 5000 * (8 + 7 + 6 + 5 + 4 + 3 + 2 + 1));
+
+            int index = 0;
+            for (int file = 0; file < 8; ++file) {
+                for (int line = 0, lines = (8 - file) * 5000; line < lines; ++line) {
+                    final ShiftDetails shift = shifts.get(index++);
+
+                    Assert.assertEquals(shift.personName, String.format("Person %d", file));
+                    Assert.assertEquals(shift.personId, String.valueOf(line));
+                }
+            }
+        } finally {
+            try (final Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*invalid\\.csv: line 2: .*")
+    public void testReportsFailingInput() throws Exception {
+        final Path directory = Files.createTempDirectory("shifts");
+        final Path valid = directory.resolve("valid.csv");
+        final Path invalid = directory.resolve("invalid.csv");
+
+        try {
+            final List<URL> inputs = new ArrayList<>();
+
+            inputs.add(write(valid, "Person Name,Person ID,Date,Start,End\nJohn Doe,1,3.3.2014,9:30,17:00\n"));
+            inputs.add(write(invalid, "Person Name,Person ID,Date,Start,End\nJohn Doe,1,3.3.2014,9:30\n"));
+
+            reader.read(inputs, StandardCharsets.UTF_8, shift -> { }, url -> null);
+        } finally {
+            Files.deleteIfExists(valid);
+            Files.deleteIfExists(invalid);
+            Files.delete(directory);
+        }
+    }
+
+    private URL write(final Path file, final String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toUri().toURL();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.fluidity.composition.Component;
+import org.fluidity.foundation.Configuration;
+
+/**
+ * Bounds the number of calculations admitted at once, running or waiting for a thread, the number of input bytes they may read between them, and the
+ * number of input bytes a single request may read.
+ * <p>
+ * A request is charged its declared content length when admitted. A request that does not declare its length, or reads more than it has declared, is
+ * charged for the rest as it reads it, and fails with {@link Overloaded} if the budget runs out. The bytes are counted both as received and as decoded,
+ * so that a small compressed request cannot read more than its share, and a request that reads more than a single request may fails with {@link
+ * TooLarge}.
+ */
+@Component
+final class AdmissionControl {
+
+    // The number of bytes charged at a time to requests reading past their declared length.
+    private static final long INCREMENT = 64 * 1024;
+
+    private final int calculations;
+    private final long bytes;
+    private final long requestBytes;
+    private final int retrySeconds;
+
+    // The admitted calculations, the bytes charged to them, and the requests refused so far; guarded by this.
+    private int admitted;
+    private long charged;
+    private long rejected;
+
+    AdmissionControl(final Configuration<Settings> configuration) {
+        final Settings settings = configuration.settings();
+
+        this.calculations = settings.calculations();
+        this.bytes = settings.bytes();
+        this.requestBytes = settings.requestBytes();
+        this.retrySeconds = settings.retrySeconds();
+
+        if (calculations <= 0 || bytes <= 0 || requestBytes <= 0 || retrySeconds <= 0) {
+            throw new IllegalStateException("no admission limits configured");
+        }
+    }
+
+    /**
+     * Tells if a request of the given length can ever be admitted.
+     *
+     * @param length the declared content length of the request, or -1 if not declared.
+     *
+     * @return <code>true</code> if the length fits both in the byte budget and in the limit of a single request; <code>false</code> otherwise.
+     */
+    public boolean fits(final long length) {
+        return length <= bytes && length <= requestBytes;
+    }
+
+    /**
+     * Admits a calculation if the limits allow.
+     *
+     * @param length the declared content length of the request, or -1 if not declared.
+     *
+     * @return the admission, to be closed when the calculation is complete, or <code>null</code> if the calculation is refused.
+     */
+    public synchronized Ticket admit(final long length) {
+        final long declared = Math.max(0, length);
+
+        if (admitted >= calculations || charged + declared > bytes) {
+            ++rejected;
+            return null;
+        }
+
+        ++admitted;
+        charged += declared;
+
+        return new Ticket(declared);
+    }
+
+    /**
+     * Returns the number of seconds after which a refused client should try again.
+     *
+     * @return a positive number.
+     */
+    public int retrySeconds() {
+        return retrySeconds;
+    }
+
+    /**
+     * Returns the current utilisation of the limits.
+     *
+     * @return a new snapshot; never <code>null</code>.
+     */
+    public synchronized Status status() {
+        return new Status(admitted, calculations, charged, bytes, rejected);
+    }
+
+    /**
+     * Charges an admitted calculation for more bytes.
+     *
+     * @param needed the number of bytes the calculation cannot do without.
+     * @param wanted the number of bytes to charge if the budget allows; at least <code>needed</code>.
+     *
+     * @return the number of bytes charged, or 0 if the budget does not allow the needed bytes.
+     */
+    private synchronized long charge(final long needed, final long wanted) {
+        final long amount = charged + wanted <= bytes ? wanted : needed;
+
+        if (charged + amount > bytes) {
+            ++rejected;
+            return 0;
+        }
+
+        charged += amount;
+        return amount;
+    }
+
+    private synchronized void release(final long amount) {
+        --admitted;
+        charged -= amount;
+    }
+
+    /**
+     * An admitted calculation.
+     */
+    final class Ticket implements AutoCloseable {
+
+        // The bytes charged to the calculation, and the most read by it from any one metered stream.
+        private long paid;
+        private long read;
+
+        private boolean closed;
+
+        Ticket(final long declared) {
+            this.paid = declared;
+        }
+
+        /**
+         * Wraps the given input stream to charge the calculation for the bytes read past its declared length. More than one stream of the calculation may be
+         * metered, such as the request body and the input decoded from it, and the calculation is charged for the most bytes read from any one of them.
+         *
+         * @param input the stream to wrap.
+         *
+         * @return a new stream; never <code>null</code>.
+         */
+        InputStream meter(final InputStream input) {
+            return new FilterInputStream(input) {
+
+                // The bytes read from this stream.
+                private long total;
+
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+
+                    if (b >= 0) {
+                        consumed(++total);
+                    }
+
+                    return b;
+                }
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                    final int count = super.read(buffer, offset, length);
+
+                    if (count > 0) {
+                        consumed(total += count);
+                    }
+
+                    return count;
+                }
+            };
+        }
+
+        /**
+         * Releases the limits taken by the calculation. May be invoked more than once.
+         */
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(paid);
+            }
+        }
+
+        private synchronized void consumed(final long total) throws IOException {
+            if (total <= read) {
+                return;
+            }
+
+            read = total;
+
+            if (read > requestBytes) {
+                throw new TooLarge();
+            }
+
+            if (read > paid) {
+                final long needed = read - paid;
+                final long amount = charge(needed, Math.max(needed, INCREMENT));
+
+                if (amount == 0) {
+                    throw new Overloaded();
+                }
+
+                paid += amount;
+            }
+        }
+    }
+
+    /**
+     * Thrown when a request reads more input than the byte budget allows.
+     */
+    static final class Overloaded extends IOException {
+
+        Overloaded() {
+            super("server busy");
+        }
+    }
+
+    /**
+     * Thrown when a request reads more input than a single request may.
+     */
+    static final class TooLarge extends IOException {
+
+        TooLarge() {
+            super("request too large");
+        }
+    }
+
+    /**
+     * A snapshot of the utilisation of the limits.
+     * <p>
+     * This is an immutable value type.
+     */
+    static final class Status {
+
+        final int admitted;
+        final int calculations;
+        final long charged;
+        final long bytes;
+        final long rejected;
+
+        Status(final int admitted, final int calculations, final long charged, final long bytes, final long rejected) {
+            this.admitted = admitted;
+            this.calculations = calculations;
+            this.charged = charged;
+            this.bytes = bytes;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * The settings of the admission control.
+     */
+    interface Settings {
+
+        /**
+         * The number of calculations admitted at once, running or waiting for a thread.
+         *
+         * @return a positive number.
+         */
+        @Configuration.Property(key = "http.admission.calculations")
+        int calculations();
+
+        /**
+         * The number of input bytes the admitted calculations may read between them.
+         *
+         * @return a positive number.
+         */
+        @Configuration.Property(key = "http.admission.bytes")
+        long bytes();
+
+        /**
+         * The number of input bytes a single request may read, counted both as received and as decoded.
+         *
+         * @return a positive number.
+         */
+        @Configuration.Property(key = "http.admission.request.bytes")
+        long requestBytes();
+
+        /**
+         * The number of seconds after which a refused client should try again.
+         *
+         * @return a positive number.
+         */
+        @Configuration.Property(key = "http.admission.retry.seconds")
+        int retrySeconds();
+    }
+}
@@ -16,9 +16,6 @@
 
 package org.fluidity.wages.http;
 
-import java.io.IOException;
-import java.net.URLConnection;
-
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -31,34 +28,68 @@ import org.fluidity.composition.Component;
 @SuppressWarnings("WeakerAccess")
 final class CacheSupport {
 
+    // Lets clients keep a versioned resource for a year without asking again.
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    // Lets clients keep a resource, but only use it after checking that it has not changed.
+    private static final String REVALIDATE = "no-cache";
+
     /**
-     * Checks the <code>If-Modified-Since</code> header against the last modified time of the resource, and if they match, sends a HTTP status 304 and ends the
-     * response, else sends an HTTP status 200 and sets the appropriate caching headers for the next time the resource is requested.
+     * Checks the <code>If-None-Match</code> header, or in its absence the <code>If-Modified-Since</code> header, against the entity tag or the last
+     * modified time of the resource, and if they match, sends a HTTP status 304 and ends the response, else sends an HTTP status 200. In both cases, sets
+     * the appropriate caching headers for the next time the resource is requested.
      *
-     * @param resource the resource to check the timestamp of.
-     * @param request  the HTTP request.
-     * @param response the HTTP response.
+     * @param tag          the quoted entity tag of the resource.
+     * @param lastModified the last modified time of the resource, or -1 if not known.
+     * @param immutable    tells if the resource was requested by a URL that always refers to the same content.
+     * @param request      the HTTP request.
+     * @param response     the HTTP response.
      *
      * @return <code>true</code> if the resource is up to date at the client, <code>false</code> otherwise.
      */
-    public boolean handled(final URLConnection resource, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
-        final long lastModified = resource.getLastModified();
+    public boolean handled(final String tag, final long lastModified, final boolean immutable, final HttpServletRequest request, final HttpServletResponse response) {
+        final String tags = request.getHeader("If-None-Match");
 
-        final boolean cached = request.getDateHeader("If-Modified-Since") == lastModified;
+        final boolean cached = tags != null
+                               ? matches(tags, tag)
+                               : lastModified != -1 && request.getDateHeader("If-Modified-Since") == lastModified;
 
-        if (cached) {
-            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-        } else {
-            response.setStatus(HttpServletResponse.SC_OK);
+        response.setStatus(cached ? HttpServletResponse.SC_NOT_MODIFIED : HttpServletResponse.SC_OK);
 
-            response.addHeader("Pragma", "no-cache");
-            response.addHeader("Cache-Control", "private");
+        response.setHeader("ETag", tag);
+        response.setHeader("Cache-Control", immutable ? IMMUTABLE : REVALIDATE);
 
-            if (lastModified != -1) {
-                response.addDateHeader("Last-Modified", lastModified);
-            }
+        if (lastModified != -1) {
+            response.setDateHeader("Last-Modified", lastModified);
         }
 
         return cached;
     }
+
+    /**
+     * Tells if the given <code>If-None-Match</code> header lists the given entity tag. Weak tags match their strong counterparts.
+     *
+     * @param tags the value of the header.
+     * @param tag  the quoted entity tag.
+     *
+     * @return <code>true</code> if the header lists the tag; <code>false</code> otherwise.
+     */
+    private boolean matches(final String tags, final String tag) {
+
+        // The common case: a client sending back the one tag it has received.
+        if (tags.equals(tag)) {
+            return true;
+        }
+
+        for (final String item : tags.split(",")) {
+            final String trimmed = item.trim();
+            final String strong = trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed;
+
+            if (strong.equals("*") || strong.equals(tag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fluidity.composition.Component;
+import org.fluidity.foundation.Configuration;
+
+/**
+ * Runs salary calculations outside Jetty's thread pool, each in a thread of its own, so that a few large uploads cannot hold up the threads that serve
+ * everything else. The threads are virtual threads when the Java runtime supports them.
+ * <p>
+ * A calculation blocks its thread while it waits for the client to send more input or take more output, so it is not the threads that are limited, but
+ * the turns to compute: the number of calculations computing at once is bounded by the configured number of turns, and a calculation gives up its turn
+ * while it waits for the client on the streams returned by {@link #input(InputStream)} and {@link #output(OutputStream)}, and while it waits for anything
+ * else through {@link #waiting(Blocking)}. A slow client thus holds up its own calculation only.
+ * <p>
+ * The calculations waiting for their first turn are limited in number, and in the time they may wait; the ones over these limits are refused.
+ */
+@Component
+final class CalculationExecutor {
+
+    private static final String THREAD_NAME = "calculator-";
+
+    private final ThreadFactory threads = threads();
+
+    // The turns to compute.
+    private final Semaphore turns;
+
+    // The number of calculations waiting for their first turn.
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final int queue;
+    private final long waitMillis;
+
+    CalculationExecutor(final Configuration<Settings> configuration) {
+        final Settings settings = configuration.settings();
+        final int configured = settings.threads();
+
+        this.turns = new Semaphore(configured > 0 ? configured : Runtime.getRuntime().availableProcessors(), true);
+        this.queue = settings.queue();
+        this.waitMillis = settings.waitMillis();
+    }
+
+    /**
+     * Runs the given calculation in a thread of its own once it gets its turn to compute.
+     *
+     * @param calculation the calculation.
+     * @param refused     invoked, in the same thread, instead of the calculation if it does not get its turn in the configured time.
+     *
+     * @throws RejectedExecutionException when the configured number of calculations are already waiting for their turn.
+     */
+    void execute(final Runnable calculation, final Runnable refused) {
+
+        // A calculation that finds a turn free, and no other calculation waiting for one, takes it right away.
+        final boolean ready = !turns.hasQueuedThreads() && turns.tryAcquire();
+
+        if (!ready && waiting.incrementAndGet() > queue) {
+            waiting.decrementAndGet();
+            throw new RejectedExecutionException("too many calculations waiting");
+        }
+
+        final Thread thread = threads.newThread(() -> {
+            if (ready || turn()) {
+                try {
+                    calculation.run();
+                } finally {
+                    turns.release();
+                }
+            } else {
+                refused.run();
+            }
+        });
+
+        if (thread == null) {
+            if (ready) {
+                turns.release();
+            } else {
+                waiting.decrementAndGet();
+            }
+
+            throw new RejectedExecutionException("no thread to run the calculation in");
+        }
+
+        thread.start();
+    }
+
+    /**
+     * Waits for the first turn of the calling calculation, for the configured time.
+     *
+     * @return <code>true</code> if the calculation got its turn; <code>false</code> otherwise.
+     */
+    private boolean turn() {
+        try {
+            return turns.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException error) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wraps the given input of a calculation to give up the calculation's turn while it waits for more input.
+     *
+     * @param input the input to wrap.
+     *
+     * @return a new stream; never <code>null</code>.
+     */
+    InputStream input(final InputStream input) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                release();
+
+                try {
+                    return super.read();
+                } finally {
+                    acquire();
+                }
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                release();
+
+                try {
+                    return super.read(buffer, offset, length);
+                } finally {
+                    acquire();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps the given output of a calculation to give up the calculation's turn while it waits for the client to take the output.
+     *
+     * @param output the output to wrap.
+     *
+     * @return a new stream; never <code>null</code>.
+     */
+    OutputStream output(final OutputStream output) {
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(final int b) throws IOException {
+                release();
+
+                try {
+                    out.write(b);
+                } finally {
+                    acquire();
+                }
+            }
+
+            @Override
+            public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+                release();
+
+                try {
+                    out.write(buffer, offset, length);
+                } finally {
+                    acquire();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                release();
+
+                try {
+                    out.flush();
+                } finally {
+                    acquire();
+                }
+            }
+        };
+    }
+
+    /**
+     * Makes the given call, which may block, with the turn of the calling calculation given up.
+     *
+     * @param call the call to make.
+     * @param <T>  the type of the value the call returns.
+     *
+     * @return whatever the call returns.
+     *
+     * @throws IOException when the call throws the same.
+     */
+    <T> T waiting(final Blocking<T> call) throws IOException {
+        release();
+
+        try {
+            return call.call();
+        } finally {
+            acquire();
+        }
+    }
+
+    /**
+     * Gives up the turn of the calling calculation.
+     */
+    private void release() {
+        turns.release();
+    }
+
+    /**
+     * Waits for another turn of the calling calculation. The wait is not limited in time, as the calculation has been admitted already, and it is not
+     * interrupted either, as the calculation gives up its turn when it ends.
+     */
+    private void acquire() {
+        turns.acquireUninterruptibly();
+    }
+
+    /**
+     * Creates a factory of virtual threads if the runtime supports them, or of daemon platform threads otherwise. Virtual threads are looked up by
+     * reflection, as the code is compiled for runtimes that predate them.
+     *
+     * @return a new thread factory; never <code>null</code>.
+     */
+    private static ThreadFactory threads() {
+        try {
+            final Class<?> type = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+            type.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME, 0L);
+
+            final Method factory = type.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (final ReflectiveOperationException | LinkageError error) {
+            final AtomicInteger count = new AtomicInteger();
+
+            return task -> {
+                final Thread thread = new Thread(task, THREAD_NAME + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * A call that may block the calling calculation. See {@link CalculationExecutor#waiting(Blocking)}.
+     *
+     * @param <T> the type of the value the call returns.
+     */
+    @FunctionalInterface
+    interface Blocking<T> {
+
+        /**
+         * Makes the call.
+         *
+         * @return whatever the call returns.
+         *
+         * @throws IOException when the call fails.
+         */
+        T call() throws IOException;
+    }
+
+    /**
+     * The settings of the calculation threads.
+     */
+    interface Settings {
+
+        /**
+         * The number of calculations to compute at once. Calculations waiting for the client do not count.
+         *
+         * @return a positive number, or 0 for the number of processors.
+         */
+        @Configuration.Property(key = "http.calculation.threads")
+        int threads();
+
+        /**
+         * The number of calculations that may wait for their first turn to compute; further ones are refused.
+         *
+         * @return a non-negative number; 0 refuses the calculations that find no turn free.
+         */
+        @Configuration.Property(key = "http.calculation.queue")
+        int queue();
+
+        /**
+         * The number of milliseconds a calculation may wait for its first turn to compute before it is refused.
+         *
+         * @return a non-negative number.
+         */
+        @Configuration.Property(key = "http.calculation.wait.millis")
+        long waitMillis();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.util.Locale;
+
+import org.fluidity.composition.Component;
+
+/**
+ * Handles HTTP 1.1 content negotiation.
+ */
+@Component
+@SuppressWarnings("WeakerAccess")
+final class ContentNegotiation {
+
+    /**
+     * Selects the media type to send a response in based on the <code>Accept</code> header of the request. The offered type with the highest quality value
+     * in the header wins; ties go to the type listed first in the header, then to the type offered first. A type matches the exact range, its
+     * <code>type/*</code> range, and the <code>*&#47;*</code> range, and the most specific range that matches decides its quality.
+     *
+     * @param accept  the <code>Accept</code> header of the request; may be <code>null</code>, in which case the first offered type is selected.
+     * @param offered the media types the response can be sent in, without parameters and in lower case.
+     *
+     * @return one of the offered types, or <code>null</code> if none is acceptable.
+     */
+    public String select(final String accept, final String... offered) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return offered.length > 0 ? offered[0] : null;
+        }
+
+        final String[] ranges = accept.split(",");
+
+        String selected = null;
+        float best = 0;
+        int position = ranges.length;
+
+        for (final String type : offered) {
+            // The specificity, quality, and position of the most specific range that matches the type.
+            int specificity = -1;
+            float quality = 0;
+            int index = ranges.length;
+
+            for (int i = 0; i < ranges.length; ++i) {
+                final String[] parameters = ranges[i].split(";");
+                final String range = parameters[0].trim().toLowerCase(Locale.ROOT);
+
+                final int match = specificity(range, type);
+
+                if (match > specificity) {
+                    specificity = match;
+                    quality = quality(parameters);
+                    index = i;
+                }
+            }
+
+            if (quality > best || quality > 0 && quality == best && index < position) {
+                selected = type;
+                best = quality;
+                position = index;
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Tells if the given content coding is acceptable according to the <code>Accept-Encoding</code> header of the request.
+     *
+     * @param accept the <code>Accept-Encoding</code> header of the request; may be <code>null</code>.
+     * @param coding the content coding in lower case.
+     *
+     * @return <code>true</code> if the header lists the coding, or <code>*</code>, with a non-zero quality value; <code>false</code> otherwise.
+     */
+    public boolean accepts(final String accept, final String coding) {
+        if (accept == null) {
+            return false;
+        }
+
+        // The quality of the coding takes precedence over the quality of the wildcard.
+        float wildcard = 0;
+
+        for (final String item : accept.split(",")) {
+            final String[] parameters = item.split(";");
+            final String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+
+            if (name.equals(coding)) {
+                return quality(parameters) > 0;
+            } else if (name.equals("*")) {
+                wildcard = quality(parameters);
+            }
+        }
+
+        return wildcard > 0;
+    }
+
+    /**
+     * Tells how specifically the given media range matches the given media type.
+     *
+     * @param range the media range without parameters.
+     * @param type  the media type.
+     *
+     * @return 2 for an exact match, 1 for a <code>type/*</code> match, 0 for a <code>*&#47;*</code> match, and -1 if the range does not match the type.
+     */
+    private int specificity(final String range, final String type) {
+        if (range.equals(type)) {
+            return 2;
+        } else if (range.equals("*/*")) {
+            return 0;
+        } else {
+            final int slash = type.indexOf('/');
+            return range.length() == slash + 2 && range.endsWith("/*") && range.regionMatches(0, type, 0, slash + 1) ? 1 : -1;
+        }
+    }
+
+    /**
+     * Finds the quality value among the given media range parameters.
+     *
+     * @param parameters the media range followed by its parameters.
+     *
+     * @return the quality value between 0 and 1; 1 if not specified, and 0 if malformed.
+     */
+    private float quality(final String[] parameters) {
+        for (int i = 1; i < parameters.length; ++i) {
+            final String parameter = parameters[i].trim();
+
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    final float value = Float.parseFloat(parameter.substring(2).trim());
+                    return value >= 0 && value <= 1 ? value : 0;
+                } catch (final NumberFormatException ignored) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+}
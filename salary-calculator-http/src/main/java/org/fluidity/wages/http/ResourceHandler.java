@@ -14,15 +14,21 @@
  * limitations under the License.
  */
 
+
 package org.fluidity.wages.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -34,11 +40,20 @@ import org.fluidity.foundation.IOStreams;
 import org.fluidity.foundation.Strings;
 
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.Callback;
 
 /**
  * Serves static resources from <code>/webroot</code>.
+ * <p>
+ * Each resource is read into memory, and compressed, the first time it is requested, and served from memory thereafter; the index page and the resources it
+ * refers to are loaded up front. The local resources that HTML pages refer to are given a <code>v</code> query parameter that changes with their content,
+ * and resources requested with the current value of that parameter are cached by clients without asking again. Other resources are cached by clients on
+ * the condition that they check for changes.
+ * <p>
+ * The content is handed to Jetty as a whole, in a direct buffer, and sent asynchronously, so that slow clients do not hold up a request thread.
  */
 @Component(api = ResourceHandler.class)
 class ResourceHandler extends AbstractHandler {
@@ -49,8 +64,17 @@ class ResourceHandler extends AbstractHandler {
     private static final String WEBROOT = "/webroot";
     private static final String INDEX_HTML = "/index.html";
 
+    private static final String HTML_TYPE = "text/html";
+    private static final String DEFAULT_TYPE = "application/octet-stream";
+
+    private static final String VERSION_PARAM = "v";
+    private static final String GZIP = "gzip";
+
+    // The local resources referred to by an HTML page.
+    private static final Pattern REFERENCE = Pattern.compile("(href|src)=\"([^\":?#]+)\"");
+
     static {
-        MIME_TYPES.put("html", "text/html");
+        MIME_TYPES.put("html", HTML_TYPE);
         MIME_TYPES.put("css", "text/css");
         MIME_TYPES.put("js", "application/javascript");
         MIME_TYPES.put("woff", "application/font-woff");
@@ -62,60 +86,163 @@ class ResourceHandler extends AbstractHandler {
     }
 
     private final CacheSupport caching;
+    private final ContentNegotiation negotiation;
+
+    // The resources loaded so far, by path. Resources that do not exist are not remembered.
+    private final Map<String, StaticAsset> assets = new ConcurrentHashMap<>();
 
-    public ResourceHandler(final CacheSupport caching) {
+    public ResourceHandler(final CacheSupport caching, final ContentNegotiation negotiation) throws IOException {
         this.caching = caching;
+        this.negotiation = negotiation;
 
-        URLConnection.setFileNameMap(fileName -> MIME_TYPES.get(fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase()));
+        // Loads the page, and the resources it refers to, before the first request arrives.
+        asset(WEBROOT + INDEX_HTML);
     }
 
     @Override
     public void handle(final String uri, final Request control, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
-        final String query = WEBROOT + (uri.equals("/") ? INDEX_HTML : uri);
+        final String path = WEBROOT + (uri.equals("/") ? INDEX_HTML : uri);
+        final HttpMethod method = HttpMethod.fromString(request.getMethod());
 
-        final int qm = query.indexOf('?');
-        final String path = qm < 0 ? query : query.substring(1, qm);
+        final StaticAsset asset;
 
-        final URL url = ClassLoaders.findResource(getClass(), path);
-        final HttpMethod method = HttpMethod.fromString(request.getMethod());
+        try {
+            asset = asset(path);
+        } catch (final IOException error) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            response.setContentType("text/plain");
+            response.getOutputStream().write(error.getMessage().getBytes(Strings.UTF_8));
+            return;
+        }
 
-        if (url == null) {
+        if (asset == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         } else if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
             response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
             response.addHeader("Allow", "GET, HEAD");
         } else {
-            final ServletOutputStream output = response.getOutputStream();
-
-            try {
-                final URLConnection resource = url.openConnection();
+            final boolean gzip = asset.compressible() && negotiation.accepts(request.getHeader("Accept-Encoding"), GZIP);
+            final boolean immutable = asset.version.equals(request.getParameter(VERSION_PARAM));
 
-                if (!caching.handled(resource, request, response)) {
-                    final String contentType = resource.getContentType();
-                    assert contentType != null : path;
+            if (asset.compressible()) {
+                response.setHeader("Vary", "Accept-Encoding");
+            }
 
-                    final int contentLength = resource.getContentLength();
+            if (!caching.handled(asset.tag(gzip), asset.lastModified, immutable, request, response)) {
+                if (asset.contentType.startsWith("text/")) {
+                    response.setCharacterEncoding(Strings.UTF_8.name());
+                }
 
-                    if (contentType.startsWith("text/")) {
-                        response.setCharacterEncoding(Strings.UTF_8.name());
-                    }
+                response.setContentType(asset.contentType);
+                response.setContentLength(asset.length(gzip));
 
-                    response.setContentType(contentType);
-                    response.setContentLength(contentLength);
+                if (gzip) {
+                    response.setHeader("Content-Encoding", GZIP);
+                }
 
-                    if (HttpMethod.GET == method) {
-                        try (final InputStream stream = resource.getInputStream()) {
-                            IOStreams.send(stream, new byte[CHUNK_SIZE], output::write);
+                if (HttpMethod.GET == method) {
+                    final ServletOutputStream output = response.getOutputStream();
+
+                    if (output instanceof HttpOutput && request.isAsyncSupported()) {
+
+                        // Jetty writes the buffer to the connection as the client takes it, and the request thread is free to go.
+                        final AsyncContext async = request.startAsync();
+
+                        // A slow client must not have the response cut short by the default async timeout: the callback alone completes the request,
+                        // and a client that stops reading altogether is dropped by the idle timeout of the connection, which fails the callback.
+                        async.setTimeout(0);
+
+                        ((HttpOutput) output).sendContent(asset.content(gzip), new Callback() {
+                            @Override
+                            public void succeeded() {
+                                async.complete();
+                            }
+
+                            @Override
+                            public void failed(final Throwable error) {
+                                // ignored: client disconnected or not reachable for some other reason
+                                async.complete();
+                            }
+                        });
+                    } else {
+                        try {
+                            asset.send(gzip, output);
                         } catch (final IOException error) {
                             // ignored: client disconnected or not reachable for some other reason
                         }
                     }
                 }
-            } catch (final IOException error) {
-                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                response.setContentType("text/plain");
-                output.write(error.getMessage().getBytes(Strings.UTF_8));
             }
         }
     }
+
+    /**
+     * Returns the resource at the given path, loading it on first access.
+     *
+     * @param path the path of the resource.
+     *
+     * @return the resource, or <code>null</code> if it does not exist.
+     *
+     * @throws IOException when reading the resource fails.
+     */
+    private StaticAsset asset(final String path) throws IOException {
+        final StaticAsset cached = assets.get(path);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final URL url = ClassLoaders.findResource(getClass(), path);
+
+        if (url == null) {
+            return null;
+        }
+
+        final URLConnection resource = url.openConnection();
+        final ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(0, resource.getContentLength()));
+
+        try (final InputStream stream = resource.getInputStream()) {
+            IOStreams.send(stream, new byte[CHUNK_SIZE], content::write);
+        }
+
+        final String type = MIME_TYPES.get(path.substring(path.lastIndexOf('.') + 1).toLowerCase());
+        final String contentType = type == null ? DEFAULT_TYPE : type;
+
+        final byte[] data = contentType.equals(HTML_TYPE) ? versioned(path, new String(content.toByteArray(), Strings.UTF_8)) : content.toByteArray();
+
+        final StaticAsset asset = new StaticAsset(contentType, resource.getLastModified(), data);
+
+        // Concurrent first requests may load the same resource; the first one loaded is kept.
+        final StaticAsset loaded = assets.putIfAbsent(path, asset);
+        return loaded == null ? asset : loaded;
+    }
+
+    /**
+     * Appends the version parameter to the local resources the given HTML page refers to.
+     *
+     * @param path the path of the page.
+     * @param html the page.
+     *
+     * @return the modified page encoded in UTF-8; never <code>null</code>.
+     *
+     * @throws IOException when reading a resource fails.
+     */
+    private byte[] versioned(final String path, final String html) throws IOException {
+        final String directory = path.substring(0, path.lastIndexOf('/') + 1);
+        final Matcher references = REFERENCE.matcher(html);
+        final StringBuffer result = new StringBuffer(html.length() + 256);
+
+        while (references.find()) {
+            final String reference = references.group(2);
+            final StaticAsset asset = reference.startsWith("/") ? null : asset(directory + reference);
+
+            final String replacement = asset == null
+                                       ? references.group()
+                                       : String.format("%s=\"%s?%s=%s\"", references.group(1), reference, VERSION_PARAM, asset.version);
+
+            references.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+
+        return references.appendTail(result).toString().getBytes(Strings.UTF_8);
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.fluidity.composition.Component;
+import org.fluidity.foundation.Configuration;
+
+/**
+ * Keeps the responses of recent calculations in memory, up to the configured number of bytes, and evicts the least recently used ones first.
+ * <p>
+ * The responses are identified by a key that the caller derives from everything the response depends on. When several threads ask for a response that is
+ * not cached, only the first one computes it, and the others wait for its result, up to the configured time.
+ */
+@Component
+final class ResultCache {
+
+    private final long capacity;
+    private final int entryLimit;
+    private final long waitMillis;
+    private final String fingerprint;
+
+    // The cached responses in access order, and their total size.
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    // The responses being computed.
+    private final Map<String, CompletableFuture<Entry>> pending = new ConcurrentHashMap<>();
+
+    ResultCache(final Configuration<Settings> configuration) {
+        final Settings settings = configuration.settings();
+
+        this.capacity = settings.capacity();
+        this.entryLimit = settings.entryLimit();
+        this.waitMillis = settings.waitMillis();
+        this.fingerprint = settings.fingerprint();
+    }
+
+    /**
+     * Tells if responses are cached at all.
+     *
+     * @return <code>true</code> if responses are cached; <code>false</code> otherwise.
+     */
+    public boolean enabled() {
+        return capacity > 0 && entryLimit > 0;
+    }
+
+    /**
+     * Returns the size of the largest input and response that are cached.
+     *
+     * @return a number of bytes.
+     */
+    public int entryLimit() {
+        return entryLimit;
+    }
+
+    /**
+     * Returns the digest of the settings in effect, to be included in the keys.
+     *
+     * @return a string; never <code>null</code>.
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Finds the response with the given key. If the response is being computed by another thread, waits for it to complete, up to the configured time. If
+     * the response is not found, the caller is expected to compute it and then invoke {@link #complete(String, Entry)}, whatever the outcome.
+     * <p>
+     * When the other thread fails to compute the response, or computes one too large to cache, all threads waiting for it are told to compute the response
+     * on their own at once, rather than one after the other.
+     *
+     * @param key the key of the response.
+     *
+     * @return the cached response, or <code>null</code> if the caller is to compute it.
+     *
+     * @throws InterruptedIOException when the thread is interrupted while waiting.
+     */
+    public Entry claim(final String key) throws InterruptedIOException {
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+
+            if (entry != null) {
+                return entry;
+            }
+        }
+
+        final CompletableFuture<Entry> computation = new CompletableFuture<>();
+        final CompletableFuture<Entry> running = pending.putIfAbsent(key, computation);
+
+        if (running == null) {
+
+            // A computation may have completed between the lookup and the claim.
+            synchronized (entries) {
+                final Entry entry = entries.get(key);
+
+                if (entry != null) {
+                    pending.remove(key, computation);
+                    computation.complete(entry);
+                    return entry;
+                }
+            }
+
+            return null;
+        }
+
+        try {
+            return running.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException error) {
+            return null;
+        } catch (final InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(key);
+        } catch (final ExecutionException error) {
+            throw new IllegalStateException(error.getCause());
+        }
+    }
+
+    /**
+     * Records the outcome of a computation claimed by {@link #claim(String)}, and releases the threads waiting for a computation of the same key. May also be
+     * invoked without a claim, to cache a response that has been computed anyway.
+     *
+     * @param key   the key of the response.
+     * @param entry the response; <code>null</code> if it could not be computed or is not to be cached.
+     */
+    public void complete(final String key, final Entry entry) {
+        if (entry != null && entry.size() <= capacity) {
+            synchronized (entries) {
+                final Entry replaced = entries.put(key, entry);
+
+                size += entry.size() - (replaced == null ? 0 : replaced.size());
+
+                for (final Iterator<Entry> eldest = entries.values().iterator(); size > capacity && eldest.hasNext(); ) {
+                    size -= eldest.next().size();
+                    eldest.remove();
+                }
+            }
+        }
+
+        final CompletableFuture<Entry> computation = pending.remove(key);
+
+        if (computation != null) {
+            computation.complete(entry);
+        }
+    }
+
+    /**
+     * A cached response.
+     * <p>
+     * This is an immutable value type.
+     */
+    static final class Entry {
+
+        final String contentType;
+        final byte[] content;
+
+        Entry(final String contentType, final byte[] content) {
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        int size() {
+            return content.length;
+        }
+    }
+
+    /**
+     * An output stream that forwards everything to another stream and keeps a copy of the first so many bytes.
+     */
+    static final class Recording extends OutputStream {
+
+        private final OutputStream output;
+        private final int limit;
+
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Recording(final OutputStream output, final int limit) {
+            this.output = output;
+            this.limit = limit;
+        }
+
+        /**
+         * Returns the bytes written so far.
+         *
+         * @return the bytes written, or <code>null</code> if more than the limit have been written.
+         */
+        byte[] content() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        /**
+         * Stops recording, and releases the bytes recorded so far.
+         */
+        void discard() {
+            copy = null;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            output.write(b);
+
+            if (copy != null) {
+                if (copy.size() < limit) {
+                    copy.write(b);
+                } else {
+                    copy = null;
+                }
+            }
+        }
+
+        @Override
+        public void write(final byte[] data, final int offset, final int length) throws IOException {
+            output.write(data, offset, length);
+            record(data, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+
+        private void record(final byte[] data, final int offset, final int length) {
+            if (copy != null) {
+                if (copy.size() + length > limit) {
+                    copy = null;
+                } else {
+                    copy.write(data, offset, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * The settings of the response cache.
+     */
+    interface Settings {
+
+        /**
+         * The total number of bytes the cached responses may take; 0 disables the cache.
+         *
+         * @return a number of bytes.
+         */
+        @Configuration.Property(key = "http.cache.bytes")
+        long capacity();
+
+        /**
+         * The size of the largest input, and of the largest response, to cache.
+         *
+         * @return a number of bytes.
+         */
+        @Configuration.Property(key = "http.cache.entry.bytes")
+        int entryLimit();
+
+        /**
+         * The number of milliseconds to wait for another thread to compute a response before computing it again.
+         *
+         * @return a number of milliseconds.
+         */
+        @Configuration.Property(key = "http.cache.wait.millis")
+        long waitMillis();
+
+        /**
+         * The digest of the settings.
+         *
+         * @return a string.
+         */
+        @Configuration.Property(key = "settings.fingerprint")
+        String fingerprint();
+    }
+}
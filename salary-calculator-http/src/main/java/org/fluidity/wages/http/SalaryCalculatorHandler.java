@@ -16,21 +16,36 @@
 
 package org.fluidity.wages.http;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.charset.UnsupportedCharsetException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.fluidity.composition.Component;
+import org.fluidity.foundation.Configuration;
 import org.fluidity.wages.SalaryDetails;
+import org.fluidity.wages.csv.InputFormat;
+import org.fluidity.wages.csv.OutputBuffer;
+import org.fluidity.wages.csv.OutputFormat;
+import org.fluidity.wages.csv.ParseErrors;
 import org.fluidity.wages.csv.SalaryCalculator;
 import org.fluidity.wages.http.json.JsonOutput;
 
@@ -38,23 +53,105 @@ import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.servlet.ServletRequestContext;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
 /**
- * A Jetty handler for a CSV upload and salary processing thereof.
+ * A Jetty handler for a CSV upload and salary processing thereof. Invalid CSV lines are skipped, and listed in the response next to the salaries.
+ * <p>
+ * The input is either the first file of a multipart form upload, or the request body itself when its content type is one of the {@link InputFormat input
+ * formats}, optionally compressed with gzip as told by the <code>Content-Encoding</code> header. The latter is parsed as it arrives, without looking for
+ * multipart boundaries. Other content types and codings, and character encodings that are not supported, are refused with HTTP status 415.
+ * <p>
+ * When the request has the <code>sorted=true</code> query parameter, the input is expected to be sorted as described at {@link
+ * org.fluidity.wages.SalaryCalculator.Factory#create(Consumer, boolean)}, and the salaries of each month are calculated and sent as soon as the month's
+ * last shift has been read; otherwise, when the whole input has been read. Either way, the response is sent in chunks: when a month is complete, when
+ * the configured number of bytes have been buffered, and when the configured time has elapsed since the last chunk, which is checked both when a salary
+ * is sent and when more input is read.
+ * <p>
+ * The response is sent in the format the <code>Accept</code> header of the request prefers: a JSON document, which also lists the invalid lines, or one
+ * of the line based {@link OutputFormat output formats}, in which the first invalid line fails the request. HTTP status 406 is sent when none of these is
+ * acceptable.
+ * <p>
+ * The input is read, and the response is written, by a thread of the {@link CalculationExecutor} while the request is in asynchronous mode, so that the
+ * Jetty thread that received the request is free to serve others. The calculation gives up its turn to compute while it waits for the client, and
+ * requests that find too many calculations waiting for their turn, or wait too long for theirs, are refused with HTTP status 503.
+ * <p>
+ * Requests are admitted within the limits of the {@link AdmissionControl}. Requests over the limits are refused with HTTP status 503 and a
+ * <code>Retry-After</code> header, and requests that declare, or turn out to have, more input than a single request may with HTTP status 413. Compressed
+ * input is counted both as received and as decompressed.
  */
 @Component(api = SalaryCalculatorHandler.class)
 final class SalaryCalculatorHandler extends AbstractHandler {
 
-    private static final String CHARSET_PARAM = "charset=";
-    private static final int CHARSET_PARAM_LENGTH = CHARSET_PARAM.length();
+    private static final String CHARSET_PARAM = "charset";
+    private static final String SORTED_PARAM = "sorted";
+
+    private static final String JSON_TYPE = "application/json";
+    private static final String TEXT_TYPE = "text/plain";
+    private static final String UTF_8_PARAM = "; charset=utf-8";
+
+    // The supported content codings of a raw request body.
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String IDENTITY = "identity";
+    private static final int GZIP_BUFFER = 8192;
+
+    // The JSON property names.
+    private static final JsonOutput.Key MONTHS_KEY = JsonOutput.key("months");
+    private static final JsonOutput.Key YEAR_KEY = JsonOutput.key("year");
+    private static final JsonOutput.Key MONTH_KEY = JsonOutput.key("month");
+    private static final JsonOutput.Key PEOPLE_KEY = JsonOutput.key("people");
+    private static final JsonOutput.Key ID_KEY = JsonOutput.key("id");
+    private static final JsonOutput.Key NAME_KEY = JsonOutput.key("name");
+    private static final JsonOutput.Key SALARY_KEY = JsonOutput.key("salary");
+    private static final JsonOutput.Key ERROR_KEY = JsonOutput.key("error");
+    private static final JsonOutput.Key SKIPPED_KEY = JsonOutput.key("skipped");
+    private static final JsonOutput.Key ERRORS_KEY = JsonOutput.key("errors");
+    private static final JsonOutput.Key LINE_KEY = JsonOutput.key("line");
+    private static final JsonOutput.Key REASON_KEY = JsonOutput.key("reason");
+
+    // The digest of cached inputs.
+    private static final String DIGEST = "SHA-256";
+
+    // The size of the JSON output buffer.
+    private static final int JSON_BUFFER = 16384;
 
     private final SalaryCalculator calculator;
+    private final ContentNegotiation negotiation;
+    private final ResultCache cache;
+    private final CalculationExecutor executor;
+    private final AdmissionControl admission;
+
+    // The response buffer size, and the longest time between chunks.
+    private final int flushBytes;
+    private final long flushNanos;
+
+    // The JSON output buffers not in use, reused by subsequent requests; at most as many as the calculations admitted at once.
+    private final BlockingQueue<JsonOutput.Buffer> buffers;
+
+    SalaryCalculatorHandler(final SalaryCalculator calculator,
+                            final ContentNegotiation negotiation,
+                            final ResultCache cache,
+                            final CalculationExecutor executor,
+                            final AdmissionControl admission,
+                            final Configuration<Settings> configuration) {
+        final Settings settings = configuration.settings();
 
-    SalaryCalculatorHandler(final SalaryCalculator calculator) {
         this.calculator = calculator;
+        this.negotiation = negotiation;
+        this.cache = cache;
+        this.executor = executor;
+        this.admission = admission;
+        this.buffers = new ArrayBlockingQueue<>(admission.status().calculations);
+        this.flushBytes = settings.flushBytes();
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(settings.flushMillis());
+
+        if (flushBytes <= 0 || flushNanos <= 0) {
+            throw new IllegalStateException("no response flush thresholds configured");
+        }
     }
 
     @Override
@@ -65,10 +162,105 @@ final class SalaryCalculatorHandler extends AbstractHandler {
             response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
             response.addHeader("Allow", "POST");
         } else {
+            final String accepted = negotiation.select(request.getHeader("Accept"), JSON_TYPE, OutputFormat.CSV.contentType, OutputFormat.NDJSON.contentType);
+
+            if (accepted == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE);
+                return;
+            }
+
+            final long length = request.getContentLengthLong();
+
+            if (!admission.fits(length)) {
+                response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                return;
+            }
+
+            final AdmissionControl.Ticket ticket = admission.admit(length);
+
+            if (ticket == null) {
+                busy(response);
+                return;
+            }
+
+            final AsyncContext async = request.startAsync();
+
+            // The calculation takes as long as the input takes to arrive and the output to be taken, and the client can hang up any time; the wait for
+            // the calculation to start is limited by the executor.
+            async.setTimeout(0);
+
+            try {
+                executor.execute(() -> {
+                    try {
+                        receive(accepted, ticket, request, response);
+                    } catch (final Exception error) {
+                        if (response.isCommitted()) {
+
+                            // Keeps the client from mistaking the partial response for a complete one.
+                            control.getHttpChannel().abort(error);
+                        } else if (error instanceof AdmissionControl.Overloaded) {
+                            response.reset();
+                            busy(response);
+                        } else if (error instanceof AdmissionControl.TooLarge) {
+                            response.reset();
+                            response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                        } else {
+                            response.reset();
+                            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        }
+                    } finally {
+                        ticket.close();
+                        async.complete();
+                    }
+                }, () -> {
+                    ticket.close();
+                    busy(response);
+                    async.complete();
+                });
+            } catch (final RejectedExecutionException error) {
+                ticket.close();
+                busy(response);
+                async.complete();
+            }
+        }
+    }
+
+    /**
+     * Tells the client that the server is too busy to take the request, and when to try again.
+     *
+     * @param response the HTTP response.
+     */
+    private void busy(final HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(admission.retrySeconds()));
+    }
+
+    /**
+     * Reads the input from the given request, and sends the salaries calculated from it in the given media type. Invoked in a thread of the {@link
+     * CalculationExecutor}, with the request in asynchronous mode.
+     *
+     * @param accepted the media type to send the response in.
+     * @param ticket   the admission of the request.
+     * @param request  the HTTP request.
+     * @param response the HTTP response.
+     *
+     * @throws IOException when reading the input or sending the response fails.
+     */
+    private void receive(final String accepted, final AdmissionControl.Ticket ticket, final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+        // Jetty sends a chunk whenever its buffer is full or flushed.
+        response.setBufferSize(flushBytes);
+
+        if (ServletFileUpload.isMultipartContent(request)) {
             try {
                 final ServletFileUpload upload = new ServletFileUpload();
 
-                final FileItemIterator files = upload.getItemIterator(request);
+                final FileItemIterator files = upload.getItemIterator(new ServletRequestContext(request) {
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        return ticket.meter(executor.input(super.getInputStream()));
+                    }
+                });
 
                 if (!files.hasNext()) {
                     throw new FileUploadException("no file uploaded");
@@ -76,67 +268,660 @@ final class SalaryCalculatorHandler extends AbstractHandler {
                     final FileItemStream file = files.next();
 
                     final String contentType = file.getContentType();
-                    final int cs = contentType.indexOf(CHARSET_PARAM);
-                    final String charset = cs < 0 ? null : contentType.substring(cs + CHARSET_PARAM_LENGTH);
+                    final Charset encoding = encoding(contentType);
 
-                    final Charset encoding;
+                    if (encoding == null) {
+                        response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+                        return;
+                    }
 
-                    try {
-                        encoding = charset != null ? Charset.forName(charset) : StandardCharsets.UTF_8;
-                        upload.setHeaderEncoding(encoding.name());
-                    } catch (final UnsupportedCharsetException error) {
-                        throw new IllegalArgumentException("unknown encoding: " + charset);
+                    upload.setHeaderEncoding(encoding.name());
+
+                    respond(accepted, file.openStream(), encoding, InputFormat.of(file.getName(), contentType), request, response);
+                }
+            } catch (final FileUploadException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            }
+        } else {
+
+            // A single file sent as the request body, possibly compressed.
+            final String contentType = request.getContentType();
+            final String compression = request.getHeader("Content-Encoding");
+
+            final InputFormat format = InputFormat.of(contentType);
+            final Charset encoding = encoding(contentType);
+            final boolean gzip = compression != null && (compression.equalsIgnoreCase(GZIP) || compression.equalsIgnoreCase(X_GZIP));
+
+            if (format == null || encoding == null || compression != null && !gzip && !compression.equalsIgnoreCase(IDENTITY)) {
+                response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+                return;
+            }
+
+            final InputStream input;
+
+            try {
+                final InputStream body = ticket.meter(executor.input(request.getInputStream()));
+
+                // The decompressed input is metered too, as it may be many times larger than what was received.
+                input = gzip ? ticket.meter(new GZIPInputStream(body, GZIP_BUFFER)) : body;
+            } catch (final AdmissionControl.Overloaded | AdmissionControl.TooLarge error) {
+                throw error;
+            } catch (final IOException error) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            respond(accepted, input, encoding, format, request, response);
+        }
+    }
+
+    /**
+     * Sends the salaries calculated from the given input in the given media type. The input is hashed as it is read, and the response is recorded as it is
+     * sent, so that both stream without delay; when the calculation completes, and the input and the response have turned out small enough, the response
+     * is cached under a digest of the input, the settings, and the request parameters. When the same input is uploaded again, the cached response is found
+     * once the input has been read, and sent instead of the calculated one, unless part of the latter has already been sent by then. Identical uploads that
+     * are read while the response is being calculated wait for that calculation instead of completing their own.
+     *
+     * @param accepted the media type to send the response in.
+     * @param input    the input.
+     * @param encoding the character encoding of the input.
+     * @param format   the format of the input.
+     * @param request  the HTTP request.
+     * @param response the HTTP response.
+     *
+     * @throws IOException when reading the input or sending the response fails.
+     */
+    private void respond(final String accepted,
+                         final InputStream input,
+                         final Charset encoding,
+                         final InputFormat format,
+                         final HttpServletRequest request,
+                         final HttpServletResponse response) throws IOException {
+        final boolean sorted = Boolean.parseBoolean(request.getParameter(SORTED_PARAM));
+        final String contentType = accepted + UTF_8_PARAM;
+
+        response.setContentType(contentType);
+
+        final OutputStream output = executor.output(response.getOutputStream());
+
+        if (!cache.enabled()) {
+            calculate(accepted, input, encoding, format, sorted, output, null, response);
+            return;
+        }
+
+        final MessageDigest digest = digest();
+        digest.update(String.format("%s\n%s\n%s\n%s\n%b\n", cache.fingerprint(), accepted, format, encoding.name(), sorted).getBytes(StandardCharsets.UTF_8));
+
+        try (final Caching caching = new Caching(digest, response)) {
+            try {
+                if (calculate(accepted, caching.input(input), encoding, format, sorted, caching.output(output), caching, response)) {
+                    caching.complete(contentType);
+                }
+            } catch (final Cached hit) {
+                response.reset();
+                response.setContentType(hit.entry.contentType);
+                response.setContentLength(hit.entry.size());
+                output.write(hit.entry.content);
+            }
+        }
+    }
+
+    /**
+     * Sends the salaries calculated from the given input in the given media type to the given stream.
+     *
+     * @param accepted the media type to send the response in.
+     * @param input    the input.
+     * @param encoding the character encoding of the input.
+     * @param format   the format of the input.
+     * @param sorted   tells if the input is sorted by date and person.
+     * @param output   the stream to send the response to.
+     * @param caching  the cache lookup of the response; may be <code>null</code>.
+     * @param response the HTTP response.
+     *
+     * @return <code>true</code> if the calculation completed; <code>false</code> if it failed.
+     *
+     * @throws IOException when sending the response fails, or when the input exceeds the limits of the {@link AdmissionControl}.
+     */
+    private boolean calculate(final String accepted,
+                              final InputStream input,
+                              final Charset encoding,
+                              final InputFormat format,
+                              final boolean sorted,
+                              final OutputStream output,
+                              final Caching caching,
+                              final HttpServletResponse response) throws IOException {
+        if (accepted.equals(JSON_TYPE)) {
+            return json(input, encoding, format, sorted, output, caching);
+        } else {
+            final OutputFormat type = accepted.equals(OutputFormat.CSV.contentType) ? OutputFormat.CSV : OutputFormat.NDJSON;
+            return lines(type, input, encoding, format, sorted, output, caching, response);
+        }
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return a new message digest; never <code>null</code>.
+     */
+    private MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (final NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    /**
+     * Finds the character encoding in the <code>charset</code> parameter of the given content type. The parameter value may be quoted, and may be followed
+     * by other parameters.
+     *
+     * @param contentType the MIME content type, optionally with parameters; may be <code>null</code>.
+     *
+     * @return the character encoding; UTF-8 if the content type has no <code>charset</code> parameter, or <code>null</code> if the character encoding is
+     * not valid or not supported.
+     */
+    private Charset encoding(final String contentType) {
+        final String[] parameters = contentType == null ? new String[0] : contentType.split(";");
+
+        // The first item is the media type itself.
+        for (int i = 1; i < parameters.length; ++i) {
+            final String parameter = parameters[i];
+            final int equals = parameter.indexOf('=');
+
+            if (equals > 0 && parameter.substring(0, equals).trim().equalsIgnoreCase(CHARSET_PARAM)) {
+                final String value = parameter.substring(equals + 1).trim();
+                final boolean quoted = value.length() > 1 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"';
+
+                try {
+                    return Charset.forName(quoted ? value.substring(1, value.length() - 1).trim() : value);
+                } catch (final IllegalArgumentException error) {
+
+                    // Either an IllegalCharsetNameException or an UnsupportedCharsetException.
+                    return null;
+                }
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Sends the salaries calculated from the given input as a JSON document. Invalid lines are skipped and listed after the salaries, and a failure is
+     * reported in the document. The output buffer is taken from those left by earlier requests, and left for later ones.
+     *
+     * @param input    the input.
+     * @param encoding the character encoding of the input.
+     * @param format   the format of the input.
+     * @param sorted   tells if the input is sorted by date and person.
+     * @param output   the stream to send the response to.
+     * @param caching  the cache lookup of the response; may be <code>null</code>.
+     *
+     * @return <code>true</code> if the calculation completed; <code>false</code> if it failed.
+     *
+     * @throws IOException when sending the response fails, or when the input exceeds the limits of the {@link AdmissionControl}.
+     */
+    private boolean json(final InputStream input,
+                         final Charset encoding,
+                         final InputFormat format,
+                         final boolean sorted,
+                         final OutputStream output,
+                         final Caching caching) throws IOException {
+        final JsonOutput.Buffer pooled = buffers.poll();
+        final JsonOutput.Buffer buffer = pooled == null ? new JsonOutput.Buffer(JSON_BUFFER) : pooled;
+
+        try {
+            return document(buffer, input, encoding, format, sorted, output, caching);
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Sends the salaries calculated from the given input as a JSON document using the given output buffer. See {@link #json(InputStream, Charset,
+     * InputFormat, boolean, OutputStream, Caching)}.
+     *
+     * @param buffer   the JSON output buffer.
+     * @param input    the input.
+     * @param encoding the character encoding of the input.
+     * @param format   the format of the input.
+     * @param sorted   tells if the input is sorted by date and person.
+     * @param output   the stream to send the response to.
+     * @param caching  the cache lookup of the response; may be <code>null</code>.
+     *
+     * @return <code>true</code> if the calculation completed; <code>false</code> if it failed.
+     *
+     * @throws IOException when sending the response fails, or when the input exceeds the limits of the {@link AdmissionControl}.
+     */
+    private boolean document(final JsonOutput.Buffer buffer,
+                             final InputStream input,
+                             final Charset encoding,
+                             final InputFormat format,
+                             final boolean sorted,
+                             final OutputStream output,
+                             final Caching caching) throws IOException {
+        final JsonOutput.Object.Root json = JsonOutput.object(output, buffer);
+        final JsonOutput.Array months = json.array(MONTHS_KEY);
+
+        final Chunks chunks = new Chunks(caching, () -> {
+            json.flush();
+
+            try {
+                output.flush();
+            } catch (final IOException error) {
+                throw new UncheckedIOException(error);
+            }
+        });
+
+        final Consumer<SalaryDetails> printer = new Consumer<SalaryDetails>() {
+
+            // The current month.
+            private LocalDate month;
+
+            // The array of people objects for the current month.
+            private JsonOutput.Array peopleArray;
+
+            @Override
+            public void accept(final SalaryDetails details) {
+                if (month == null || !details.month.equals(month)) {
+                    final boolean complete = month != null;
+
+                    month = details.month;
+
+                    final JsonOutput.Object monthObject = months.object();
+
+                    monthObject.add(YEAR_KEY, month.getYear());
+                    monthObject.add(MONTH_KEY, month.getMonthValue());
+
+                    // The previous month is now closed, and the client can tell where the new one starts.
+                    if (complete) {
+                        chunks.send();
                     }
 
-                    response.setContentType("application/json; charset=utf-8");
+                    peopleArray = monthObject.array(PEOPLE_KEY);
+                }
 
-                    final PrintWriter output = response.getWriter();
+                final JsonOutput.Object peopleObject = peopleArray.object();
 
-                    final JsonOutput.Object.Root json = JsonOutput.object(16384, output::write);
-                    final JsonOutput.Array months = json.array("months");
+                peopleObject.add(ID_KEY, details.personId);
+                peopleObject.add(NAME_KEY, details.personName);
+                peopleObject.amount(SALARY_KEY, details.amountBy100);
 
-                    final Consumer<SalaryDetails> printer = new Consumer<SalaryDetails>() {
+                chunks.buffered();
+            }
+        };
 
-                        // The current month.
-                        private LocalDate month;
+        final ParseErrors errors = new ParseErrors();
 
-                        // The array of people objects for the current month.
-                        private JsonOutput.Array peopleArray;
+        // The actual business logic.
 
-                        @Override
-                        public void accept(final SalaryDetails details) {
-                            if (month == null || !details.month.equals(month)) {
-                                month = details.month;
+        boolean completed = false;
 
-                                final JsonOutput.Object monthObject = months.object();
+        try {
+            calculator.process(chunks.input(input), encoding, format, sorted, printer, errors);
+            completed = true;
+        } catch (final Cached hit) {
+            throw hit;
+        } catch (final AdmissionControl.Overloaded | AdmissionControl.TooLarge error) {
 
-                                monthObject.add("year", month.getYear());
-                                monthObject.add("month", month.getMonthValue());
+            // Refuses the request rather than reporting the failure as part of the salaries.
+            throw error;
+        } catch (final Exception error) {
+            json.add(ERROR_KEY, error.getMessage());
+        }
 
-                                peopleArray = monthObject.array("people");
-                            }
+        if (errors.count() > 0) {
+            json.add(SKIPPED_KEY, errors.count());
 
-                            final JsonOutput.Object peopleObject = peopleArray.object();
+            final JsonOutput.Array list = json.array(ERRORS_KEY);
 
-                            peopleObject.add("id", details.personId);
-                            peopleObject.add("name", details.personName);
-                            peopleObject.add("salary", details.amount());
-                        }
-                    };
+            for (final ParseErrors.Entry entry : errors.entries()) {
+                final JsonOutput.Object item = list.object();
 
-                    // The actual business logic.
+                item.add(LINE_KEY, entry.line);
+                item.add(REASON_KEY, entry.reason);
+            }
+        }
 
-                    try {
-                        calculator.process(new InputStreamReader(file.openStream(), encoding), printer);
-                    } catch (final Exception error) {
-                        json.add("error", error.getMessage());
-                    } finally {
-                        json.close();
+        json.close();
+
+        return completed;
+    }
+
+    /**
+     * Sends the salaries calculated from the given input one per line in the given format. These formats have no place for errors, so the first invalid
+     * line fails the request: if no part of the response has been sent yet, with HTTP status 400 and the error message as plain text; otherwise, by
+     * aborting the response so that the client cannot mistake it for a complete one.
+     *
+     * @param type     the format of the response.
+     * @param input    the input.
+     * @param encoding the character encoding of the input.
+     * @param format   the format of the input.
+     * @param sorted   tells if the input is sorted by date and person.
+     * @param output   the stream to send the response to.
+     * @param caching  the cache lookup of the response; may be <code>null</code>.
+     * @param response the HTTP response.
+     *
+     * @return <code>true</code> if the calculation completed; <code>false</code> if it failed.
+     *
+     * @throws IOException when sending the response fails, when the input exceeds the limits of the {@link AdmissionControl}, or when the processing fails
+     * after the response has been committed.
+     */
+    private boolean lines(final OutputFormat type,
+                          final InputStream input,
+                          final Charset encoding,
+                          final InputFormat format,
+                          final boolean sorted,
+                          final OutputStream output,
+                          final Caching caching,
+                          final HttpServletResponse response) throws IOException {
+        final OutputBuffer buffer = new OutputBuffer(output, StandardCharsets.UTF_8, flushBytes);
+        final Consumer<SalaryDetails> writer = type.writer(buffer);
+        final Chunks chunks = new Chunks(caching, buffer::flush);
+
+        final Consumer<SalaryDetails> printer = new Consumer<SalaryDetails>() {
+
+            // The current month.
+            private LocalDate month;
+
+            @Override
+            public void accept(final SalaryDetails details) {
+
+                // The previous month is complete.
+                if (month != null && !details.month.equals(month)) {
+                    chunks.send();
+                }
+
+                month = details.month;
+                writer.accept(details);
+
+                chunks.buffered();
+            }
+        };
+
+        try {
+            calculator.process(chunks.input(input), encoding, format, sorted, printer, null);
+        } catch (final Cached hit) {
+            throw hit;
+        } catch (final AdmissionControl.Overloaded | AdmissionControl.TooLarge error) {
+            throw error;
+        } catch (final Exception error) {
+            if (response.isCommitted()) {
+                throw error instanceof IOException ? (IOException) error : new IOException(error.getMessage(), error);
+            }
+
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType(TEXT_TYPE + UTF_8_PARAM);
+            response.getOutputStream().write(String.valueOf(error.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return false;
+        }
+
+        buffer.flush();
+        return true;
+    }
+
+    /**
+     * Sends the response buffered so far in a chunk when told to, and when the configured time has elapsed since the last chunk while salaries are
+     * waiting to be sent. The time is checked both when a salary is buffered and when more input is read, so that the salaries already calculated are not
+     * held up by a long stretch of input that completes no other salary.
+     */
+    private final class Chunks {
+
+        private final Caching caching;
+        private final Runnable flush;
+
+        // Tells if a salary has been buffered since the last chunk.
+        private boolean pending;
+
+        // The time of the next chunk.
+        private long deadline = System.nanoTime() + flushNanos;
+
+        Chunks(final Caching caching, final Runnable flush) {
+            this.caching = caching;
+            this.flush = flush;
+        }
+
+        /**
+         * Wraps the given input to send the buffered salaries before a read when the time is up.
+         *
+         * @param input the input to wrap.
+         *
+         * @return a new stream; never <code>null</code>.
+         */
+        InputStream input(final InputStream input) {
+            return new FilterInputStream(input) {
+                @Override
+                public int read() throws IOException {
+                    expired();
+                    return super.read();
+                }
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                    expired();
+                    return super.read(buffer, offset, length);
+                }
+            };
+        }
+
+        /**
+         * Records that a salary has been buffered, and sends it if the time is up.
+         *
+         * @throws Cached when the response has been found in the cache, to stop the calculation.
+         */
+        void buffered() {
+            pending = true;
+            expired();
+
+            if (caching != null) {
+                caching.check();
+            }
+        }
+
+        /**
+         * Sends the response buffered so far.
+         *
+         * @throws Cached when the response has been found in the cache, to stop the calculation.
+         */
+        void send() {
+            if (caching != null) {
+                caching.check();
+            }
+
+            flush.run();
+
+            pending = false;
+            deadline = System.nanoTime() + flushNanos;
+        }
+
+        private void expired() {
+            if (pending && System.nanoTime() - deadline >= 0) {
+                send();
+            }
+        }
+    }
+
+    /**
+     * Hashes the input of a calculation, and records its response, as they stream. When the input has been read, the response is looked up in the cache if
+     * the input is small enough to cache, and no part of the response has been sent yet. When the calculation completes, its response is cached if it is
+     * small enough, too.
+     */
+    private final class Caching implements AutoCloseable {
+
+        private final MessageDigest digest;
+        private final HttpServletResponse response;
+        private final int limit = cache.entryLimit();
+
+        private ResultCache.Recording recording;
+
+        // The number of input bytes read so far.
+        private long size;
+
+        // The key of the response once the input has been read, if small enough to cache.
+        private String key;
+
+        // Tells if the key has been claimed, and not yet completed.
+        private boolean claimed;
+
+        // The cached response found when the input has been read.
+        private ResultCache.Entry hit;
+
+        Caching(final MessageDigest digest, final HttpServletResponse response) {
+            this.digest = digest;
+            this.response = response;
+        }
+
+        /**
+         * Wraps the given input to hash it until it grows too large to cache, and to look up the response when it has been read.
+         *
+         * @param input the input to wrap.
+         *
+         * @return a new stream; never <code>null</code>.
+         */
+        InputStream input(final InputStream input) {
+            return new FilterInputStream(input) {
+                private boolean ended;
+
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+
+                    if (b < 0) {
+                        end();
+                    } else if (++size <= limit) {
+                        digest.update((byte) b);
+                    } else {
+                        recording.discard();
                     }
+
+                    return b;
                 }
-            } catch (final FileUploadException e) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+
+                @Override
+                public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                    final int count = super.read(buffer, offset, length);
+
+                    if (count < 0) {
+                        end();
+                    } else if ((size += count) <= limit) {
+                        digest.update(buffer, offset, count);
+                    } else {
+                        recording.discard();
+                    }
+
+                    return count;
+                }
+
+                private void end() throws IOException {
+                    if (!ended) {
+                        ended = true;
+                        lookup();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Wraps the given output stream of the response to record the response until it grows too large to cache.
+         *
+         * @param output the output stream of the response.
+         *
+         * @return a new stream; never <code>null</code>.
+         */
+        OutputStream output(final OutputStream output) {
+            recording = new ResultCache.Recording(output, limit);
+            return recording;
+        }
+
+        /**
+         * Stops the calculation if its response has been found in the cache.
+         *
+         * @throws Cached when the response has been found in the cache.
+         */
+        void check() {
+            if (hit != null) {
+
+                // A new exception each time, as the first one may be still propagating when another is added to it as suppressed.
+                throw new Cached(hit);
             }
         }
+
+        /**
+         * Caches the recorded response of the completed calculation, if the input and the response are small enough.
+         *
+         * @param contentType the content type of the response.
+         */
+        void complete(final String contentType) {
+            if (key != null) {
+                final byte[] recorded = recording.content();
+
+                claimed = false;
+                cache.complete(key, recorded == null ? null : new ResultCache.Entry(contentType, recorded));
+            }
+        }
+
+        /**
+         * Releases the claim of a calculation that has failed.
+         */
+        @Override
+        public void close() {
+            if (claimed) {
+                claimed = false;
+                cache.complete(key, null);
+            }
+        }
+
+        private void lookup() throws IOException {
+            if (size <= limit) {
+                key = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+
+                if (!response.isCommitted()) {
+                    // An identical upload being calculated may take a while, and this calculation's turn to compute is better used by others meanwhile.
+                    final ResultCache.Entry entry = executor.waiting(() -> cache.claim(key));
+
+                    if (entry != null) {
+                        hit = entry;
+                        throw new Cached(entry);
+                    }
+
+                    claimed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown to stop a calculation when its response has been found in the cache.
+     */
+    private static final class Cached extends RuntimeException {
+
+        final ResultCache.Entry entry;
+
+        Cached(final ResultCache.Entry entry) {
+            super(null, null, false, false);
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * The settings of the response streaming.
+     */
+    interface Settings {
+
+        /**
+         * The number of response bytes to buffer before sending them in a chunk.
+         *
+         * @return a positive number.
+         */
+        @Configuration.Property(key = "http.flush.bytes")
+        int flushBytes();
+
+        /**
+         * The number of milliseconds after which the response buffered so far is sent in a chunk, even if no month has been completed.
+         *
+         * @return a positive number.
+         */
+        @Configuration.Property(key = "http.flush.millis")
+        int flushMillis();
     }
 }
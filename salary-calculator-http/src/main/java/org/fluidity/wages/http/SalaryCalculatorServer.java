@@ -41,18 +41,26 @@ final class SalaryCalculatorServer implements Application {
 
     static final int DEFAULT_PORT = 8080;
     static final String CALCULATOR_URI = "/calculate";
+    static final String STATUS_URI = "/status";
 
     private final Log log;
 
     // Computes salary from an uploaded CSV file.
     private final SalaryCalculatorHandler calculator;
 
+    // Reports the load of the calculator.
+    private final StatusHandler status;
+
     // Serves the static files from src/main/resources/webroot that comprise the HTML client.
     private final ResourceHandler resources;
 
-    SalaryCalculatorServer(final ResourceHandler resources, final SalaryCalculatorHandler calculator, final Log<SalaryCalculatorServer> log) {
+    SalaryCalculatorServer(final ResourceHandler resources,
+                           final SalaryCalculatorHandler calculator,
+                           final StatusHandler status,
+                           final Log<SalaryCalculatorServer> log) {
         this.resources = resources;
         this.calculator = calculator;
+        this.status = status;
         this.log = log;
     }
 
@@ -85,7 +93,7 @@ final class SalaryCalculatorServer implements Application {
                                final Request control,
                                final HttpServletRequest request,
                                final HttpServletResponse response) throws IOException, ServletException {
-                final Handler handler = uri.equals(CALCULATOR_URI) ? calculator : resources;
+                final Handler handler = uri.equals(CALCULATOR_URI) ? calculator : uri.equals(STATUS_URI) ? status : resources;
                 handler.handle(uri, control, request, response);
                 control.setHandled(true);
             }
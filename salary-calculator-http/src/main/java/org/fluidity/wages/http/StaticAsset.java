@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A static resource held in memory, along with its gzip compressed variant if that is worth sending, and the entity tag of each. The variants are held in
+ * direct buffers, which the network layer can send without copying them to the heap first.
+ * <p>
+ * This is an immutable value type.
+ */
+final class StaticAsset {
+
+    // The length of the version string derived from the digest of the content.
+    private static final int VERSION_LENGTH = 12;
+
+    // The compressed variant is kept only when it saves at least this many parts in 16 of the original size.
+    private static final int MIN_SAVING = 2;
+
+    final String contentType;
+    final long lastModified;
+
+    // Identifies the content; used in URLs that never change the content they refer to.
+    final String version;
+
+    private final ByteBuffer content;
+    private final String tag;
+
+    private final ByteBuffer compressed;
+    private final String compressedTag;
+
+    /**
+     * Creates a new instance, and compresses the given content.
+     *
+     * @param contentType  the MIME content type of the content.
+     * @param lastModified the time the content was last modified at, or -1 if not known.
+     * @param content      the content.
+     */
+    StaticAsset(final String contentType, final long lastModified, final byte[] content) {
+        this.contentType = contentType;
+        this.lastModified = lastModified;
+        this.content = direct(content);
+
+        final String digest = digest(content);
+
+        this.version = digest.substring(0, VERSION_LENGTH);
+        this.tag = String.format("\"%s\"", digest);
+
+        final byte[] gzip = gzip(content);
+        final boolean worth = gzip.length <= content.length - content.length * MIN_SAVING / 16;
+
+        this.compressed = worth ? direct(gzip) : null;
+        this.compressedTag = worth ? String.format("\"%s-gzip\"", digest) : null;
+    }
+
+    /**
+     * Tells if there is a compressed variant.
+     *
+     * @return <code>true</code> if there is a compressed variant; <code>false</code> otherwise.
+     */
+    boolean compressible() {
+        return compressed != null;
+    }
+
+    /**
+     * Returns the entity tag of the given variant.
+     *
+     * @param gzip selects the compressed variant; must be <code>false</code> unless the asset is {@link #compressible()}.
+     *
+     * @return a quoted string; never <code>null</code>.
+     */
+    String tag(final boolean gzip) {
+        return gzip ? compressedTag : tag;
+    }
+
+    /**
+     * Returns the length of the given variant.
+     *
+     * @param gzip selects the compressed variant; must be <code>false</code> unless the asset is {@link #compressible()}.
+     *
+     * @return a number of bytes.
+     */
+    int length(final boolean gzip) {
+        return (gzip ? compressed : content).capacity();
+    }
+
+    /**
+     * Returns the given variant.
+     *
+     * @param gzip selects the compressed variant; must be <code>false</code> unless the asset is {@link #compressible()}.
+     *
+     * @return a new read-only buffer positioned at the start of the content; never <code>null</code>.
+     */
+    ByteBuffer content(final boolean gzip) {
+        return (gzip ? compressed : content).duplicate();
+    }
+
+    /**
+     * Writes the given variant to the given stream. Used when the stream cannot take the buffer returned by {@link #content(boolean)}.
+     *
+     * @param gzip   selects the compressed variant; must be <code>false</code> unless the asset is {@link #compressible()}.
+     * @param output the stream to write to.
+     *
+     * @throws IOException when the stream throws the same.
+     */
+    void send(final boolean gzip, final OutputStream output) throws IOException {
+        final ByteBuffer buffer = content(gzip);
+        final WritableByteChannel channel = Channels.newChannel(output);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer direct(final byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+
+        buffer.put(data).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static String digest(final byte[] content) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (final NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static byte[] gzip(final byte[] content) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 2);
+
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(content);
+        } catch (final IOException error) {
+            throw new UncheckedIOException(error);
+        }
+
+        return output.toByteArray();
+    }
+}
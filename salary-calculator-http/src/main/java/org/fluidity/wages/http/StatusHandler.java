@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.fluidity.composition.Component;
+import org.fluidity.wages.http.json.JsonOutput;
+
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Reports the utilisation of the {@link AdmissionControl} limits as a JSON document, for monitoring:
+ * <pre>
+ * {"calculations":{"admitted":3,"limit":64},"bytes":{"charged":1048576,"limit":1073741824},"rejected":0}
+ * </pre>
+ */
+@Component(api = StatusHandler.class)
+final class StatusHandler extends AbstractHandler {
+
+    private static final int JSON_BUFFER = 256;
+
+    private final AdmissionControl admission;
+
+    StatusHandler(final AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    public void handle(final String uri, final Request control, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        final HttpMethod method = HttpMethod.fromString(request.getMethod());
+
+        if (method != HttpMethod.GET) {
+            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            response.addHeader("Allow", "GET");
+        } else {
+            final AdmissionControl.Status status = admission.status();
+
+            response.setContentType("application/json; charset=utf-8");
+            response.setHeader("Cache-Control", "no-store");
+
+            final JsonOutput.Object.Root json = JsonOutput.object(response.getOutputStream(), new JsonOutput.Buffer(JSON_BUFFER));
+
+            final JsonOutput.Object calculations = json.object("calculations");
+            calculations.add("admitted", status.admitted);
+            calculations.add("limit", status.calculations);
+
+            final JsonOutput.Object bytes = json.object("bytes");
+            bytes.add("charged", status.charged);
+            bytes.add("limit", status.bytes);
+
+            json.add("rejected", status.rejected);
+            json.close();
+        }
+    }
+}
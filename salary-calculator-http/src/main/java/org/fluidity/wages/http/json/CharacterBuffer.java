@@ -18,65 +18,138 @@ package org.fluidity.wages.http.json;
 
 import java.util.function.Consumer;
 
+import org.fluidity.wages.SalaryDetails;
+
 /**
  * A character buffer that converts Unicode code points to JSON formatted characters.
  */
 @SuppressWarnings("WeakerAccess")
 final class CharacterBuffer {
 
-    private final Consumer<String> consumer;
+    private static final int DIGITS = 20;
+
+    // The tens and the ones digit of each number below 100.
+    private static final char[] TENS = new char[100];
+    private static final char[] ONES = new char[100];
+
+    static {
+        for (int i = 0; i < 100; ++i) {
+            TENS[i] = (char) ('0' + i / 10);
+            ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+
+    // The largest number of fraction digits to encode without Double.toString().
+    private static final int MAX_SCALE = 9;
+
+    // The powers of 10 up to MAX_SCALE, all exact.
+    private static final double[] POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9 };
+
+    // The limit below which all integers are exact doubles.
+    private static final double EXACT_LIMIT = 0x1p53;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // The escape of each character that needs one below the end of the C1 control characters: the character after the backslash, or 'u' for a Unicode
+    // escape sequence; zero for characters that need no escaping.
+    private static final char[] ESCAPES = new char[0xA0];
+
+    static {
+        for (int i = 0; i < ESCAPES.length; ++i) {
+            ESCAPES[i] = Character.isISOControl(i) ? 'u' : 0;
+        }
+
+        ESCAPES['\\'] = '\\';
+        ESCAPES['"'] = '"';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+    }
+
+    private static final char[] TRUE = { 't', 'r', 'u', 'e' };
+    private static final char[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+    private final Sink sink;
 
     private final char[] buffer;
     private int index = 0;
 
+    // Holds formatted numbers; large enough for any long value, any amount, and any number with MAX_SCALE fraction digits below EXACT_LIMIT.
+    private final char[] digits = new char[DIGITS];
+
     public CharacterBuffer(final int size, final Consumer<String> consumer) {
-        this.buffer = new char[size];
-        this.consumer = consumer;
+        this(new char[size], (characters, length) -> consumer.accept(new String(characters, 0, length)));
+    }
+
+    /**
+     * Creates a new instance that uses the given array as buffer, and flushes the buffer to the given sink.
+     *
+     * @param buffer the buffer to accumulate characters in.
+     * @param sink   the object to flush the buffer to.
+     */
+    public CharacterBuffer(final char[] buffer, final Sink sink) {
+        this.buffer = buffer;
+        this.sink = sink;
     }
 
     /**
      * Encodes the given character string to JSON format. See http://json.org/
+     * <p>
+     * Runs of characters that need no escaping are copied to the buffer in bulk. Characters outside the Basic Multilingual Plane are emitted as the
+     * surrogate pairs they are stored as, while unpaired surrogates are escaped.
      *
      * @param text the character string to encode.
      */
     public void encode(final String text) {
-        verify(text);
+        final int length = text.length();
 
-        for (int offset = 0, length = text.length(); offset < length; ++offset) {
-            final int codePoint = text.codePointAt(offset);
+        // The first character of the current run of characters that need no escaping.
+        int run = 0;
 
-            switch (codePoint) {
-            case '\\':
-                escape('\\');
-                break;
-            case '"':
-                escape('"');
-                break;
-            case '\b':
-                escape('b');
-                break;
-            case '\f':
-                escape('f');
-                break;
-            case '\n':
-                escape('n');
-                break;
-            case '\r':
-                escape('r');
-                break;
-            case '\t':
-                escape('t');
-                break;
-            default:
-                if (Character.isISOControl(codePoint)) {
-                    control(codePoint);
-                } else {
-                    direct((char) codePoint);
+        for (int offset = 0; offset < length; ++offset) {
+            final char character = text.charAt(offset);
+            final char escape;
+
+            if (character < ESCAPES.length) {
+                escape = ESCAPES[character];
+
+                if (escape == 0) {
+                    continue;
+                }
+            } else if (Character.isSurrogate(character)) {
+                if (Character.isHighSurrogate(character) && offset + 1 < length && Character.isLowSurrogate(text.charAt(offset + 1))) {
+                    ++offset;
+                    continue;
                 }
 
-                break;
+                escape = 'u';
+            } else {
+                continue;
             }
+
+            copy(text, run, offset);
+
+            if (escape == 'u') {
+                control(character);
+            } else {
+                escape(escape);
+            }
+
+            run = offset + 1;
         }
+
+        copy(text, run, length);
+    }
+
+    /**
+     * Emits the given characters, already in JSON format, as is.
+     *
+     * @param characters the characters to emit.
+     */
+    public void direct(final char[] characters) {
+        copy(characters, 0, characters.length);
     }
 
     /**
@@ -93,53 +166,195 @@ final class CharacterBuffer {
     }
 
     /**
-     * Returns the text representation of the given integer number.
+     * Emits the given amount of cents as a quoted dollar amount, formatted by {@link SalaryDetails#amount(int, char[], int)}.
      *
-     * @param number the integer value.
+     * @param amountBy100 the amount in cents.
+     */
+    public void amount(final int amountBy100) {
+        direct('"');
+
+        if (index + SalaryDetails.AMOUNT_LENGTH < buffer.length) {
+            index = SalaryDetails.amount(amountBy100, buffer, index);
+        } else {
+            copy(0, SalaryDetails.amount(amountBy100, digits, 0));
+        }
+
+        direct('"');
+    }
+
+    /**
+     * Emits the decimal representation of the given integer number without allocating anything.
      *
-     * @return a string; never <code>null</code>.
+     * @param number the integer value.
      */
-    public String number(final long number) {
-        return String.valueOf(number);
+    public void number(final long number) {
+        int start = digits(number < 0 ? number : -number, 1);
+
+        if (number < 0) {
+            digits[--start] = '-';
+        }
+
+        copy(start, DIGITS - start);
     }
 
     /**
-     * Returns the text representation of the given floating point number. Infinity and NaN values are rejected, and integer values are encoded as such.
+     * Emits the text representation of the given floating point number. Infinity and NaN values are rejected, and integer values are encoded as such.
+     * Other numbers with at most {@value #MAX_SCALE} fraction digits are encoded with the fewest fraction digits that parse back to the same number,
+     * without allocating anything; the rest are encoded by {@link Double#toString(double)}.
      *
      * @param number the floating point value.
-     *
-     * @return a string; never <code>null</code>.
      */
-    public String number(final double number) {
+    public void number(final double number) {
         if (Double.isInfinite(number) || Double.isNaN(number)) {
             throw new IllegalArgumentException("JSON can only encode finite numbers");
         }
 
         final long integer = (long) number;
-        return number == (double) integer ? String.valueOf(integer) : String.valueOf(number);
+
+        if (number == (double) integer) {
+            number(integer);
+            return;
+        }
+
+        final double magnitude = Math.abs(number);
+
+        for (int scale = 1; scale <= MAX_SCALE; ++scale) {
+            final double scaled = magnitude * POWERS[scale];
+
+            if (scaled >= EXACT_LIMIT) {
+                break;
+            }
+
+            final long mantissa = Math.round(scaled);
+
+            // Both operands are exact, so the division is the correctly rounded value of the decimal number, just as parsing it would be.
+            if (mantissa / POWERS[scale] == magnitude) {
+                final long unit = (long) POWERS[scale];
+
+                int start = digits(-(mantissa % unit), scale);
+                digits[--start] = '.';
+                start = digits(-(mantissa / unit), 1, start);
+
+                if (number < 0) {
+                    digits[--start] = '-';
+                }
+
+                copy(start, DIGITS - start);
+                return;
+            }
+        }
+
+        encode(Double.toString(number));
     }
 
     /**
-     * Returns the text representation of the given boolean value.
+     * Emits the given boolean value.
      *
      * @param value the boolean value.
+     */
+    public void logical(final boolean value) {
+        final char[] text = value ? TRUE : FALSE;
+        System.arraycopy(text, 0, digits, 0, text.length);
+        copy(0, text.length);
+    }
+
+    /**
+     * Formats the given negated number at the end of the digits array, zero padded to the given width.
+     *
+     * @param negated the number, negated to be able to handle {@link Long#MIN_VALUE}; must not be positive.
+     * @param width   the minimum number of digits.
+     *
+     * @return the index of the first digit in the digits array.
+     */
+    private int digits(final long negated, final int width) {
+        return digits(negated, width, DIGITS);
+    }
+
+    /**
+     * Formats the given negated number in the digits array, before the given index, zero padded to the given width.
+     *
+     * @param negated the number, negated to be able to handle {@link Long#MIN_VALUE}; must not be positive.
+     * @param width   the minimum number of digits.
+     * @param end     the index after the last digit.
+     *
+     * @return the index of the first digit in the digits array.
+     */
+    private int digits(final long negated, final int width, final int end) {
+        long value = negated;
+        int start = end;
+
+        // Two digits at a time while there are more than two.
+        while (value <= -100) {
+            final long quotient = value / 100;
+            final int pair = (int) (quotient * 100 - value);
+
+            digits[--start] = ONES[pair];
+            digits[--start] = TENS[pair];
+
+            value = quotient;
+        }
+
+        final int last = (int) -value;
+
+        digits[--start] = ONES[last];
+
+        if (last >= 10) {
+            digits[--start] = TENS[last];
+        }
+
+        while (end - start < width) {
+            digits[--start] = '0';
+        }
+
+        return start;
+    }
+
+    /**
+     * Emits the given range of the digits array.
+     *
+     * @param start  the index of the first character.
+     * @param length the number of characters.
+     */
+    private void copy(final int start, final int length) {
+        copy(digits, start, length);
+    }
+
+    /**
+     * Emits the given range of the given array as is.
      *
-     * @return a string; never <code>null</code>.
+     * @param source the array to emit a range of.
+     * @param start  the index of the first character.
+     * @param length the number of characters.
      */
-    public String logical(final boolean value) {
-        return String.valueOf(value);
+    private void copy(final char[] source, final int start, final int length) {
+        if (index + length < buffer.length) {
+            System.arraycopy(source, start, buffer, index, length);
+            index += length;
+        } else {
+            for (int i = start, end = start + length; i < end; ++i) {
+                direct(source[i]);
+            }
+        }
     }
 
     /**
-     * If the accumulated buffer is not empty, flushes its content to the consumer and empties the buffer.
+     * If the accumulated buffer is not empty, flushes its content to the sink and empties the buffer.
      */
     public void flush() {
         if (index > 0) {
-            consumer.accept(new String(buffer, 0, index));
+            sink.accept(buffer, index);
             index = 0;
         }
     }
 
+    /**
+     * Flushes the accumulated buffer and tells the sink that no more characters will follow.
+     */
+    public void close() {
+        flush();
+        sink.close();
+    }
+
     /**
      * Emits the given character after a slash character.
      *
@@ -157,56 +372,59 @@ final class CharacterBuffer {
     }
 
     /**
-     * Emits the given character after as a Unicode code point.
+     * Emits the given character as a Unicode escape sequence.
      *
-     * @param codePoint the character to emit.
+     * @param character the character to emit.
      */
-    private void control(final int codePoint) {
-        if (index + 6 >= buffer.length) {
-            flush();
-        }
+    private void control(final char character) {
+        digits[0] = '\\';
+        digits[1] = 'u';
+        digits[2] = HEX[character >> 12];
+        digits[3] = HEX[character >> 8 & 0xF];
+        digits[4] = HEX[character >> 4 & 0xF];
+        digits[5] = HEX[character & 0xF];
 
-        buffer[index] = '\\';
-        buffer[index + 1] = 'u';
-
-        final String hex = Integer.toHexString(codePoint);
-        final int length = hex.length();
-
-        buffer[index + 2] = digit(hex, length, 0, 4);
-        buffer[index + 3] = digit(hex, length, 1, 4);
-        buffer[index + 4] = digit(hex, length, 2, 4);
-        buffer[index + 5] = digit(hex, length, 3, 4);
-
-        index += 6;
+        copy(0, 6);
     }
 
     /**
-     * Pretends that the given number with the given length is padded to the given padded length, and returns the character at the given index.
+     * Emits the given range of the given text as is.
      *
-     * @param number the number to pad.
-     * @param length the length to pad the number to.
-     * @param index  the index of the digit to return.
-     * @param padded the pretended padded length.
-     *
-     * @return the digit at the given index.
+     * @param text the text to emit a range of.
+     * @param from the index of the first character to emit.
+     * @param to   the index after the last character to emit.
      */
-    private char digit(final String number, final int length, final int index, final int padded) {
-        final int offset = index + length - padded;
-        return offset < 0 ? '0' : number.charAt(offset);
+    private void copy(final String text, final int from, final int to) {
+        for (int start = from; start < to; ) {
+            if (index + 1 >= buffer.length) {
+                flush();
+            }
+
+            final int end = Math.min(to, start + buffer.length - 1 - index);
+
+            text.getChars(start, end, buffer, index);
+
+            index += end - start;
+            start = end;
+        }
     }
 
     /**
-     * Chokes on Unicode code points outside the Basic Multilingual Plane.
-     *
-     * @param text the character string to verify.
-     *
-     * @throws IllegalArgumentException when a non-BMP character is found.
+     * Receives the content of a {@link CharacterBuffer} when it is flushed.
      */
-    private void verify(final String text) throws IllegalArgumentException {
-        for (int offset = 0, length = text.length(); offset < length; ++offset) {
-            if (Character.charCount(text.codePointAt(offset)) > 1) {
-                throw new IllegalArgumentException("JSON can only encode BMP characters");
-            }
-        }
+    interface Sink {
+
+        /**
+         * Consumes the given characters. The array is reused once this method returns.
+         *
+         * @param characters the buffer.
+         * @param length     the number of characters at the beginning of the buffer to consume.
+         */
+        void accept(char[] characters, int length);
+
+        /**
+         * Notifies the sink that no more characters will follow. Characters held back by the sink, if any, must be emitted here.
+         */
+        default void close() { }
     }
 }
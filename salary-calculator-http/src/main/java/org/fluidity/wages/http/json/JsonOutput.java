@@ -16,13 +16,17 @@
 
 package org.fluidity.wages.http.json;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.function.Consumer;
 
 import org.fluidity.foundation.Utility;
 
 /**
  * Buffering JSON stream writer. Use the {@link #object(int, Consumer)} or {@link #array(int, Consumer)} methods to get a top-level JSON container, and then use
- * their respective methods to set properties or add elements thereto. When done, make sure to invoke {@link JsonOutput.Stream#close()} or {@link
+ * their respective methods to set properties or add elements thereto. To write UTF-8 straight to an output stream or a channel, without creating strings, use
+ * the variants that accept a reusable {@link JsonOutput.Buffer} instead. When done, make sure to invoke {@link JsonOutput.Stream#close()} or {@link
  * JsonOutput.Stream#close(Runnable)} on the root object; those methods on intermediate objects or arrays are optional and might not do anything.
  * <p>
  * Intermediate containers, i.e., {@link JsonOutput.Object} and {@link JsonOutput.Array} instances, are automatically closed when a new property or item is
@@ -60,6 +64,75 @@ public final class JsonOutput extends Utility {
         return new JsonOutputArray(null, buffered(consumer, buffer));
     }
 
+    /**
+     * Creates a new JSON object that writes UTF-8 encoded JSON to the given stream. The stream is neither flushed nor closed.
+     *
+     * @param stream the stream to write to.
+     * @param buffer the buffer to use; must not be used by another JSON stream until this one is closed.
+     *
+     * @return a new object; never <code>null</code>.
+     */
+    public static Object.Root object(final OutputStream stream, final Buffer buffer) {
+        return new JsonOutputObject(null, new CharacterBuffer(buffer.characters, new Utf8Sink(stream, buffer)));
+    }
+
+    /**
+     * Creates a new JSON object that writes UTF-8 encoded JSON to the given channel. The channel is not closed.
+     *
+     * @param channel the channel to write to.
+     * @param buffer  the buffer to use; must not be used by another JSON stream until this one is closed.
+     *
+     * @return a new object; never <code>null</code>.
+     */
+    public static Object.Root object(final WritableByteChannel channel, final Buffer buffer) {
+        return new JsonOutputObject(null, new CharacterBuffer(buffer.characters, new Utf8Sink(channel, buffer)));
+    }
+
+    /**
+     * Creates a new JSON array that writes UTF-8 encoded JSON to the given stream. The stream is neither flushed nor closed.
+     *
+     * @param stream the stream to write to.
+     * @param buffer the buffer to use; must not be used by another JSON stream until this one is closed.
+     *
+     * @return a new object; never <code>null</code>.
+     */
+    public static Array.Root array(final OutputStream stream, final Buffer buffer) {
+        return new JsonOutputArray(null, new CharacterBuffer(buffer.characters, new Utf8Sink(stream, buffer)));
+    }
+
+    /**
+     * Creates a new JSON array that writes UTF-8 encoded JSON to the given channel. The channel is not closed.
+     *
+     * @param channel the channel to write to.
+     * @param buffer  the buffer to use; must not be used by another JSON stream until this one is closed.
+     *
+     * @return a new object; never <code>null</code>.
+     */
+    public static Array.Root array(final WritableByteChannel channel, final Buffer buffer) {
+        return new JsonOutputArray(null, new CharacterBuffer(buffer.characters, new Utf8Sink(channel, buffer)));
+    }
+
+    /**
+     * Creates a handle for the given property name, which then can be passed to the {@link JsonOutput.Object} methods instead of the name to emit it
+     * without encoding it again. Create handles once, and use them in any number of JSON streams.
+     *
+     * @param name the property name.
+     *
+     * @return a new handle; never <code>null</code>.
+     */
+    public static Key key(final String name) {
+        final StringBuilder text = new StringBuilder(name.length() + 3);
+        final CharacterBuffer buffer = new CharacterBuffer(name.length() * 6 + 4, text::append);
+
+        buffer.direct('"');
+        buffer.encode(name);
+        buffer.direct('"');
+        buffer.direct(':');
+        buffer.flush();
+
+        return new Key(name, text.toString().toCharArray());
+    }
+
     /**
      * Creates a new character buffer with the given size.
      *
@@ -72,6 +145,49 @@ public final class JsonOutput extends Utility {
         return new CharacterBuffer(size, consumer);
     }
 
+    /**
+     * The characters and the UTF-8 bytes of a JSON stream that writes to an output stream or a channel. A buffer can be reused by subsequent JSON streams,
+     * but not by concurrent ones.
+     */
+    public static final class Buffer {
+
+        final char[] characters;
+        final byte[] bytes;
+        final ByteBuffer wrapper;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param size the number of characters to buffer; the byte buffer is large enough to encode that many characters.
+         */
+        public Buffer(final int size) {
+            this.characters = new char[size];
+            this.bytes = new byte[size * 3 + 1];
+            this.wrapper = ByteBuffer.wrap(bytes);
+        }
+    }
+
+    /**
+     * A property name encoded once, along with the quotes and the colon that precede the value of the property. Returned by {@link JsonOutput#key(String)}.
+     * <p>
+     * This is an immutable value type.
+     */
+    public static final class Key {
+
+        final String name;
+        final char[] prologue;
+
+        Key(final String name, final char[] prologue) {
+            this.name = name;
+            this.prologue = prologue;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
     /**
      * A JSON array emitter.
      */
@@ -105,6 +221,13 @@ public final class JsonOutput extends Utility {
          */
         void add(boolean value);
 
+        /**
+         * Adds the given amount of cents to this container as a dollar amount text, without allocating anything.
+         *
+         * @param amountBy100 the amount in cents.
+         */
+        void amount(int amountBy100);
+
         /**
          * Sets the named property to null in this container.
          *
@@ -165,6 +288,54 @@ public final class JsonOutput extends Utility {
          */
         void add(String name, boolean value);
 
+        /**
+         * Sets the named property to the given amount of cents in this container as a dollar amount text, without allocating anything.
+         *
+         * @param name        the name of the property
+         * @param amountBy100 the amount in cents.
+         */
+        void amount(String name, int amountBy100);
+
+        /**
+         * Sets the property with the given name to the given value in this container.
+         *
+         * @param name  the name of the property
+         * @param value the value of the property.
+         */
+        void add(Key name, String value);
+
+        /**
+         * Sets the property with the given name to the given value in this container.
+         *
+         * @param name  the name of the property
+         * @param value the value of the property.
+         */
+        void add(Key name, long value);
+
+        /**
+         * Sets the property with the given name to the given value in this container.
+         *
+         * @param name  the name of the property
+         * @param value the value of the property.
+         */
+        void add(Key name, double value);
+
+        /**
+         * Sets the property with the given name to the given value in this container.
+         *
+         * @param name  the name of the property
+         * @param value the value of the property.
+         */
+        void add(Key name, boolean value);
+
+        /**
+         * Sets the property with the given name to the given amount of cents in this container as a dollar amount text.
+         *
+         * @param name        the name of the property
+         * @param amountBy100 the amount in cents.
+         */
+        void amount(Key name, int amountBy100);
+
         /**
          * Sets the named property to null in this container.
          *
@@ -186,6 +357,20 @@ public final class JsonOutput extends Utility {
          */
         Array array(String name);
 
+        /**
+         * Sets the property with the given name to a new JSON object in this container.
+         *
+         * @param name the name of the property
+         */
+        Object object(Key name);
+
+        /**
+         * Sets the property with the given name to a new JSON array in this container.
+         *
+         * @param name the name of the property
+         */
+        Array array(Key name);
+
         /**
          * A JSON root object. When finished outputting JSON, one of the {@link Stream} methods must be called.
          */
@@ -209,5 +394,11 @@ public final class JsonOutput extends Utility {
          * Invokes {@link #close(Runnable)} with no callback.
          */
         void close();
+
+        /**
+         * Sends the content buffered so far, even if incomplete JSON, to the consumer, output stream, or channel the root container was created with. An
+         * output stream is not flushed itself.
+         */
+        void flush();
     }
 }
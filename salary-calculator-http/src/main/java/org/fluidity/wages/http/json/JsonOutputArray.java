@@ -37,30 +37,32 @@ final class JsonOutputArray extends JsonOutputContainer implements JsonOutput.Ar
         buffer.direct('"');
     }
 
-    /**
-     * Adds a new given value to this container.
-     *
-     * @param value the value of the property.
-     */
-    private void _add(final String value) {
+    @Override
+    public void add(final long value) {
         appended();
 
-        buffer.encode(value);
+        buffer.number(value);
     }
 
     @Override
-    public void add(final long value) {
-        _add(buffer.number(value));
+    public void add(final double value) {
+        appended();
+
+        buffer.number(value);
     }
 
     @Override
-    public void add(final double value) {
-        _add(buffer.number(value));
+    public void add(final boolean value) {
+        appended();
+
+        buffer.logical(value);
     }
 
     @Override
-    public void add(final boolean value) {
-        _add(buffer.logical(value));
+    public void amount(final int amountBy100) {
+        appended();
+
+        buffer.amount(amountBy100);
     }
 
     @Override
@@ -83,4 +85,66 @@ final class JsonOutputArray extends JsonOutputContainer implements JsonOutput.Ar
 
         return _array();
     }
+
+    /**
+     * The handle to one opening of a pooled child array. Fails once that opening has been closed, even if the array has been reopened since.
+     */
+    static final class Handle implements JsonOutput.Array {
+
+        private final JsonOutputArray array;
+        private final int generation;
+
+        Handle(final JsonOutputArray array) {
+            this.array = array;
+            this.generation = array.generation();
+        }
+
+        @Override
+        public void add(final String value) {
+            array.check(generation);
+            array.add(value);
+        }
+
+        @Override
+        public void add(final long value) {
+            array.check(generation);
+            array.add(value);
+        }
+
+        @Override
+        public void add(final double value) {
+            array.check(generation);
+            array.add(value);
+        }
+
+        @Override
+        public void add(final boolean value) {
+            array.check(generation);
+            array.add(value);
+        }
+
+        @Override
+        public void amount(final int amountBy100) {
+            array.check(generation);
+            array.amount(amountBy100);
+        }
+
+        @Override
+        public void missing(final String name) {
+            array.check(generation);
+            array.missing(name);
+        }
+
+        @Override
+        public JsonOutput.Object object() {
+            array.check(generation);
+            return array.object();
+        }
+
+        @Override
+        public JsonOutput.Array array() {
+            array.check(generation);
+            return array.array();
+        }
+    }
 }
@@ -16,18 +16,34 @@
 
 package org.fluidity.wages.http.json;
 
+import java.util.Arrays;
+
 /**
  * A JSON container, which is an abstract super type for JSON object and JSON array.
+ * <p>
+ * Child containers are taken from a pool shared by all containers of the same root, which keeps one object and one array for each depth. Only one container
+ * can be open at each depth at any time, so a closed child container is reopened as the next child container of the same type at the same depth, and
+ * writing nested containers allocates only a thin handle once each depth has been reached. Each opening of a container starts a new generation thereof, and
+ * the handle returned for a child container remembers its generation, so that a handle to a closed child container keeps failing even after the container
+ * has been reopened for another child.
  */
 @SuppressWarnings("WeakerAccess")
 abstract class JsonOutputContainer implements JsonOutput.Stream {
 
     protected final CharacterBuffer buffer;
 
-    // The parent container, if any.
-    private final JsonOutputContainer parent;
+    // The pool of child containers, shared with the root container.
+    private final Pool pool;
+
+    // The number of containers this one is nested in.
+    private final int depth;
+
+    private final char openMark;
     private final char closeMark;
 
+    // The parent container, if any.
+    private JsonOutputContainer parent;
+
     // The last child container, if any, that has been opened but not yet closed.
     private JsonOutput.Stream openChild;
 
@@ -37,6 +53,9 @@ abstract class JsonOutputContainer implements JsonOutput.Stream {
     // Set when this contains is closed and no further addition is allowed thereto.
     private boolean closed;
 
+    // The number of times this container has been opened.
+    private int generation;
+
     /**
      * Creates a new JSON container. The characters that open and close the container are specified here.
      *
@@ -46,10 +65,49 @@ abstract class JsonOutputContainer implements JsonOutput.Stream {
      * @param closeMark the character that closes this container.
      */
     protected JsonOutputContainer(final JsonOutputContainer parent, final CharacterBuffer buffer, final char openMark, final char closeMark) {
-        this.parent = parent;
         this.buffer = buffer;
+        this.pool = parent == null ? new Pool() : parent.pool;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.openMark = openMark;
         this.closeMark = closeMark;
-        this.buffer.direct(openMark);
+
+        open(parent);
+    }
+
+    /**
+     * Opens this container, either when created or when taken from the pool again, and emits the character that opens it.
+     *
+     * @param parent the parent container, if any; may be <code>null</code>.
+     */
+    final void open(final JsonOutputContainer parent) {
+        this.parent = parent;
+        this.openChild = null;
+        this.compound = false;
+        this.closed = false;
+
+        ++generation;
+
+        buffer.direct(openMark);
+    }
+
+    /**
+     * Returns the current generation of this container, which changes every time the container is opened.
+     *
+     * @return a number.
+     */
+    final int generation() {
+        return generation;
+    }
+
+    /**
+     * Verifies that a handle of the given generation refers to this container in its current opening, and that the container is still open.
+     *
+     * @param generation the generation of the handle.
+     */
+    final void check(final int generation) {
+        if (closed || generation != this.generation) {
+            throw new IllegalStateException("This container has been closed");
+        }
     }
 
     /**
@@ -100,7 +158,7 @@ abstract class JsonOutputContainer implements JsonOutput.Stream {
         }
 
         if (parent == null) {
-            buffer.flush();
+            buffer.close();
         }
 
         closed = true;
@@ -115,25 +173,89 @@ abstract class JsonOutputContainer implements JsonOutput.Stream {
         close(null);
     }
 
+    @Override
+    public final void flush() {
+        buffer.flush();
+    }
+
     /**
      * Adds a new JSON object to this container as its child container.
      *
-     * @return a new JSON object; never <code>null</code>.
+     * @return a handle to a new JSON object; never <code>null</code>.
      */
-    protected final JsonOutputObject _object() {
-        final JsonOutputObject object = new JsonOutputObject(this, buffer);
+    protected final JsonOutput.Object _object() {
+        final JsonOutputObject object = pool.object(this);
         openChild = object;
-        return object;
+        return new JsonOutputObject.Handle(object);
     }
 
     /**
      * Adds a new JSON array to this container as its child container.
      *
-     * @return a new JSON array; never <code>null</code>.
+     * @return a handle to a new JSON array; never <code>null</code>.
      */
     protected final JsonOutput.Array _array() {
-        final JsonOutputArray array = new JsonOutputArray(this, buffer);
+        final JsonOutputArray array = pool.array(this);
         openChild = array;
-        return array;
+        return new JsonOutputArray.Handle(array);
+    }
+
+    /**
+     * The reusable child containers of a root container, by depth.
+     */
+    private static final class Pool {
+
+        private JsonOutputObject[] objects = new JsonOutputObject[4];
+        private JsonOutputArray[] arrays = new JsonOutputArray[4];
+
+        /**
+         * Opens a JSON object as the child of the given container.
+         *
+         * @param parent the parent container.
+         *
+         * @return an open JSON object; never <code>null</code>.
+         */
+        JsonOutputObject object(final JsonOutputContainer parent) {
+            final int depth = parent.depth + 1;
+
+            if (depth >= objects.length) {
+                objects = Arrays.copyOf(objects, depth * 2);
+            }
+
+            final JsonOutputObject object = objects[depth];
+
+            if (object == null) {
+                return objects[depth] = new JsonOutputObject(parent, parent.buffer);
+            } else {
+                assert ((JsonOutputContainer) object).closed : depth;
+                object.open(parent);
+                return object;
+            }
+        }
+
+        /**
+         * Opens a JSON array as the child of the given container.
+         *
+         * @param parent the parent container.
+         *
+         * @return an open JSON array; never <code>null</code>.
+         */
+        JsonOutputArray array(final JsonOutputContainer parent) {
+            final int depth = parent.depth + 1;
+
+            if (depth >= arrays.length) {
+                arrays = Arrays.copyOf(arrays, depth * 2);
+            }
+
+            final JsonOutputArray array = arrays[depth];
+
+            if (array == null) {
+                return arrays[depth] = new JsonOutputArray(parent, parent.buffer);
+            } else {
+                assert ((JsonOutputContainer) array).closed : depth;
+                array.open(parent);
+                return array;
+            }
+        }
     }
 }
@@ -41,17 +41,34 @@ final class JsonOutputObject extends JsonOutputContainer implements JsonOutput.O
 
     @Override
     public void add(final String name, final long value) {
-        _set(name, buffer.number(value));
+        appended();
+
+        _prologue(name);
+        buffer.number(value);
     }
 
     @Override
     public void add(final String name, final double value) {
-        _set(name, buffer.number(value));
+        appended();
+
+        _prologue(name);
+        buffer.number(value);
     }
 
     @Override
     public void add(final String name, final boolean value) {
-        _set(name, buffer.logical(value));
+        appended();
+
+        _prologue(name);
+        buffer.logical(value);
+    }
+
+    @Override
+    public void amount(final String name, final int amountBy100) {
+        appended();
+
+        _prologue(name);
+        buffer.amount(amountBy100);
     }
 
     @Override
@@ -80,6 +97,67 @@ final class JsonOutputObject extends JsonOutputContainer implements JsonOutput.O
         return _array();
     }
 
+    @Override
+    public void add(final JsonOutput.Key name, final String value) {
+        appended();
+
+        buffer.direct(name.prologue);
+
+        buffer.direct('"');
+        buffer.encode(value);
+        buffer.direct('"');
+    }
+
+    @Override
+    public void add(final JsonOutput.Key name, final long value) {
+        appended();
+
+        buffer.direct(name.prologue);
+        buffer.number(value);
+    }
+
+    @Override
+    public void add(final JsonOutput.Key name, final double value) {
+        appended();
+
+        buffer.direct(name.prologue);
+        buffer.number(value);
+    }
+
+    @Override
+    public void add(final JsonOutput.Key name, final boolean value) {
+        appended();
+
+        buffer.direct(name.prologue);
+        buffer.logical(value);
+    }
+
+    @Override
+    public void amount(final JsonOutput.Key name, final int amountBy100) {
+        appended();
+
+        buffer.direct(name.prologue);
+        buffer.amount(amountBy100);
+    }
+
+    @Override
+    public JsonOutput.Object object(final JsonOutput.Key name) {
+        appended();
+
+        buffer.direct(name.prologue);
+
+        return _object();
+    }
+
+    @Override
+    public JsonOutput.Array array(final JsonOutput.Key name) {
+        appended();
+
+        buffer.direct(name.prologue);
+
+        return _array();
+    }
+
     /**
      * Emits the name of a property.
      *
@@ -93,15 +171,106 @@ final class JsonOutputObject extends JsonOutputContainer implements JsonOutput.O
     }
 
     /**
-     * Sets the named property to the given non-character value in this container.
-     *
-     * @param name  the name of the property
-     * @param value the value of the property.
+     * The handle to one opening of a pooled child object. Fails once that opening has been closed, even if the object has been reopened since.
      */
-    private void _set(final String name, final String value) {
-        appended();
+    static final class Handle implements JsonOutput.Object {
 
-        _prologue(name);
-        buffer.encode(value);
+        private final JsonOutputObject object;
+        private final int generation;
+
+        Handle(final JsonOutputObject object) {
+            this.object = object;
+            this.generation = object.generation();
+        }
+
+        @Override
+        public void add(final String name, final String value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void add(final String name, final long value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void add(final String name, final double value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void add(final String name, final boolean value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void amount(final String name, final int amountBy100) {
+            object.check(generation);
+            object.amount(name, amountBy100);
+        }
+
+        @Override
+        public void add(final JsonOutput.Key name, final String value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void add(final JsonOutput.Key name, final long value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void add(final JsonOutput.Key name, final double value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void add(final JsonOutput.Key name, final boolean value) {
+            object.check(generation);
+            object.add(name, value);
+        }
+
+        @Override
+        public void amount(final JsonOutput.Key name, final int amountBy100) {
+            object.check(generation);
+            object.amount(name, amountBy100);
+        }
+
+        @Override
+        public void missing(final String name) {
+            object.check(generation);
+            object.missing(name);
+        }
+
+        @Override
+        public JsonOutput.Object object(final String name) {
+            object.check(generation);
+            return object.object(name);
+        }
+
+        @Override
+        public JsonOutput.Array array(final String name) {
+            object.check(generation);
+            return object.array(name);
+        }
+
+        @Override
+        public JsonOutput.Object object(final JsonOutput.Key name) {
+            object.check(generation);
+            return object.object(name);
+        }
+
+        @Override
+        public JsonOutput.Array array(final JsonOutput.Key name) {
+            object.check(generation);
+            return object.array(name);
+        }
     }
 }
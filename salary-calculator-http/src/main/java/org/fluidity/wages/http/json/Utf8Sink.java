@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes the content of a {@link CharacterBuffer} to UTF-8 in the byte array of a {@link JsonOutput.Buffer}, and writes the bytes to an output stream or a
+ * channel. No intermediate strings are created. Unpaired surrogate characters are encoded as question marks, including a high surrogate at the very end.
+ */
+final class Utf8Sink implements CharacterBuffer.Sink {
+
+    private final byte[] bytes;
+    private final ByteBuffer wrapper;
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+
+    // A high surrogate that was the last character of the previous chunk.
+    private char high;
+
+    /**
+     * Creates an instance that writes to an output stream.
+     *
+     * @param stream the stream to write to.
+     * @param buffer the buffer to encode characters in.
+     */
+    Utf8Sink(final OutputStream stream, final JsonOutput.Buffer buffer) {
+        this.bytes = buffer.bytes;
+        this.wrapper = buffer.wrapper;
+        this.stream = stream;
+        this.channel = null;
+    }
+
+    /**
+     * Creates an instance that writes to a channel.
+     *
+     * @param channel the channel to write to.
+     * @param buffer  the buffer to encode characters in.
+     */
+    Utf8Sink(final WritableByteChannel channel, final JsonOutput.Buffer buffer) {
+        this.bytes = buffer.bytes;
+        this.wrapper = buffer.wrapper;
+        this.stream = null;
+        this.channel = channel;
+    }
+
+    @Override
+    public void accept(final char[] characters, final int length) {
+        int index = 0;
+        int i = 0;
+
+        if (high != 0 && length > 0) {
+            index = pair(high, characters[0], index);
+            i = Character.isLowSurrogate(characters[0]) ? 1 : 0;
+            high = 0;
+        }
+
+        for (; i < length; ++i) {
+            final char c = characters[i];
+
+            if (c < 0x80) {
+                bytes[index++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[index++] = (byte) (0xC0 | c >> 6);
+                bytes[index++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 < length) {
+                    index = pair(c, characters[i + 1], index);
+
+                    if (Character.isLowSurrogate(characters[i + 1])) {
+                        ++i;
+                    }
+                } else {
+                    high = c;
+                }
+            } else if (Character.isLowSurrogate(c)) {
+                bytes[index++] = '?';
+            } else {
+                bytes[index++] = (byte) (0xE0 | c >> 12);
+                bytes[index++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[index++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+
+        write(index);
+    }
+
+    @Override
+    public void close() {
+        if (high != 0) {
+            high = 0;
+            bytes[0] = '?';
+            write(1);
+        }
+    }
+
+    /**
+     * Encodes a surrogate pair, or a question mark if the second character is not a low surrogate.
+     *
+     * @param high  the high surrogate.
+     * @param low   the character after the high surrogate.
+     * @param index the index in the byte array to encode to.
+     *
+     * @return the index after the last encoded byte.
+     */
+    private int pair(final char high, final char low, final int index) {
+        if (!Character.isLowSurrogate(low)) {
+            bytes[index] = '?';
+            return index + 1;
+        }
+
+        final int codePoint = Character.toCodePoint(high, low);
+
+        bytes[index] = (byte) (0xF0 | codePoint >> 18);
+        bytes[index + 1] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        bytes[index + 2] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        bytes[index + 3] = (byte) (0x80 | codePoint & 0x3F);
+
+        return index + 4;
+    }
+
+    private void write(final int length) {
+        try {
+            if (stream != null) {
+                stream.write(bytes, 0, length);
+            } else {
+                wrapper.clear();
+                wrapper.limit(length);
+
+                while (wrapper.hasRemaining()) {
+                    channel.write(wrapper);
+                }
+            }
+        } catch (final IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+}
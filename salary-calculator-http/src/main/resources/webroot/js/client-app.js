@@ -35,7 +35,8 @@ var transformations = {
     'upload-ready': 'upload-icon fa fa-upload active',
     'pretty-table': 'table table-striped table-hover table-condensed',
     'file-name': 'text-info',
-    'month': 'pull-right'
+    'month': 'pull-right',
+    'skipped-lines': 'text-warning small'
 };
 
 // The transformation marker.
@@ -70,6 +71,23 @@ function transformer(node) {
     return node;
 }
 
+// Parses the months that have been completely received from a partially
+// received response, which the server sends in chunks as it completes months.
+// Returns null if not a single month has been completed yet.
+function completeMonths(text) {
+    var end = text.lastIndexOf(',{"year":');
+
+    if (end < 0) {
+        return null;
+    }
+
+    try {
+        return JSON.parse(text.substring(0, end) + ']}');
+    } catch (error) {
+        return null;
+    }
+}
+
 // Marks the given HTML tag to perform transformations on. The transformation
 // names are listed as the rest of the parameters to the function.
 function marker(tag) {
@@ -128,17 +146,28 @@ function marker(tag) {
                 element.addEventListener('drop', update);
             };
 
-            this.upload = function(file) {
+            // The progress function receives the months completed so far
+            // while the response is still arriving.
+            this.upload = function(file, sorted, progress) {
                 var formData = new FormData;
 
                 formData.append('file', file);
 
                 return m.request({
                     method: 'POST',
-                    url: url,
+                    url: sorted ? url + '?sorted=true' : url,
                     data: formData,
                     serialize: function(value) {
                         return value;
+                    },
+                    config: function(xhr) {
+                        xhr.onprogress = function() {
+                            var data = completeMonths(xhr.responseText);
+
+                            if (data) {
+                                progress(data);
+                            }
+                        };
                     }
                 });
             };
@@ -241,6 +270,18 @@ function marker(tag) {
                         }))
                     );
 
+                    if (data.skipped) {
+                        view = m('div', [
+                            view,
+                            m(tag('div', 'skipped', 'lines'), [
+                                m('strong', data.skipped + ' invalid line(s) skipped:'),
+                                m('ul', data.errors.map(function(error) {
+                                    return m('li', 'line ' + error.line + ': ' + error.reason);
+                                }))
+                            ])
+                        ]);
+                    }
+
                     return transform(view);
                 }
             }
@@ -255,6 +296,7 @@ function marker(tag) {
             Model.apply(this);
 
             this.loading = m.prop(false);
+            this.sorted = m.prop(false);
         }
 
         FileUploadModel.prototype = Object.create(Model.prototype, {
@@ -276,15 +318,18 @@ function marker(tag) {
                         files.dragdrop(element, {
                             onchange: function(file) {
                                 if (!self.loading()) {
-                                    if (file.type !== 'text/csv') {
-                                        options.error('That was not a CSV file.');
+                                    if (file.type !== 'text/csv' && file.type !== 'application/x-ndjson' && !/\.(csv|ndjson|jsonl)$/i.test(file.name)) {
+                                        options.error('That was not a CSV or NDJSON file.');
                                     } else {
                                         self.loading(true);
 
                                         options.error(null);
                                         options.loading(file.name);
 
-                                        files.upload(file).then(function(data) {
+                                        files.upload(file, self.sorted(), function(data) {
+                                            options.success(data);
+                                            m.redraw();
+                                        }).then(function(data) {
                                             self.loading(false);
                                             options.success(data);
                                         }, function(data) {
@@ -302,13 +347,19 @@ function marker(tag) {
             },
             view: {
                 value: function(initialize) {
-                    var view = m(tag('div', 'upload', this.loading() ? 'active' : 'ready'), {
-                        config: function(element, initialized) {
-                            if (!initialized) {
-                                initialize(element);
+                    var view = m('div', [
+                        m(tag('div', 'upload', this.loading() ? 'active' : 'ready'), {
+                            config: function(element, initialized) {
+                                if (!initialized) {
+                                    initialize(element);
+                                }
                             }
-                        }
-                    });
+                        }),
+                        m('label', [
+                            m('input[type=checkbox]', { checked: this.sorted(), onchange: m.withAttr('checked', this.sorted) }),
+                            ' Sorted by month and person'
+                        ])
+                    ]);
 
                     return transform(view);
                 }
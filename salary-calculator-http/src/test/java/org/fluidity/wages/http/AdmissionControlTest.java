@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.fluidity.foundation.Configuration;
+import org.fluidity.testing.Simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AdmissionControlTest extends Simulator {
+
+    private static final long BUDGET = 100 * 1024;
+
+    private final AdmissionControl admission = admission(BUDGET * 2);
+
+    private static AdmissionControl admission(final long requestBytes) {
+        return new AdmissionControl(new Configuration<AdmissionControl.Settings>() {
+            @Override
+            public AdmissionControl.Settings settings() {
+                return new AdmissionControl.Settings() {
+                    @Override
+                    public int calculations() {
+                        return 2;
+                    }
+
+                    @Override
+                    public long bytes() {
+                        return BUDGET;
+                    }
+
+                    @Override
+                    public long requestBytes() {
+                        return requestBytes;
+                    }
+
+                    @Override
+                    public int retrySeconds() {
+                        return 5;
+                    }
+                };
+            }
+        });
+    }
+
+    @Test
+    public void testBoundsCalculations() throws Exception {
+        final AdmissionControl.Ticket first = admission.admit(10);
+        final AdmissionControl.Ticket second = admission.admit(-1);
+
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNull(admission.admit(10));
+
+        AdmissionControl.Status status = admission.status();
+
+        Assert.assertEquals(status.admitted, 2);
+        Assert.assertEquals(status.charged, 10L);
+        Assert.assertEquals(status.rejected, 1L);
+
+        first.close();
+        first.close();
+
+        Assert.assertEquals(admission.status().admitted, 1);
+        Assert.assertNotNull(admission.admit(10));
+    }
+
+    @Test
+    public void testBoundsDeclaredBytes() throws Exception {
+        Assert.assertTrue(admission.fits(BUDGET));
+        Assert.assertFalse(admission.fits(BUDGET + 1));
+
+        final AdmissionControl.Ticket ticket = admission.admit(BUDGET - 10);
+
+        Assert.assertNotNull(ticket);
+        Assert.assertNull(admission.admit(11));
+
+        ticket.close();
+
+        Assert.assertEquals(admission.status().charged, 0L);
+        Assert.assertNotNull(admission.admit(11));
+    }
+
+    @Test(expectedExceptions = AdmissionControl.Overloaded.class)
+    public void testMetersUndeclaredBytes() throws Exception {
+        final AdmissionControl.Ticket ticket = admission.admit(-1);
+        Assert.assertNotNull(ticket);
+
+        final byte[] buffer = new byte[1024];
+
+        try (final InputStream input = ticket.meter(new ByteArrayInputStream(new byte[(int) BUDGET * 2]))) {
+            for (int total = 0; total < BUDGET; ) {
+                total += input.read(buffer);
+                Assert.assertTrue(admission.status().charged >= total);
+            }
+
+            input.read(buffer);
+        }
+    }
+
+    @Test
+    public void testReleasesMeteredBytes() throws Exception {
+        final AdmissionControl.Ticket ticket = admission.admit(10);
+        Assert.assertNotNull(ticket);
+
+        try (final InputStream input = ticket.meter(new ByteArrayInputStream(new byte[1000]))) {
+            while (input.read() >= 0) {
+                Assert.assertTrue(admission.status().charged >= 10);
+            }
+        }
+
+        ticket.close();
+
+        Assert.assertEquals(admission.status().charged, 0L);
+    }
+
+    @Test(expectedExceptions = AdmissionControl.TooLarge.class)
+    public void testBoundsRequestBytes() throws Exception {
+        final AdmissionControl admission = admission(1000);
+
+        Assert.assertTrue(admission.fits(1000));
+        Assert.assertFalse(admission.fits(1001));
+
+        final AdmissionControl.Ticket ticket = admission.admit(-1);
+        Assert.assertNotNull(ticket);
+
+        try (final InputStream input = ticket.meter(new ByteArrayInputStream(new byte[2000]))) {
+            for (int total = 0; total < 1000; ) {
+                total += input.read(new byte[100]);
+            }
+
+            input.read();
+        }
+    }
+
+    @Test
+    public void testMetersDecodedBytes() throws Exception {
+        final AdmissionControl.Ticket ticket = admission.admit(10);
+        Assert.assertNotNull(ticket);
+
+        // The received and the decoded bytes together would exceed the budget, but neither does alone.
+        final byte[] buffer = new byte[1024];
+
+        try (final InputStream received = ticket.meter(new ByteArrayInputStream(new byte[(int) BUDGET * 7 / 10]));
+             final InputStream decoded = ticket.meter(new ByteArrayInputStream(new byte[(int) BUDGET * 9 / 10]))) {
+            while (received.read(buffer) >= 0) {
+                Assert.assertTrue(admission.status().charged <= BUDGET);
+            }
+
+            while (decoded.read(buffer) >= 0) {
+                Assert.assertTrue(admission.status().charged <= BUDGET);
+            }
+        }
+
+        Assert.assertTrue(admission.status().charged >= BUDGET * 9 / 10);
+
+        ticket.close();
+
+        Assert.assertEquals(admission.status().charged, 0L);
+    }
+}
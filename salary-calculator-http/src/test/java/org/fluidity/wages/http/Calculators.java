@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.fluidity.wages.SalaryDetails;
+import org.fluidity.wages.ShiftDetails;
+import org.fluidity.wages.csv.Parsers;
+import org.fluidity.wages.csv.SalaryCalculator;
+
+/**
+ * Creates the salary calculator for the HTTP handler tests, with the {@linkplain Parsers parsers} of the CSV support tests, and a stand-in for the actual
+ * salary calculation: each work shift is paid one cent per minute, as a salary of its own in the month of the shift. When the input is sorted, the salary
+ * of each shift is sent as soon as the shift has been read; otherwise, when the calculator is closed.
+ */
+final class Calculators {
+
+    private Calculators() { }
+
+    /**
+     * Creates a salary calculator.
+     *
+     * @return a new salary calculator; never <code>null</code>.
+     */
+    static SalaryCalculator create() {
+        return new SalaryCalculator(Parsers.reader(), new org.fluidity.wages.SalaryCalculator.Factory() {
+            @Override
+            public org.fluidity.wages.SalaryCalculator create(final Consumer<SalaryDetails> consumer) {
+                return create(consumer, false);
+            }
+
+            @Override
+            public org.fluidity.wages.SalaryCalculator create(final Consumer<SalaryDetails> consumer, final boolean sorted) {
+                return new org.fluidity.wages.SalaryCalculator() {
+                    private final List<SalaryDetails> salaries = new ArrayList<>();
+
+                    @Override
+                    public void accept(final ShiftDetails shift) {
+                        final SalaryDetails salary = new SalaryDetails(shift.personId,
+                                                                       shift.personName,
+                                                                       shift.date.withDayOfMonth(1),
+                                                                       (int) Duration.between(shift.begin, shift.end).toMinutes());
+
+                        if (sorted) {
+                            consumer.accept(salary);
+                        } else {
+                            salaries.add(salary);
+                        }
+                    }
+
+                    @Override
+                    public void flush() {
+                        salaries.forEach(consumer);
+                        salaries.clear();
+                    }
+
+                    @Override
+                    public void close() {
+                        flush();
+                    }
+                };
+            }
+        });
+    }
+}
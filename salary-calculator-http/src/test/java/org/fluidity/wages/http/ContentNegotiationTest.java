@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import org.fluidity.testing.Simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ContentNegotiationTest extends Simulator {
+
+    private static final String JSON = "application/json";
+    private static final String CSV = "text/csv";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ContentNegotiation negotiation = new ContentNegotiation();
+
+    @Test
+    public void testMissingHeader() throws Exception {
+        Assert.assertEquals(negotiation.select(null, JSON, CSV, NDJSON), JSON);
+        Assert.assertEquals(negotiation.select(" ", JSON, CSV, NDJSON), JSON);
+    }
+
+    @Test
+    public void testExactMatch() throws Exception {
+        Assert.assertEquals(negotiation.select("text/csv", JSON, CSV, NDJSON), CSV);
+        Assert.assertEquals(negotiation.select("Application/X-NDJSON", JSON, CSV, NDJSON), NDJSON);
+        Assert.assertEquals(negotiation.select("text/html, application/json", JSON, CSV, NDJSON), JSON);
+    }
+
+    @Test
+    public void testWildcards() throws Exception {
+        Assert.assertEquals(negotiation.select("*/*", JSON, CSV, NDJSON), JSON);
+        Assert.assertEquals(negotiation.select("text/*", JSON, CSV, NDJSON), CSV);
+        Assert.assertEquals(negotiation.select("application/*", CSV, NDJSON, JSON), NDJSON);
+        Assert.assertEquals(negotiation.select("text/html, */*;q=0.1", JSON, CSV, NDJSON), JSON);
+    }
+
+    @Test
+    public void testQualityValues() throws Exception {
+        Assert.assertEquals(negotiation.select("application/json;q=0.5, text/csv", JSON, CSV, NDJSON), CSV);
+        Assert.assertEquals(negotiation.select("text/csv;q=0.5, application/x-ndjson;q=0.5", JSON, CSV, NDJSON), CSV);
+        Assert.assertEquals(negotiation.select("*/*;q=0.8, application/json;q=0", JSON, CSV, NDJSON), CSV);
+        Assert.assertEquals(negotiation.select("text/*, text/csv;q=0.2, application/json;q=0.5", JSON, CSV, NDJSON), JSON);
+    }
+
+    @Test
+    public void testNotAcceptable() throws Exception {
+        Assert.assertNull(negotiation.select("text/html", JSON, CSV, NDJSON));
+        Assert.assertNull(negotiation.select("application/json;q=0", JSON, CSV, NDJSON));
+        Assert.assertNull(negotiation.select("text/csv;q=oops", JSON, CSV, NDJSON));
+    }
+}
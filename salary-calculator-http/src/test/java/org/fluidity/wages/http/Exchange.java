@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.Assert;
+
+/**
+ * An HTTP request sent to a handler under test, and the response received. The servlet request and response are faked as far as the handlers use them:
+ * the response is buffered up to the buffer size the handler sets, committed when the buffer overflows or is flushed, and can be reset until then.
+ */
+final class Exchange {
+
+    private final String method;
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, String> parameters = new HashMap<>();
+
+    private String contentType;
+    private long contentLength = -1;
+    private InputStream body = new ByteArrayInputStream(new byte[0]);
+
+    // The response.
+    private int status = HttpServletResponse.SC_OK;
+    private String responseType;
+    private long responseLength = -1;
+    private final Map<String, String> responseHeaders = new HashMap<>();
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    private final List<Integer> chunks = new ArrayList<>();
+    private int bufferSize = 8192;
+    private int flushed;
+    private boolean committed;
+
+    // Hold up the first write of the response, when set.
+    private CountDownLatch writing;
+    private CountDownLatch resume;
+
+    private boolean async;
+    private volatile Throwable aborted;
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    private final HttpChannel channel = new HttpChannel(null, new HttpConfiguration(), null, null) {
+        @Override
+        public void abort(final Throwable failure) {
+            aborted = failure;
+        }
+    };
+
+    private Exchange(final String method) {
+        this.method = method;
+    }
+
+    /**
+     * Creates a GET request.
+     *
+     * @return a new request; never <code>null</code>.
+     */
+    static Exchange get() {
+        return new Exchange("GET");
+    }
+
+    /**
+     * Creates a POST request with the given body, which declares its length.
+     *
+     * @param contentType the content type of the body.
+     * @param body        the body.
+     *
+     * @return a new request; never <code>null</code>.
+     */
+    static Exchange post(final String contentType, final byte[] body) {
+        return post(contentType, new ByteArrayInputStream(body)).length(body.length);
+    }
+
+    /**
+     * Creates a POST request with the given body, which does not declare its length.
+     *
+     * @param contentType the content type of the body.
+     * @param body        the body.
+     *
+     * @return a new request; never <code>null</code>.
+     */
+    static Exchange post(final String contentType, final InputStream body) {
+        final Exchange exchange = new Exchange("POST");
+
+        exchange.contentType = contentType;
+        exchange.body = body;
+
+        return exchange;
+    }
+
+    /**
+     * Adds a header to the request.
+     *
+     * @param name  the name of the header.
+     * @param value the value of the header.
+     *
+     * @return this object.
+     */
+    Exchange header(final String name, final String value) {
+        headers.put(name.toLowerCase(Locale.ROOT), value);
+        return this;
+    }
+
+    /**
+     * Adds a query parameter to the request.
+     *
+     * @param name  the name of the parameter.
+     * @param value the value of the parameter.
+     *
+     * @return this object.
+     */
+    Exchange parameter(final String name, final String value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * Sets the declared length of the request body.
+     *
+     * @param length the content length; -1 if not declared.
+     *
+     * @return this object.
+     */
+    Exchange length(final long length) {
+        contentLength = length;
+        return this;
+    }
+
+    /**
+     * Holds up the first write of the response, as a client that does not take the response would.
+     *
+     * @param writing counted down when the first write is held up.
+     * @param resume  the latch to wait for before the first write proceeds.
+     *
+     * @return this object.
+     */
+    Exchange stall(final CountDownLatch writing, final CountDownLatch resume) {
+        this.writing = writing;
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Sends the request to the given handler, and waits for the response to complete.
+     *
+     * @param handler the handler to send the request to.
+     *
+     * @return this object.
+     *
+     * @throws Exception when the handler throws one.
+     */
+    Exchange send(final AbstractHandler handler) throws Exception {
+        handler.handle("/", channel.getRequest(), request(), response());
+
+        if (async) {
+            Assert.assertTrue(completed.await(10, TimeUnit.SECONDS), "response not completed");
+        }
+
+        return this;
+    }
+
+    int status() {
+        return status;
+    }
+
+    String contentType() {
+        return responseType;
+    }
+
+    long length() {
+        return responseLength;
+    }
+
+    String header(final String name) {
+        return responseHeaders.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    byte[] content() {
+        return content.toByteArray();
+    }
+
+    String text() {
+        return new String(content(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the size of the response at each point it was sent, in full or in part, to the client.
+     *
+     * @return a list of byte counts; never <code>null</code>.
+     */
+    List<Integer> chunks() {
+        return chunks;
+    }
+
+    /**
+     * Returns the error the response was aborted with.
+     *
+     * @return an error, or <code>null</code> if the response was not aborted.
+     */
+    Throwable aborted() {
+        return aborted;
+    }
+
+    private void commit() {
+        committed = true;
+
+        if (content.size() > flushed) {
+            flushed = content.size();
+            chunks.add(flushed);
+        }
+    }
+
+    private HttpServletRequest request() {
+        final ServletInputStream input = new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return body.read();
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                return body.read(buffer, offset, length);
+            }
+
+            @Override
+            public boolean isFinished() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(final ReadListener listener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final AsyncContext context = proxy(AsyncContext.class, (proxy, call, arguments) -> {
+            switch (call.getName()) {
+            case "setTimeout":
+                return null;
+            case "complete":
+                if (committed || content.size() > 0) {
+                    commit();
+                }
+
+                completed.countDown();
+                return null;
+            default:
+                throw new UnsupportedOperationException(call.getName());
+            }
+        });
+
+        return proxy(HttpServletRequest.class, (proxy, call, arguments) -> {
+            switch (call.getName()) {
+            case "getMethod":
+                return method;
+            case "getHeader":
+                return headers.get(((String) arguments[0]).toLowerCase(Locale.ROOT));
+            case "getParameter":
+                return parameters.get((String) arguments[0]);
+            case "getContentType":
+                return contentType;
+            case "getContentLength":
+                return (int) contentLength;
+            case "getContentLengthLong":
+                return contentLength;
+            case "getCharacterEncoding":
+                return null;
+            case "getInputStream":
+                return input;
+            case "isAsyncSupported":
+                return true;
+            case "isAsyncStarted":
+                return async;
+            case "startAsync":
+                async = true;
+                return context;
+            default:
+                throw new UnsupportedOperationException(call.getName());
+            }
+        });
+    }
+
+    private HttpServletResponse response() {
+        final ServletOutputStream output = new ServletOutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                stall();
+                content.write(b);
+                overflow();
+            }
+
+            @Override
+            public void write(final byte[] data, final int offset, final int length) throws IOException {
+                stall();
+                content.write(data, offset, length);
+                overflow();
+            }
+
+            @Override
+            public void flush() {
+                commit();
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener listener) {
+                throw new UnsupportedOperationException();
+            }
+
+            private void stall() throws InterruptedIOException {
+                if (resume != null) {
+                    writing.countDown();
+
+                    try {
+                        resume.await();
+                    } catch (final InterruptedException error) {
+                        throw new InterruptedIOException();
+                    }
+
+                    resume = null;
+                }
+            }
+
+            private void overflow() {
+                if (content.size() - flushed > bufferSize) {
+                    commit();
+                }
+            }
+        };
+
+        return proxy(HttpServletResponse.class, (proxy, call, arguments) -> {
+            switch (call.getName()) {
+            case "setStatus":
+                status = (Integer) arguments[0];
+                return null;
+            case "getStatus":
+                return status;
+            case "setHeader":
+            case "addHeader":
+                responseHeaders.put(((String) arguments[0]).toLowerCase(Locale.ROOT), (String) arguments[1]);
+                return null;
+            case "setContentType":
+                responseType = (String) arguments[0];
+                return null;
+            case "setContentLength":
+                responseLength = (Integer) arguments[0];
+                return null;
+            case "setContentLengthLong":
+                responseLength = (Long) arguments[0];
+                return null;
+            case "setBufferSize":
+                if (committed || content.size() > 0) {
+                    throw new IllegalStateException("response already written");
+                }
+
+                bufferSize = (Integer) arguments[0];
+                return null;
+            case "getOutputStream":
+                return output;
+            case "flushBuffer":
+                commit();
+                return null;
+            case "isCommitted":
+                return committed;
+            case "reset":
+                if (committed) {
+                    throw new IllegalStateException("response already committed");
+                }
+
+                status = HttpServletResponse.SC_OK;
+                responseType = null;
+                responseLength = -1;
+                responseHeaders.clear();
+                content.reset();
+                return null;
+            default:
+                throw new UnsupportedOperationException(call.getName());
+            }
+        });
+    }
+
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fluidity.foundation.Configuration;
+import org.fluidity.testing.Simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ResultCacheTest extends Simulator {
+
+    private static final long WAIT = 1000;
+
+    private final ResultCache cache = new ResultCache(new Configuration<ResultCache.Settings>() {
+        @Override
+        public ResultCache.Settings settings() {
+            return new ResultCache.Settings() {
+                @Override
+                public long capacity() {
+                    return 10;
+                }
+
+                @Override
+                public int entryLimit() {
+                    return 8;
+                }
+
+                @Override
+                public long waitMillis() {
+                    return WAIT;
+                }
+
+                @Override
+                public String fingerprint() {
+                    return "settings";
+                }
+            };
+        }
+    });
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        Assert.assertTrue(cache.enabled());
+
+        Assert.assertNull(cache.claim("a"));
+        cache.complete("a", entry(4));
+
+        Assert.assertNull(cache.claim("b"));
+        cache.complete("b", entry(4));
+
+        // Makes "a" the most recently used.
+        Assert.assertNotNull(cache.claim("a"));
+
+        Assert.assertNull(cache.claim("c"));
+        cache.complete("c", entry(4));
+
+        Assert.assertNotNull(cache.claim("a"));
+        Assert.assertNotNull(cache.claim("c"));
+        Assert.assertNull(cache.claim("b"));
+        cache.complete("b", null);
+
+        // Too large to cache at all.
+        Assert.assertNull(cache.claim("d"));
+        cache.complete("d", entry(11));
+
+        Assert.assertNull(cache.claim("d"));
+        cache.complete("d", null);
+
+        Assert.assertNotNull(cache.claim("a"));
+        Assert.assertNotNull(cache.claim("c"));
+    }
+
+    @Test
+    public void testCoalescesComputations() throws Exception {
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            final AtomicInteger computations = new AtomicInteger();
+            final CountDownLatch claimed = new CountDownLatch(1);
+
+            Assert.assertNull(cache.claim("key"));
+
+            final Future<?>[] waiting = new Future<?>[threads];
+
+            for (int i = 0; i < threads; ++i) {
+                waiting[i] = executor.submit(() -> {
+                    claimed.countDown();
+
+                    final ResultCache.Entry entry = cache.claim("key");
+
+                    if (entry == null) {
+                        computations.incrementAndGet();
+                        cache.complete("key", null);
+                    }
+
+                    return entry;
+                });
+            }
+
+            claimed.await(1, TimeUnit.SECONDS);
+            cache.complete("key", entry(3));
+
+            for (final Future<?> result : waiting) {
+                Assert.assertNotNull(result.get(1, TimeUnit.SECONDS));
+            }
+
+            Assert.assertEquals(computations.get(), 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReleasesAllWaitersOnFailure() throws Exception {
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            final CountDownLatch claimed = new CountDownLatch(threads);
+
+            Assert.assertNull(cache.claim("key"));
+
+            final Future<?>[] waiting = new Future<?>[threads];
+
+            for (int i = 0; i < threads; ++i) {
+                waiting[i] = executor.submit(() -> {
+                    claimed.countDown();
+
+                    final ResultCache.Entry entry = cache.claim("key");
+
+                    if (entry == null) {
+                        cache.complete("key", null);
+                    }
+
+                    return entry;
+                });
+            }
+
+            claimed.await(1, TimeUnit.SECONDS);
+            Thread.sleep(WAIT / 10);
+
+            // Failed, or too large to record: every waiting thread computes the response at once.
+            cache.complete("key", null);
+
+            for (final Future<?> result : waiting) {
+                Assert.assertNull(result.get(WAIT / 2, TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStopsWaiting() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Assert.assertNull(cache.claim("key"));
+
+            final long started = System.nanoTime();
+
+            Assert.assertNull(executor.submit(() -> cache.claim("key")).get(WAIT * 5, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(WAIT));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetriesFailedComputations() throws Exception {
+        Assert.assertNull(cache.claim("key"));
+        cache.complete("key", null);
+
+        Assert.assertNull(cache.claim("key"));
+        cache.complete("key", entry(2));
+
+        Assert.assertEquals(cache.claim("key").size(), 2);
+    }
+
+    @Test
+    public void testRecordsUpToLimit() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ResultCache.Recording recording = new ResultCache.Recording(output, 4);
+
+        recording.write(new byte[] { 1, 2, 3 }, 0, 3);
+        Assert.assertEquals(recording.content(), new byte[] { 1, 2, 3 });
+
+        recording.write(4);
+        Assert.assertEquals(recording.content(), new byte[] { 1, 2, 3, 4 });
+
+        recording.write(5);
+        Assert.assertNull(recording.content());
+
+        Assert.assertEquals(output.toByteArray(), new byte[] { 1, 2, 3, 4, 5 });
+    }
+
+    private ResultCache.Entry entry(final int size) {
+        return new ResultCache.Entry("text/plain", new byte[size]);
+    }
+}
@@ -0,0 +1,625 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.fluidity.foundation.Configuration;
+import org.fluidity.testing.Simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SalaryCalculatorHandlerTest extends Simulator {
+
+    private static final String CSV = "text/csv";
+
+    private static final String INPUT = "Person Name,Person ID,Date,Start,End\n"
+                                        + "John Doe,1,3.3.2014,9:00,10:00\n"
+                                        + "Jane Doe,2,4.3.2014,9:00,9:30\n";
+
+    private static final String OUTPUT = "Month,Person ID,Person Name,Salary\r\n"
+                                         + "2014-03,1,John Doe,0.60\r\n"
+                                         + "2014-03,2,Jane Doe,0.30\r\n";
+
+    private final SalaryCalculatorHandler handler = handler(executor(2, 2, 1000), 60000, 0);
+
+    private static CalculationExecutor executor(final int threads, final int queue, final long waitMillis) {
+        return new CalculationExecutor(configuration(new CalculationExecutor.Settings() {
+            @Override
+            public int threads() {
+                return threads;
+            }
+
+            @Override
+            public int queue() {
+                return queue;
+            }
+
+            @Override
+            public long waitMillis() {
+                return waitMillis;
+            }
+        }));
+    }
+
+    private static AdmissionControl admission(final int calculations, final long bytes, final long requestBytes) {
+        return new AdmissionControl(configuration(new AdmissionControl.Settings() {
+            @Override
+            public int calculations() {
+                return calculations;
+            }
+
+            @Override
+            public long bytes() {
+                return bytes;
+            }
+
+            @Override
+            public long requestBytes() {
+                return requestBytes;
+            }
+
+            @Override
+            public int retrySeconds() {
+                return 5;
+            }
+        }));
+    }
+
+    private static SalaryCalculatorHandler handler(final CalculationExecutor executor, final int flushMillis, final long cacheBytes) {
+        return handler(executor, admission(2, 1024 * 1024, 1024 * 1024), flushMillis, cacheBytes);
+    }
+
+    private static SalaryCalculatorHandler handler(final CalculationExecutor executor,
+                                                   final AdmissionControl admission,
+                                                   final int flushMillis,
+                                                   final long cacheBytes) {
+        return new SalaryCalculatorHandler(Calculators.create(),
+                                           new ContentNegotiation(),
+                                           new ResultCache(configuration(new ResultCache.Settings() {
+                                               @Override
+                                               public long capacity() {
+                                                   return cacheBytes;
+                                               }
+
+                                               @Override
+                                               public int entryLimit() {
+                                                   return 1024;
+                                               }
+
+                                               @Override
+                                               public long waitMillis() {
+                                                   return 1000;
+                                               }
+
+                                               @Override
+                                               public String fingerprint() {
+                                                   return "settings";
+                                               }
+                                           })),
+                                           executor,
+                                           admission,
+                                           configuration(new SalaryCalculatorHandler.Settings() {
+                                               @Override
+                                               public int flushBytes() {
+                                                   return 1024;
+                                               }
+
+                                               @Override
+                                               public int flushMillis() {
+                                                   return flushMillis;
+                                               }
+                                           }));
+    }
+
+    private static <T> Configuration<T> configuration(final T settings) {
+        return () -> settings;
+    }
+
+    private static void pause(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Unsorted shifts of a single person and month, so that nothing is sent before the whole input has been read.
+    private static byte[] shifts(final int count) {
+        final StringBuilder input = new StringBuilder("Person Name,Person ID,Date,Start,End\n");
+
+        for (int i = 0; i < count; ++i) {
+            input.append("John Doe,1,3.3.2014,9:00,10:00\n");
+        }
+
+        return bytes(input.toString());
+    }
+
+    private static byte[] gzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (final GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+            output.write(data);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    @Test
+    public void testReadsRequestBody() throws Exception {
+        final Exchange exchange = Exchange.post(CSV + "; charset=utf-8; header=present", bytes(INPUT)).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.contentType(), "text/csv; charset=utf-8");
+        Assert.assertEquals(exchange.text(), OUTPUT);
+    }
+
+    @Test
+    public void testReadsQuotedCharset() throws Exception {
+        final byte[] input = INPUT.replace("Jane", "J\u00f6rg").getBytes(StandardCharsets.ISO_8859_1);
+        final Exchange exchange = Exchange.post(CSV + ";charset=\" ISO-8859-1 \"", input).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.text(), OUTPUT.replace("Jane", "J\u00f6rg"));
+    }
+
+    @Test
+    public void testReadsCompressedRequestBody() throws Exception {
+        final Exchange exchange = Exchange.post(CSV, gzip(bytes(INPUT))).header("Content-Encoding", "gzip").header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.text(), OUTPUT);
+    }
+
+    @Test
+    public void testRejectsCorruptCompressedRequestBody() throws Exception {
+        final Exchange exchange = Exchange.post(CSV, bytes(INPUT)).header("Content-Encoding", "gzip").header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testRejectsUnsupportedMediaTypes() throws Exception {
+        final String[][] requests = {
+                { "text/plain", null },
+                { CSV, "deflate" },
+                { CSV + "; charset=no-such-charset", null },
+                { CSV + "; charset=\"illegal charset\"", null },
+        };
+
+        for (final String[] request : requests) {
+            final Exchange exchange = Exchange.post(request[0], bytes(INPUT)).header("Content-Encoding", request[1]).header("Accept", CSV).send(handler);
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, request[0]);
+            Assert.assertEquals(exchange.text(), "", request[0]);
+        }
+    }
+
+    @Test
+    public void testSendsMonthsInChunks() throws Exception {
+        final String march = "Person Name,Person ID,Date,Start,End\n"
+                             + "John Doe,1,3.3.2014,9:00,10:00\n"
+                             + "Jane Doe,2,4.3.2014,9:00,9:30\n";
+        final String april = "John Doe,1,3.4.2014,9:00,9:15\n";
+
+        for (final boolean sorted : new boolean[] { true, false }) {
+            final Exchange exchange = Exchange.post(CSV, bytes(march + april))
+                                              .parameter("sorted", String.valueOf(sorted))
+                                              .header("Accept", CSV)
+                                              .send(handler);
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(exchange.text(), OUTPUT + "2014-04,1,John Doe,0.15\r\n");
+            Assert.assertEquals(exchange.chunks(), Arrays.asList(bytes(OUTPUT).length, exchange.content().length), String.valueOf(sorted));
+        }
+    }
+
+    @Test
+    public void testSendsChunksWhileReadingInput() throws Exception {
+        final Iterator<String> parts = Arrays.asList("Person Name,Person ID,Date,Start,End\nJohn Doe,1,3.3.2014,9:00,10:00\n", "invalid\n", "invalid\n")
+                                             .iterator();
+
+        // Each part after the first arrives later than the response is to be flushed, and none completes another salary.
+        final InputStream input = new InputStream() {
+            private boolean first = true;
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                if (!parts.hasNext()) {
+                    return -1;
+                }
+
+                if (!first) {
+                    pause(200);
+                }
+
+                first = false;
+
+                final byte[] part = bytes(parts.next());
+                System.arraycopy(part, 0, buffer, offset, part.length);
+                return part.length;
+            }
+        };
+
+        final Exchange exchange = Exchange.post(CSV, input).parameter("sorted", "true").send(handler(executor(2, 2, 1000), 100, 0));
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertTrue(exchange.chunks().size() > 1, exchange.chunks().toString());
+
+        final String first = new String(exchange.content(), 0, exchange.chunks().get(0), StandardCharsets.UTF_8);
+
+        Assert.assertTrue(first.contains("John Doe"), first);
+        Assert.assertFalse(first.contains("errors"), first);
+        Assert.assertTrue(exchange.text().contains("\"skipped\":2"), exchange.text());
+    }
+
+    @Test
+    public void testComputesWhileOtherCalculationWaitsForInput() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch arrived = new CountDownLatch(1);
+
+        // The rest of the input arrives only after the other calculation has completed.
+        final InputStream input = new SequenceInputStream(new ByteArrayInputStream(bytes("Person Name,Person ID,Date,Start,End\n")), new InputStream() {
+            private InputStream rest;
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                if (rest == null) {
+                    reading.countDown();
+
+                    try {
+                        arrived.await();
+                    } catch (final InterruptedException error) {
+                        throw new InterruptedIOException();
+                    }
+
+                    rest = new ByteArrayInputStream(bytes(INPUT.substring(INPUT.indexOf('\n') + 1)));
+                }
+
+                return rest.read(buffer, offset, length);
+            }
+        });
+
+        // A single turn to compute, which the waiting calculation must give up for the other to get it in time.
+        final SalaryCalculatorHandler handler = handler(executor(1, 1, 1000), 60000, 0);
+        final ExecutorService client = Executors.newSingleThreadExecutor();
+
+        try {
+            final Future<Exchange> waiting = client.submit(() -> Exchange.post(CSV, input).header("Accept", CSV).send(handler));
+
+            Assert.assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+            final Exchange other = Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler);
+
+            Assert.assertEquals(other.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(other.text(), OUTPUT);
+            Assert.assertFalse(waiting.isDone());
+
+            arrived.countDown();
+
+            final Exchange exchange = waiting.get(10, TimeUnit.SECONDS);
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(exchange.text(), OUTPUT);
+        } finally {
+            arrived.countDown();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void testComputesWhileIdenticalUploadWaitsForCache() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        // A single turn to compute, which the upload waiting for the identical one must give up for the other calculation to get it in time.
+        final SalaryCalculatorHandler handler = handler(executor(1, 4, 500), admission(4, 1024 * 1024, 1024 * 1024), 60000, 4096);
+        final ExecutorService clients = Executors.newFixedThreadPool(2);
+
+        try {
+
+            // The first upload claims the response, which its client then does not take.
+            final Future<Exchange> first = clients.submit(() -> Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).stall(writing, resume).send(handler));
+            Assert.assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+            // The identical upload waits for the first one's response.
+            final Future<Exchange> second = clients.submit(() -> Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler));
+            pause(200);
+
+            final Exchange other = Exchange.post(CSV, bytes(INPUT.replace("Jane", "Jill"))).header("Accept", CSV).send(handler);
+
+            Assert.assertEquals(other.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(other.text(), OUTPUT.replace("Jane", "Jill"));
+            Assert.assertFalse(second.isDone());
+
+            resume.countDown();
+
+            final Exchange calculated = first.get(10, TimeUnit.SECONDS);
+            final Exchange cached = second.get(10, TimeUnit.SECONDS);
+
+            Assert.assertEquals(calculated.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(calculated.text(), OUTPUT);
+            Assert.assertEquals(cached.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(cached.text(), OUTPUT);
+            Assert.assertEquals(cached.length(), (long) cached.content().length);
+        } finally {
+            resume.countDown();
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefusesCalculationsOverQueue() throws Exception {
+        final CalculationExecutor executor = executor(1, 0, 1000);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // Takes the only turn to compute.
+        executor.execute(() -> {
+            try {
+                done.await();
+            } catch (final InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> {});
+
+        try {
+            final Exchange exchange = Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler(executor, 60000, 0));
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            Assert.assertEquals(exchange.header("Retry-After"), "5");
+            Assert.assertEquals(exchange.text(), "");
+        } finally {
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testRefusesCalculationsWaitingTooLong() throws Exception {
+        final CalculationExecutor executor = executor(1, 1, 100);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // Takes the only turn to compute.
+        executor.execute(() -> {
+            try {
+                done.await();
+            } catch (final InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> {});
+
+        try {
+            final long started = System.nanoTime();
+            final Exchange exchange = Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler(executor, 60000, 0));
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            Assert.assertEquals(exchange.header("Retry-After"), "5");
+            Assert.assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(100));
+        } finally {
+            done.countDown();
+        }
+
+        // The turn is free again.
+        final Exchange exchange = Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler(executor, 60000, 0));
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.text(), OUTPUT);
+    }
+
+    @Test
+    public void testRejectsRequestsTooLarge() throws Exception {
+        final AdmissionControl admission = admission(2, 1024 * 1024, 16 * 1024);
+        final SalaryCalculatorHandler handler = handler(executor(2, 2, 1000), admission, 60000, 0);
+
+        final byte[] input = shifts(1000);
+        final byte[] compressed = gzip(input);
+
+        Assert.assertTrue(input.length > 16 * 1024);
+        Assert.assertTrue(compressed.length < 16 * 1024);
+
+        final Exchange[] exchanges = {
+                Exchange.post(CSV, bytes(INPUT)).length(16 * 1024 + 1).header("Accept", CSV),
+                Exchange.post(CSV, new ByteArrayInputStream(input)).header("Accept", CSV),
+                Exchange.post(CSV, new ByteArrayInputStream(input)).header("Accept", "application/json"),
+                Exchange.post(CSV, compressed).header("Content-Encoding", "gzip").header("Accept", CSV),
+                Exchange.post(CSV, compressed).header("Content-Encoding", "gzip").header("Accept", "application/json"),
+        };
+
+        for (int i = 0; i < exchanges.length; ++i) {
+            final Exchange exchange = exchanges[i].send(handler);
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, String.valueOf(i));
+            Assert.assertEquals(exchange.text(), "", String.valueOf(i));
+            Assert.assertEquals(admission.status().admitted, 0);
+            Assert.assertEquals(admission.status().charged, 0L);
+        }
+    }
+
+    @Test
+    public void testRefusesRequestsOverLimits() throws Exception {
+        final AdmissionControl admission = admission(1, 1024 * 1024, 1024 * 1024);
+        final SalaryCalculatorHandler handler = handler(executor(2, 2, 1000), admission, 60000, 0);
+
+        // Takes the only calculation admitted at once.
+        final AdmissionControl.Ticket ticket = admission.admit(-1);
+        Assert.assertNotNull(ticket);
+
+        final Exchange refused = Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(refused.status(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        Assert.assertEquals(refused.header("Retry-After"), "5");
+        Assert.assertEquals(refused.text(), "");
+        Assert.assertEquals(admission.status().rejected, 1L);
+
+        ticket.close();
+
+        final Exchange exchange = Exchange.post(CSV, bytes(INPUT)).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.text(), OUTPUT);
+    }
+
+    @Test
+    public void testRefusesRequestsRunningOutOfBudget() throws Exception {
+        final AdmissionControl admission = admission(2, 20 * 1024, 16 * 1024);
+        final SalaryCalculatorHandler handler = handler(executor(2, 2, 1000), admission, 60000, 0);
+
+        // The input fits in the limit of a single request, but not in what is left of the budget.
+        final byte[] input = shifts(480);
+        Assert.assertTrue(input.length > 10 * 1024 && input.length < 16 * 1024);
+
+        final AdmissionControl.Ticket ticket = admission.admit(10 * 1024);
+        Assert.assertNotNull(ticket);
+
+        for (final String accepted : new String[] { CSV, "application/json" }) {
+            final Exchange exchange = Exchange.post(CSV, new ByteArrayInputStream(input)).header("Accept", accepted).send(handler);
+
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_SERVICE_UNAVAILABLE, accepted);
+            Assert.assertEquals(exchange.header("Retry-After"), "5", accepted);
+            Assert.assertEquals(exchange.text(), "", accepted);
+        }
+
+        ticket.close();
+
+        final Exchange exchange = Exchange.post(CSV, new ByteArrayInputStream(input)).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(admission.status().charged, 0L);
+    }
+
+    @Test
+    public void testRejectsUnacceptableMediaTypes() throws Exception {
+        final Exchange exchange = Exchange.post(CSV, bytes(INPUT)).header("Accept", "text/html, application/*;q=0").send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_NOT_ACCEPTABLE);
+        Assert.assertEquals(exchange.text(), "");
+    }
+
+    @Test
+    public void testRejectsInvalidLineBeforeResponse() throws Exception {
+        final Exchange exchange = Exchange.post(CSV, bytes(INPUT + "invalid\n")).header("Accept", "application/x-ndjson").send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_BAD_REQUEST);
+        Assert.assertEquals(exchange.contentType(), "text/plain; charset=utf-8");
+        Assert.assertFalse(exchange.text().isEmpty());
+        Assert.assertFalse(exchange.text().contains("John Doe"), exchange.text());
+        Assert.assertNull(exchange.aborted());
+    }
+
+    @Test
+    public void testAbortsResponseOnInvalidLine() throws Exception {
+
+        // The second month sends the first one before the invalid line is read.
+        final Exchange exchange = Exchange.post(CSV, bytes(INPUT + "John Doe,1,3.4.2014,9:00,9:15\ninvalid\n"))
+                                          .parameter("sorted", "true")
+                                          .header("Accept", CSV)
+                                          .send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.text(), OUTPUT);
+        Assert.assertNotNull(exchange.aborted());
+    }
+
+    @Test
+    public void testSendsCachedResponse() throws Exception {
+        final SalaryCalculatorHandler handler = handler(executor(2, 2, 1000), 60000, 4096);
+        final String input = INPUT + "John Doe,1,3.4.2014,9:00,9:15\n";
+        final String output = OUTPUT + "2014-04,1,John Doe,0.15\r\n";
+
+        for (int i = 0; i < 2; ++i) {
+            final Exchange exchange = Exchange.post(CSV, bytes(input)).parameter("sorted", "true").header("Accept", CSV).send(handler);
+
+            // The first month was sent while the input was hashed, so the cached response found at the end of the input cannot be sent.
+            Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(exchange.text(), output);
+            Assert.assertEquals(exchange.chunks(), Arrays.asList(bytes(OUTPUT).length, exchange.content().length));
+            Assert.assertEquals(exchange.length(), -1L);
+        }
+
+        final Exchange calculated = Exchange.post(CSV, bytes(input)).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(calculated.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(calculated.text(), output);
+        Assert.assertEquals(calculated.length(), -1L);
+
+        final Exchange cached = Exchange.post(CSV, bytes(input)).header("Accept", CSV).send(handler);
+
+        Assert.assertEquals(cached.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(cached.contentType(), "text/csv; charset=utf-8");
+        Assert.assertEquals(cached.text(), output);
+        Assert.assertEquals(cached.length(), (long) cached.content().length);
+
+        // Other options, other response.
+        final Exchange other = Exchange.post(CSV, bytes(input)).header("Accept", "application/x-ndjson").send(handler);
+
+        Assert.assertEquals(other.length(), -1L);
+        Assert.assertTrue(other.text().startsWith("{\"month\":\"2014-03\""), other.text());
+
+        final Exchange json = Exchange.post(CSV, bytes(input)).send(handler);
+        final Exchange again = Exchange.post(CSV, bytes(input)).send(handler);
+
+        Assert.assertEquals(json.length(), -1L);
+        Assert.assertEquals(again.contentType(), "application/json; charset=utf-8");
+        Assert.assertEquals(again.text(), json.text());
+        Assert.assertEquals(again.length(), (long) again.content().length);
+
+        // Input too large to cache.
+        final StringBuilder large = new StringBuilder(INPUT);
+
+        while (large.length() <= 1024) {
+            large.append("John Doe,1,5.3.2014,9:00,10:00\n");
+        }
+
+        for (int i = 0; i < 2; ++i) {
+            final Exchange uncached = Exchange.post(CSV, bytes(large.toString())).header("Accept", CSV).send(handler);
+
+            Assert.assertEquals(uncached.status(), HttpServletResponse.SC_OK);
+            Assert.assertEquals(uncached.length(), -1L);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.fluidity.testing.Simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StaticAssetTest extends Simulator {
+
+    @Test
+    public void testCompressesText() throws Exception {
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 100; ++i) {
+            text.append("body { margin: 0; }\n");
+        }
+
+        final byte[] content = text.toString().getBytes(StandardCharsets.UTF_8);
+        final StaticAsset asset = new StaticAsset("text/css", 1000, content);
+
+        Assert.assertTrue(asset.compressible());
+        Assert.assertEquals(asset.length(false), content.length);
+        Assert.assertTrue(asset.length(true) < content.length / 4);
+        Assert.assertNotEquals(asset.tag(true), asset.tag(false));
+        Assert.assertTrue(asset.tag(false).startsWith("\"" + asset.version));
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        asset.send(true, compressed);
+
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+
+        try (final GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            final byte[] buffer = new byte[256];
+
+            for (int length; (length = input.read(buffer)) >= 0; ) {
+                decompressed.write(buffer, 0, length);
+            }
+        }
+
+        Assert.assertEquals(decompressed.toByteArray(), content);
+    }
+
+    @Test
+    public void testSkipsIncompressibleContent() throws Exception {
+        final byte[] content = new byte[4096];
+        new Random(0).nextBytes(content);
+
+        final StaticAsset asset = new StaticAsset("font/woff2", -1, content);
+
+        Assert.assertFalse(asset.compressible());
+
+        final ByteBuffer buffer = asset.content(false);
+
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertTrue(buffer.isReadOnly());
+        Assert.assertEquals(buffer.remaining(), content.length);
+
+        // Each call returns a buffer of its own.
+        buffer.position(buffer.limit());
+        Assert.assertEquals(asset.content(false).remaining(), content.length);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        asset.send(false, output);
+
+        Assert.assertEquals(output.toByteArray(), content);
+    }
+
+    @Test
+    public void testVersionFollowsContent() throws Exception {
+        final byte[] content = "one".getBytes(StandardCharsets.UTF_8);
+
+        Assert.assertEquals(new StaticAsset("text/plain", 1, content).version, new StaticAsset("text/plain", 2, content.clone()).version);
+        Assert.assertNotEquals(new StaticAsset("text/plain", 1, content).version,
+                               new StaticAsset("text/plain", 1, "two".getBytes(StandardCharsets.UTF_8)).version);
+    }
+}
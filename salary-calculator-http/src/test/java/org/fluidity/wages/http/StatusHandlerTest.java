@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.fluidity.foundation.Configuration;
+import org.fluidity.testing.Simulator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StatusHandlerTest extends Simulator {
+
+    private final AdmissionControl admission = new AdmissionControl(new Configuration<AdmissionControl.Settings>() {
+        @Override
+        public AdmissionControl.Settings settings() {
+            return new AdmissionControl.Settings() {
+                @Override
+                public int calculations() {
+                    return 2;
+                }
+
+                @Override
+                public long bytes() {
+                    return 1024 * 1024;
+                }
+
+                @Override
+                public long requestBytes() {
+                    return 1024;
+                }
+
+                @Override
+                public int retrySeconds() {
+                    return 5;
+                }
+            };
+        }
+    });
+
+    private final StatusHandler handler = new StatusHandler(admission);
+
+    @Test
+    public void testReportsUtilisation() throws Exception {
+        Assert.assertNotNull(admission.admit(100));
+        Assert.assertNotNull(admission.admit(-1));
+        Assert.assertNull(admission.admit(1));
+
+        final Exchange exchange = Exchange.get().send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_OK);
+        Assert.assertEquals(exchange.contentType(), "application/json; charset=utf-8");
+        Assert.assertEquals(exchange.header("Cache-Control"), "no-store");
+        Assert.assertEquals(exchange.text(), "{\"calculations\":{\"admitted\":2,\"limit\":2},\"bytes\":{\"charged\":100,\"limit\":1048576},\"rejected\":1}");
+    }
+
+    @Test
+    public void testRejectsOtherMethods() throws Exception {
+        final Exchange exchange = Exchange.post("application/json", new byte[0]).send(handler);
+
+        Assert.assertEquals(exchange.status(), HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        Assert.assertEquals(exchange.header("Allow"), "GET");
+        Assert.assertEquals(exchange.text(), "");
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2016 Tibor Adam Varga (tibor.adam.varga on gmail)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.fluidity.wages.http.json;
+
+import java.util.Locale;
+
+/**
+ * Compares {@link CharacterBuffer#encode(String)} with the code point by code point encoder it replaced. Not a test; run its <code>main</code> method
+ * with the test class path, optionally passing the number of rounds to run.
+ */
+public final class CharacterBufferBenchmark {
+
+    private static final int BUFFER = 16384;
+    private static final int STRINGS = 10_000;
+
+    private CharacterBufferBenchmark() { }
+
+    public static void main(final String[] arguments) {
+        final int rounds = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 20;
+        final String[] texts = texts();
+
+        final CharacterBuffer current = new CharacterBuffer(new char[BUFFER], (characters, length) -> { });
+        final Legacy legacy = new Legacy(BUFFER);
+
+        for (int round = 1; round <= rounds; ++round) {
+            final long start = System.nanoTime();
+
+            for (final String text : texts) {
+                current.encode(text);
+            }
+
+            current.flush();
+
+            final long middle = System.nanoTime();
+
+            for (final String text : texts) {
+                legacy.encode(text);
+            }
+
+            legacy.flush();
+
+            final long end = System.nanoTime();
+
+            System.out.printf(Locale.ROOT,
+                              "round %2d: current %6.1f ns/string, legacy %6.1f ns/string%n",
+                              round,
+                              (double) (middle - start) / texts.length,
+                              (double) (end - middle) / texts.length);
+        }
+    }
+
+    /**
+     * Creates a mix of names and free text, mostly ASCII, some with accented letters, quotes, or line breaks.
+     *
+     * @return an array of strings; never <code>null</code>.
+     */
+    private static String[] texts() {
+        final String[] samples = {
+                "John Smith",
+                "Jane Doe-Williams",
+                "J\u00e1nos Kov\u00e1cs",
+                "Fran\u00e7ois \"Frank\" Dupont",
+                "Scott\nTiger",
+                "1234567890",
+                "Comments may be a bit longer than names, and sometimes they run to a few dozen words without anything that needs escaping at all.",
+        };
+
+        final String[] texts = new String[STRINGS];
+
+        for (int i = 0; i < texts.length; ++i) {
+            texts[i] = samples[i % samples.length] + i;
+        }
+
+        return texts;
+    }
+
+    /**
+     * The encoder that {@link CharacterBuffer#encode(String)} replaced, with a discarding sink.
+     */
+    private static final class Legacy {
+
+        private final char[] buffer;
+        private int index;
+
+        Legacy(final int size) {
+            this.buffer = new char[size];
+        }
+
+        void encode(final String text) {
+            for (int offset = 0, length = text.length(); offset < length; ++offset) {
+                if (Character.charCount(text.codePointAt(offset)) > 1) {
+                    throw new IllegalArgumentException("JSON can only encode BMP characters");
+                }
+            }
+
+            for (int offset = 0, length = text.length(); offset < length; ++offset) {
+                final int codePoint = text.codePointAt(offset);
+
+                switch (codePoint) {
+                case '\\':
+                    escape('\\');
+                    break;
+                case '"':
+                    escape('"');
+                    break;
+                case '\b':
+                    escape('b');
+                    break;
+                case '\f':
+                    escape('f');
+                    break;
+                case '\n':
+                    escape('n');
+                    break;
+                case '\r':
+                    escape('r');
+                    break;
+                case '\t':
+                    escape('t');
+                    break;
+                default:
+                    if (Character.isISOControl(codePoint)) {
+                        control(codePoint);
+                    } else {
+                        direct((char) codePoint);
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        void flush() {
+            if (index > 0) {
+                new String(buffer, 0, index);
+                index = 0;
+            }
+        }
+
+        private void direct(final char character) {
+            if (index + 1 >= buffer.length) {
+                flush();
+            }
+
+            buffer[index++] = character;
+        }
+
+        private void escape(final char character) {
+            if (index + 2 >= buffer.length) {
+                flush();
+            }
+
+            buffer[index] = '\\';
+            buffer[index + 1] = character;
+
+            index += 2;
+        }
+
+        private void control(final int codePoint) {
+            final String hex = Integer.toHexString(codePoint);
+
+            direct('\\');
+            direct('u');
+
+            for (int i = hex.length(); i < 4; ++i) {
+                direct('0');
+            }
+
+            for (int i = 0; i < hex.length(); ++i) {
+                direct(hex.charAt(i));
+            }
+        }
+    }
+}
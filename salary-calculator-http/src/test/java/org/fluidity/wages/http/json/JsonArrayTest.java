@@ -160,6 +160,38 @@ public class JsonArrayTest extends Simulator {
         Assert.assertEquals(value.toString(), "[{\"a\":[{\"b\":[{}]}]}]");
     }
 
+    @Test
+    public void testReusesClosedContainers() throws Exception {
+        final StringBuilder value = new StringBuilder();
+
+        final JsonOutput.Array.Root json = JsonOutput.array(64, value::append);
+
+        final JsonOutput.Object first = json.object();
+        first.add("a", 1);
+        first.array("b").add(1);
+
+        final JsonOutput.Object second = json.object();
+        second.add("a", 2);
+        second.array("b").add(2);
+
+        json.close();
+
+        Assert.assertEquals(value.toString(), "[{\"a\":1,\"b\":[1]},{\"a\":2,\"b\":[2]}]");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = "This container has been closed")
+    public void testRejectsStaleContainer() throws Exception {
+        final JsonOutput.Array.Root json = JsonOutput.array(64, new StringBuilder()::append);
+
+        final JsonOutput.Object first = json.object();
+        first.add("a", 1);
+
+        // Closes the first object and reopens the same pooled object as the second one.
+        json.object().add("a", 2);
+
+        first.add("b", 1);
+    }
+
     @Test
     public void testInvokesCloseCallback() throws Exception {
         final JsonOutput.Array.Root json = JsonOutput.array(4, ignored -> {});
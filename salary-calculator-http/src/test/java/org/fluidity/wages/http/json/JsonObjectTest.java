@@ -16,6 +16,10 @@
 
 package org.fluidity.wages.http.json;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
 import org.fluidity.testing.Simulator;
 
 import org.easymock.EasyMock;
@@ -72,6 +76,47 @@ public class JsonObjectTest extends Simulator {
         Assert.assertEquals(value.toString(), "{\"a\":0,\"b\":1,\"c\":-1,\"d\":3.4028234663852886E38,\"e\":1.401298464324817E-45}");
     }
 
+    @Test
+    public void testAmountEncoding() throws Exception {
+        final StringBuilder value = new StringBuilder();
+
+        // The small buffer forces the amounts that do not fit to be emitted character by character.
+        final JsonOutput.Object.Root json = JsonOutput.object(8, value::append);
+
+        json.amount("a", 0);
+        json.amount("b", 5);
+        json.amount("c", 1205);
+        json.amount("d", -50);
+        json.amount("e", Integer.MAX_VALUE);
+        json.amount("f", Integer.MIN_VALUE);
+
+        json.close();
+
+        Assert.assertEquals(value.toString(),
+                            "{\"a\":\"$0.00\",\"b\":\"$0.05\",\"c\":\"$12.05\",\"d\":\"-$0.50\",\"e\":\"$21474836.47\",\"f\":\"-$21474836.48\"}");
+    }
+
+    @Test
+    public void testDecimalNumberEncoding() throws Exception {
+        final StringBuilder value = new StringBuilder();
+
+        // The small buffer forces the numbers to be emitted character by character.
+        final JsonOutput.Object.Root json = JsonOutput.object(4, value::append);
+
+        json.add("a", 0.5);
+        json.add("b", -12.25);
+        json.add("c", 0.1);
+        json.add("d", 0.00001);
+        json.add("e", 0.1 + 0.2);
+        json.add("f", Long.MIN_VALUE);
+        json.add("g", 1234567.000000001);
+
+        json.close();
+
+        Assert.assertEquals(value.toString(),
+                            "{\"a\":0.5,\"b\":-12.25,\"c\":0.1,\"d\":0.00001,\"e\":0.30000000000000004,\"f\":-9223372036854775808,\"g\":1234567.000000001}");
+    }
+
     @Test(expectedExceptions = IllegalArgumentException.class)
     public void testInfinityEncoding() throws Exception {
         final JsonOutput.Object.Root json = JsonOutput.object(64, new StringBuilder()::append);
@@ -147,6 +192,80 @@ public class JsonObjectTest extends Simulator {
         Assert.assertEquals(value.toString(), "{\"a\":\"\\u0000\\u0002\\u0080\\u0010\\u009f\"}");
     }
 
+    @Test
+    public void testUtf8Encoding() throws Exception {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final ByteArrayOutputStream channel = new ByteArrayOutputStream();
+
+        // The same small buffer is reused by both streams.
+        final JsonOutput.Buffer buffer = new JsonOutput.Buffer(4);
+
+        final JsonOutput.Object.Root json1 = JsonOutput.object(stream, buffer);
+        json1.add("a", "J\u00e1nos \u20ac1");
+        json1.amount("b", 1205);
+        json1.close();
+
+        final JsonOutput.Object.Root json2 = JsonOutput.object(Channels.newChannel(channel), buffer);
+        json2.add("a", "\u00e9");
+        json2.close();
+
+        Assert.assertEquals(new String(stream.toByteArray(), StandardCharsets.UTF_8), "{\"a\":\"J\u00e1nos \u20ac1\",\"b\":\"$12.05\"}");
+        Assert.assertEquals(new String(channel.toByteArray(), StandardCharsets.UTF_8), "{\"a\":\"\u00e9\"}");
+    }
+
+    @Test
+    public void testSupplementaryCharacterEncoding() throws Exception {
+        final StringBuilder value = new StringBuilder();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        final JsonOutput.Object.Root json1 = JsonOutput.object(4, value::append);
+        final JsonOutput.Object.Root json2 = JsonOutput.object(bytes, new JsonOutput.Buffer(4));
+
+        for (final JsonOutput.Object.Root json : new JsonOutput.Object.Root[] { json1, json2 }) {
+            json.add("a", "x\ud83d\ude00y\ud842\udfb7");
+            json.add("b", "\ud800z\udc00");
+            json.close();
+        }
+
+        Assert.assertEquals(value.toString(), "{\"a\":\"x\ud83d\ude00y\ud842\udfb7\",\"b\":\"\\ud800z\\udc00\"}");
+        Assert.assertEquals(new String(bytes.toByteArray(), StandardCharsets.UTF_8), value.toString());
+    }
+
+    @Test
+    public void testTrailingHighSurrogateEncoding() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final JsonOutput.Buffer buffer = new JsonOutput.Buffer(4);
+
+        // The high surrogate is the last character of the last chunk, with no character left to pair it with.
+        final CharacterBuffer characters = new CharacterBuffer(buffer.characters, new Utf8Sink(bytes, buffer));
+        characters.direct("ab\ud83d".toCharArray());
+        characters.close();
+
+        Assert.assertEquals(new String(bytes.toByteArray(), StandardCharsets.UTF_8), "ab?");
+    }
+
+    @Test
+    public void testKeyEncoding() throws Exception {
+        final JsonOutput.Key a = JsonOutput.key("a\"b");
+        final JsonOutput.Key b = JsonOutput.key("b");
+
+        // The same keys are used by two streams, once with a buffer shorter than the keys.
+        for (final int size : new int[] { 4, 64 }) {
+            final StringBuilder value = new StringBuilder();
+
+            final JsonOutput.Object.Root json = JsonOutput.object(size, value::append);
+
+            json.add(a, "x");
+            json.add(b, 1);
+            json.object(a).array(b).add(true);
+            json.amount(b, 105);
+
+            json.close();
+
+            Assert.assertEquals(value.toString(), "{\"a\\\"b\":\"x\",\"b\":1,\"a\\\"b\":{\"b\":[true]},\"b\":\"$1.05\"}");
+        }
+    }
+
     @Test
     public void testClosesAllOpenContainers() throws Exception {
         final StringBuilder value = new StringBuilder();
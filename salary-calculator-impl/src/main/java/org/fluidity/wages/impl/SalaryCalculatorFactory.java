@@ -33,8 +33,18 @@ final class SalaryCalculatorFactory implements SalaryCalculator.Factory {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public SalaryCalculator create(final Consumer<SalaryDetails> consumer) {
-        return container.instantiate(SalaryCalculatorPipeline.class, registry -> registry.bindInstance(consumer, Consumer.class));
+        return create(consumer, false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SalaryCalculator create(final Consumer<SalaryDetails> consumer, final boolean sorted) {
+        final SalaryCalculatorPipeline.InputOrder order = sorted ? SalaryCalculatorPipeline.InputOrder.SORTED : SalaryCalculatorPipeline.InputOrder.ANY;
+
+        return container.instantiate(SalaryCalculatorPipeline.class, registry -> {
+            registry.bindInstance(consumer, Consumer.class);
+            registry.bindInstance(order, SalaryCalculatorPipeline.InputOrder.class);
+        });
     }
 }
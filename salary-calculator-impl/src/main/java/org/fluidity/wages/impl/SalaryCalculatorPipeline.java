@@ -37,7 +37,10 @@ import org.fluidity.wages.ShiftDetails;
 /**
  * Implements the salary calculator as a pipeline of auto-closeable consumers. The {@link AutoCloseable#close()} method flushes the pipeline.
  * <p>
- * Instances are created by {@link SalaryCalculator.Factory#create(Consumer)}.
+ * Work shifts are either sorted in memory before they enter the pipeline, or, if they arrive {@link InputOrder#SORTED sorted}, are streamed through the
+ * pipeline as they arrive, in which case the salary of each person is emitted as soon as the next person's or month's shifts start.
+ * <p>
+ * Instances are created by {@link SalaryCalculator.Factory#create(Consumer, boolean)}.
  */
 @Component(automatic = false)
 final class SalaryCalculatorPipeline implements SalaryCalculator {
@@ -46,78 +49,190 @@ final class SalaryCalculatorPipeline implements SalaryCalculator {
 
     private final StageFactory stages;
     private final Consumer<SalaryDetails> consumer;
+    private final InputOrder order;
 
     // Sorts work shift objects to form the input of the pipeline.
     private final Collection<WorkShift> shifts = new TreeSet<>();
 
+    // The last shift processed; used with sorted input only, to check the order of the next one.
+    private WorkShift last;
+
+    private BatchProcessor<WorkShift> pipeline;
+
     private PersonDetails person;
     private int day;
 
-    SalaryCalculatorPipeline(final StageFactory stages, final SalaryCalculatorSettings settings, final Consumer<SalaryDetails> consumer) {
+    SalaryCalculatorPipeline(final StageFactory stages, final SalaryCalculatorSettings settings, final InputOrder order, final Consumer<SalaryDetails> consumer) {
         this.timeZone = settings.timeZone();
         this.stages = stages;
+        this.order = order;
         this.consumer = consumer;
     }
 
     @Override
     public void accept(final ShiftDetails details) {
-        shifts.add(new WorkShift(details, timeZone));
+        final WorkShift shift = new WorkShift(details, timeZone);
+
+        if (order == InputOrder.SORTED) {
+            process(shift);
+        } else {
+            shifts.add(shift);
+        }
     }
 
     @Override
     public void flush() {
-        final IntConsumer stage3 = amountBy100 -> person.addSalary(amountBy100);
-        final BatchProcessor<ShiftSegment> stage2 = stages.createOvertimeRatesStage(stage3);
-        final BatchProcessor<WorkShift> stage1 = stages.createRegularRatesStage(stage2);
+        shifts.forEach(this::process);
 
-        try (final BatchProcessor<WorkShift> pipeline = new MultiStagePipeline<>(stage1, stage2)) {
-            shifts.forEach(shift -> {
-                final int day = shift.date.getDayOfMonth();
+        if (this.person != null) {
+            assert this.day > 0;
+            pipeline.flush();
+            this.consumer.accept(this.person.salary());
+        }
 
-                final boolean atMonthOrPersonBoundary = this.person == null || !this.person.matches(shift);
-                final boolean atDayBoundary = atMonthOrPersonBoundary || day != this.day;
+        if (pipeline != null) {
+            pipeline.close();
+        }
 
-                // this must be handled first as the smaller granularity
-                if (atDayBoundary) {
-                    if (this.day > 0) {
-                        pipeline.flush();
-                    }
+        reset();
+    }
 
-                    this.day = day;
-                }
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * Sends the given work shift through the pipeline.
+     *
+     * @param shift the work shift.
+     */
+    private void process(final WorkShift shift) {
+        if (pipeline == null) {
+            final IntConsumer stage3 = amountBy100 -> person.addSalary(amountBy100);
+            final BatchProcessor<ShiftSegment> stage2 = stages.createOvertimeRatesStage(stage3);
+            final BatchProcessor<WorkShift> stage1 = stages.createRegularRatesStage(stage2);
 
-                if (atMonthOrPersonBoundary) {
-                    if (this.person != null) {
-                        this.consumer.accept(this.person.salary());
-                    }
+            pipeline = new MultiStagePipeline<>(stage1, stage2);
+        }
 
-                    this.person = new PersonDetails(shift);
-                }
+        final int day = shift.date.getDayOfMonth();
 
-                pipeline.accept(shift);
-            });
+        final boolean atMonthOrPersonBoundary = this.person == null || !this.person.matches(shift);
+        final boolean atDayBoundary = atMonthOrPersonBoundary || day != this.day;
 
-            if (this.person != null) {
-                assert this.day > 0;
+        if (order == InputOrder.SORTED && !sorted(shift, atMonthOrPersonBoundary)) {
+            return;
+        }
+
+        // this must be handled first as the smaller granularity
+        if (atDayBoundary) {
+            if (this.day > 0) {
                 pipeline.flush();
+            }
+
+            this.day = day;
+        }
+
+        if (atMonthOrPersonBoundary) {
+            if (this.person != null) {
                 this.consumer.accept(this.person.salary());
             }
+
+            this.person = new PersonDetails(shift);
         }
 
-        reset();
+        pipeline.accept(shift);
     }
 
-    @Override
-    public void close() {
-        flush();
+    /**
+     * Checks that the given work shift arrived in sorted order, and tells if it is not a duplicate of the previous one, which sorting would have dropped. Only
+     * the previous shift is compared with, so the check takes constant memory.
+     *
+     * @param shift                   the work shift.
+     * @param atMonthOrPersonBoundary tells if the shift is the first of a month and person.
+     *
+     * @return <code>true</code> if the shift is to be processed; <code>false</code> if it is a duplicate.
+     *
+     * @throws IllegalArgumentException when the shift is out of order.
+     */
+    private boolean sorted(final WorkShift shift, final boolean atMonthOrPersonBoundary) {
+        final int order = last == null ? -1 : compare(last, shift);
+
+        if (order > 0) {
+            if (atMonthOrPersonBoundary) {
+                throw new IllegalArgumentException(String.format("input not sorted: shifts of %s (%s) in %d/%d are out of month and person order",
+                                                                 shift.personName,
+                                                                 shift.personId,
+                                                                 shift.date.getMonthValue(),
+                                                                 shift.date.getYear()));
+            } else {
+                throw new IllegalArgumentException(String.format("input not sorted: shift of %s (%s) on %s is out of date and time order",
+                                                                 shift.personName,
+                                                                 shift.personId,
+                                                                 shift.date));
+            }
+        }
+
+        last = shift;
+
+        return order < 0;
+    }
+
+    /**
+     * Compares two work shifts by month, person name, person ID, date, and start time: the order sorted input must arrive in.
+     *
+     * @param shift1 the first work shift.
+     * @param shift2 the second work shift.
+     *
+     * @return a negative number, zero, or a positive number if the first shift comes before, together with, or after the second one.
+     */
+    private static int compare(final WorkShift shift1, final WorkShift shift2) {
+        int result = shift1.month().compareTo(shift2.month());
+
+        if (result == 0) {
+            result = shift1.personName.compareTo(shift2.personName);
+        }
+
+        if (result == 0) {
+            result = shift1.personId.compareTo(shift2.personId);
+        }
+
+        if (result == 0) {
+            result = shift1.date.compareTo(shift2.date);
+        }
+
+        if (result == 0) {
+            result = shift1.start().compareTo(shift2.start());
+        }
+
+        return result;
     }
 
     private void reset() {
         this.shifts.clear();
+        this.last = null;
+        this.pipeline = null;
         this.day = 0;
         this.person = null;
     }
 
+    /**
+     * Tells if the work shifts arrive in any order, or sorted.
+     */
+    enum InputOrder {
+
+        /**
+         * The work shifts may arrive in any order, and are sorted in memory.
+         */
+        ANY,
+
+        /**
+         * The work shifts arrive ordered by month, person name, person ID, date, and start time.
+         */
+        SORTED
+    }
+
     /**
      * Creates the various stages of the pipeline.
      */
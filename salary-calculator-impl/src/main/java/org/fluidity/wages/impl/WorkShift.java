@@ -104,7 +104,12 @@ final class WorkShift implements Comparable<WorkShift> {
         return LocalDate.of(date.getYear(), date.getMonth(), 1);
     }
 
-    private ZonedDateTime start() {
+    /**
+     * Returns the time this shift started.
+     *
+     * @return a zoned date time object; never <code>null</code>.
+     */
+    ZonedDateTime start() {
         return this.interval.begin;
     }
 }
@@ -43,7 +43,7 @@ public final class SalaryCalculatorIntegrationTest extends SalaryCalculatorAbstr
      * @return a new subject; never <code>null</code>.
      */
     private SalaryCalculatorPipeline createPipeline(final SalaryCalculatorSettings settings, final Consumer<SalaryDetails> consumer) {
-        return new SalaryCalculatorPipeline(createStageFactory(settings), settings, consumer);
+        return new SalaryCalculatorPipeline(createStageFactory(settings), settings, SalaryCalculatorPipeline.InputOrder.ANY, consumer);
     }
 
     @Test
@@ -710,4 +710,83 @@ public final class SalaryCalculatorIntegrationTest extends SalaryCalculatorAbstr
             Assert.assertTrue(salary.isEmpty());
         });
     }
+
+    @Test
+    public void streamsSortedInput() throws Exception {
+        final int baseRate = 100;
+
+        final SalaryCalculatorSettings settings = settings("Europe/Helsinki",
+                                                           baseRate,
+                                                           Collections.singletonList(regularRate(0, LocalTime.MIDNIGHT, LocalTime.MIDNIGHT)),
+                                                           Collections.emptyList());
+
+        final List<SalaryDetails> salary = new ArrayList<>();
+
+        final List<ShiftDetails> shifts = Arrays.asList(
+                new ShiftDetails("2", "Jane Doe", LocalDate.of(2000, Month.JANUARY, 1), LocalTime.of(12, 0), LocalTime.of(13, 0)),
+                new ShiftDetails("2", "Jane Doe", LocalDate.of(2000, Month.JANUARY, 1), LocalTime.of(12, 0), LocalTime.of(13, 0)),
+                new ShiftDetails("2", "Jane Doe", LocalDate.of(2000, Month.JANUARY, 3), LocalTime.of(12, 0), LocalTime.of(14, 0)),
+                new ShiftDetails("1", "John Doe", LocalDate.of(2000, Month.JANUARY, 2), LocalTime.of(12, 0), LocalTime.of(15, 0))
+        );
+
+        verify(() -> {
+            try (final BatchProcessor<ShiftDetails> subject = new SalaryCalculatorPipeline(createStageFactory(settings),
+                                                                                           settings,
+                                                                                           SalaryCalculatorPipeline.InputOrder.SORTED,
+                                                                                           salary::add)) {
+                shifts.forEach(subject);
+
+                // the first person is complete as soon as the second one starts
+                Assert.assertEquals(salary.size(), 1);
+            }
+
+            Assert.assertEquals(salary.size(), 2);
+
+            Assert.assertEquals(salary.get(0).personId, "2");
+            Assert.assertEquals(salary.get(0).amountBy100, 3 * baseRate);    // the duplicate shift is ignored, just as with sorting
+            Assert.assertEquals(salary.get(1).personId, "1");
+            Assert.assertEquals(salary.get(1).amountBy100, 3 * baseRate);
+        });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "input not sorted: .*")
+    public void rejectsUnsortedInput() throws Exception {
+        final SalaryCalculatorSettings settings = settings("Europe/Helsinki",
+                                                           100,
+                                                           Collections.singletonList(regularRate(0, LocalTime.MIDNIGHT, LocalTime.MIDNIGHT)),
+                                                           Collections.emptyList());
+
+        final List<ShiftDetails> shifts = Arrays.asList(
+                new ShiftDetails("1", "John Doe", LocalDate.of(2000, Month.JANUARY, 1), LocalTime.of(12, 0), LocalTime.of(13, 0)),
+                new ShiftDetails("2", "Jane Doe", LocalDate.of(2000, Month.JANUARY, 1), LocalTime.of(12, 0), LocalTime.of(13, 0)),
+                new ShiftDetails("1", "John Doe", LocalDate.of(2000, Month.JANUARY, 2), LocalTime.of(12, 0), LocalTime.of(13, 0))
+        );
+
+        try (final BatchProcessor<ShiftDetails> subject = new SalaryCalculatorPipeline(createStageFactory(settings),
+                                                                                       settings,
+                                                                                       SalaryCalculatorPipeline.InputOrder.SORTED,
+                                                                                       salary -> { })) {
+            shifts.forEach(subject);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "input not sorted: .* out of date and time order")
+    public void rejectsUnsortedShiftsOfOneDay() throws Exception {
+        final SalaryCalculatorSettings settings = settings("Europe/Helsinki",
+                                                           100,
+                                                           Collections.singletonList(regularRate(0, LocalTime.MIDNIGHT, LocalTime.MIDNIGHT)),
+                                                           Collections.emptyList());
+
+        final List<ShiftDetails> shifts = Arrays.asList(
+                new ShiftDetails("1", "John Doe", LocalDate.of(2000, Month.JANUARY, 1), LocalTime.of(14, 0), LocalTime.of(15, 0)),
+                new ShiftDetails("1", "John Doe", LocalDate.of(2000, Month.JANUARY, 1), LocalTime.of(12, 0), LocalTime.of(13, 0))
+        );
+
+        try (final BatchProcessor<ShiftDetails> subject = new SalaryCalculatorPipeline(createStageFactory(settings),
+                                                                                       settings,
+                                                                                       SalaryCalculatorPipeline.InputOrder.SORTED,
+                                                                                       salary -> { })) {
+            shifts.forEach(subject);
+        }
+    }
 }
@@ -17,7 +17,12 @@
 package org.fluidity.wages.settings;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Properties;
+import java.util.TreeSet;
 
 import org.fluidity.composition.Component;
 import org.fluidity.foundation.ClassLoaders;
@@ -26,20 +31,33 @@ import org.fluidity.foundation.spi.PropertyProvider;
 /**
  * Loads a .properties file from the class path and makes it available to Fluid Tools' <a
  * href="https://github.com/aqueance/fluid-tools/wiki/User%20Guide%20-%20Foundation#configuration">configuration</a> facility.
+ * <p>
+ * The <code>settings.fingerprint</code> property is not read from the file: it is a digest of all the properties in the file, which tells cached results
+ * computed with different settings apart.
  */
 @Component
 final class SalaryCalculatorSettingsProvider implements PropertyProvider {
 
     private static final String RESOURCE = "salary-calculator.properties";
+    private static final String FINGERPRINT = "settings.fingerprint";
 
     private final Properties properties = new Properties();
+    private final String fingerprint;
 
-    public SalaryCalculatorSettingsProvider() throws IOException {
+    public SalaryCalculatorSettingsProvider() throws IOException, NoSuchAlgorithmException {
         this.properties.load(ClassLoaders.findResource(getClass(), RESOURCE).openStream());
+
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        for (final String key : new TreeSet<>(properties.stringPropertyNames())) {
+            digest.update((key + "=" + properties.getProperty(key) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        this.fingerprint = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
     }
 
     @Override
     public String property(final String key) {
-        return properties.getProperty(key);
+        return FINGERPRINT.equals(key) ? fingerprint : properties.getProperty(key);
     }
 }